@@ -3,6 +3,7 @@ package com.stackroute.keepnote.model;
 import java.util.Date;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 /*
@@ -26,6 +27,7 @@ public class Category {
 	private String categoryId;
 	private String categoryName;
 	private String categoryDescription;
+	@Indexed
 	private String categoryCreatedBy;
 	private Date categoryCreationDate;
 	
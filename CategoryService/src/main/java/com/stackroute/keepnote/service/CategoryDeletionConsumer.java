@@ -0,0 +1,28 @@
+package com.stackroute.keepnote.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.model.Category;
+import com.stackroute.keepnote.userdeletion.UserDeletionConsumer;
+
+/*
+ * This class purges the categories which deleted users created before they were
+ * deleted, see UserDeletionConsumer of keepnote-user-deletion.
+ */
+@Component
+public class CategoryDeletionConsumer extends UserDeletionConsumer {
+
+	public static final String CONSUMER = "categories";
+
+	@Autowired
+	public CategoryDeletionConsumer(MongoTemplate mongoTemplate,
+			@Value("${keepnote.user.deletions.batch-size:100}") int batchSize,
+			@Value("${keepnote.user.deletions.chunk-size:1000}") int chunkSize) {
+		super(mongoTemplate, CONSUMER, mongoTemplate.getCollectionName(Category.class), "categoryCreatedBy",
+				"categoryCreationDate", batchSize, chunkSize);
+	}
+
+}
@@ -1,5 +1,6 @@
 package com.stackroute.keepnote.service;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,9 +36,13 @@ public class CategoryServiceImpl implements CategoryService {
 	/*
 	 * This method should be used to save a new category.Call the corresponding
 	 * method of Respository interface.
+	 * 
+	 * The categoryCreationDate is set to the system date; the categories of a
+	 * deleted user are purged by it (see CategoryDeletionConsumer).
 	 */
 	public Category createCategory(Category category) throws CategoryNotCreatedException {
 
+		category.setCategoryCreationDate(new Date());
 		Category currentcategory = this.categoryRepository.save(category);
 		if (currentcategory != null) {
 			return currentcategory;
@@ -68,11 +73,14 @@ public class CategoryServiceImpl implements CategoryService {
 	/*
 	 * This method should be used to update a existing category.Call the
 	 * corresponding method of Respository interface.
+	 * 
+	 * The category keeps the categoryCreationDate it was created with.
 	 */
 	public Category updateCategory(Category category, String categoryId) {
 		try{
 		Category currentCategory = categoryRepository.findById(categoryId).get();
 		if (currentCategory != null) {
+			category.setCategoryCreationDate(currentCategory.getCategoryCreationDate());
 			return this.categoryRepository.save(category);
 		}else{
 			return null;
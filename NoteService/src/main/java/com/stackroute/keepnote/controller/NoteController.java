@@ -1,9 +1,22 @@
 package com.stackroute.keepnote.controller;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,10 +24,19 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.stackroute.keepnote.exception.NoteNotFoundExeption;
+import com.stackroute.keepnote.exception.NoteVersionConflictException;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteImportResult;
 import com.stackroute.keepnote.service.NoteService;
 
 /*
@@ -27,6 +49,11 @@ import com.stackroute.keepnote.service.NoteService;
  */
 @RestController
 public class NoteController {
+	private static final int DEFAULT_PAGE_SIZE = 20;
+	private static final int MAX_PAGE_SIZE = 100;
+	private static final int IMPORT_BATCH_SIZE = 500;
+	private static final int DEFAULT_MAX_IMPORT_LINE_SIZE = 1024 * 1024;
+	private static final String APPLICATION_NDJSON = "application/x-ndjson";
 	private Logger logger=LoggerFactory.getLogger(this.getClass());
 	/*
 	 * Autowiring should be implemented for the NoteService. (Use Constructor-based
@@ -35,8 +62,13 @@ public class NoteController {
 	 */
 	@Autowired
 	private NoteService noteService;
-	public NoteController(NoteService noteService) {
+	private ObjectMapper objectMapper;
+	/* The bytes of a line of the bulk import at most, longer lines are rejected. */
+	@Value("${keepnote.note.import.max-line-size:" + DEFAULT_MAX_IMPORT_LINE_SIZE + "}")
+	private int maxImportLineSize = DEFAULT_MAX_IMPORT_LINE_SIZE;
+	public NoteController(NoteService noteService, ObjectMapper objectMapper) {
 		this.noteService=noteService;
+		this.objectMapper=objectMapper;
 	}
 
 	/*
@@ -48,13 +80,21 @@ public class NoteController {
 	 * 2. 409(CONFLICT) - If the noteId conflicts with any existing user.
 	 * 
 	 * This handler method should map to the URL "/api/v1/note" using HTTP POST method
+	 *
+	 * The noteId is assigned by the service, the Location header of the response
+	 * points to the created note.
 	 */
 	@PostMapping(value = "/api/v1/note")
 	public ResponseEntity<Boolean> registerNote(@RequestBody Note note) {
 		boolean insertStatus=false;
 		try {
 			insertStatus=this.noteService.createNote(note);
-			return new ResponseEntity<Boolean>(insertStatus, HttpStatus.CREATED);
+			if (!insertStatus) {
+				return new ResponseEntity<Boolean>(insertStatus, HttpStatus.CONFLICT);
+			}
+			return ResponseEntity
+					.created(URI.create("/api/v1/note/" + note.getNoteCreatedBy() + "/" + note.getNoteId()))
+					.body(insertStatus);
 		} catch (Exception e) {
 			logger.error(e.getMessage());
 			// TODO Auto-generated catch block
@@ -62,6 +102,139 @@ public class NoteController {
 			// e.printStackTrace();
 		}
 	}
+	/*
+	 * Define a handler method which will create many notes at once. The request
+	 * body holds one serialized note per line (NDJSON). The lines are read as bytes
+	 * one at a time, parsed by Jackson straight from those bytes and saved in
+	 * batches of IMPORT_BATCH_SIZE notes, so the body is never held in memory as a
+	 * whole. A line longer than maxImportLineSize bytes is skipped without being
+	 * kept. A line which is too long or cannot be parsed or saved does not stop
+	 * the import, it is reported in the returned NoteImportResult.
+	 * 
+	 * This handler method should map to the URL "/api/v1/note/bulk" using HTTP POST method
+	 */
+	@PostMapping(value = "/api/v1/note/bulk", consumes = APPLICATION_NDJSON)
+	public ResponseEntity<NoteImportResult> importNotes(InputStream body) throws IOException {
+		NoteImportResult result = new NoteImportResult();
+		ObjectReader noteReader = this.objectMapper.readerFor(Note.class);
+		List<Note> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+		List<Integer> batchLines = new ArrayList<>(IMPORT_BATCH_SIZE);
+		LineReader lines = new LineReader(body, this.maxImportLineSize);
+		int lineNumber = 0;
+		while (lines.next()) {
+			lineNumber++;
+			if (lines.tooLong) {
+				result.addFailure(lineNumber, "line is longer than " + this.maxImportLineSize + " bytes");
+				continue;
+			}
+			if (lines.isBlank()) {
+				continue;
+			}
+			Note note;
+			try {
+				note = noteReader.readValue(lines.line, 0, lines.length);
+			} catch (JsonProcessingException e) {
+				result.addFailure(lineNumber, e.getOriginalMessage());
+				continue;
+			}
+			if (note.getNoteCreatedBy() == null) {
+				result.addFailure(lineNumber, "noteCreatedBy is missing");
+				continue;
+			}
+			batch.add(note);
+			batchLines.add(lineNumber);
+			if (batch.size() == IMPORT_BATCH_SIZE) {
+				saveBatch(batch, batchLines, result);
+			}
+		}
+		saveBatch(batch, batchLines, result);
+		return new ResponseEntity<NoteImportResult>(result, HttpStatus.OK);
+	}
+
+	/*
+	 * This class reads the lines of a body as bytes. At most maxLength bytes of a
+	 * line are kept, the rest of a longer line is read and dropped.
+	 */
+	private static final class LineReader {
+
+		private final InputStream in;
+		private final int maxLength;
+		private byte[] line = new byte[1024];
+		private int length;
+		private boolean tooLong;
+
+		private LineReader(InputStream in, int maxLength) {
+			this.in = new BufferedInputStream(in);
+			this.maxLength = maxLength;
+		}
+
+		/* This method reads the next line, it returns false at the end of the body. */
+		private boolean next() throws IOException {
+			this.length = 0;
+			this.tooLong = false;
+			int b = this.in.read();
+			if (b == -1) {
+				return false;
+			}
+			while (b != -1 && b != '\n') {
+				if (this.length == this.maxLength) {
+					this.tooLong = true;
+				} else {
+					if (this.length == this.line.length) {
+						this.line = Arrays.copyOf(this.line, Math.min(this.maxLength, this.line.length * 2));
+					}
+					this.line[this.length++] = (byte) b;
+				}
+				b = this.in.read();
+			}
+			return true;
+		}
+
+		private boolean isBlank() {
+			for (int i = 0; i < this.length; i++) {
+				if (!Character.isWhitespace(this.line[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private void saveBatch(List<Note> batch, List<Integer> batchLines, NoteImportResult result) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		Map<Integer, String> failed = this.noteService.createNotes(batch);
+		for (Map.Entry<Integer, String> failure : failed.entrySet()) {
+			result.addFailure(batchLines.get(failure.getKey()), failure.getValue());
+		}
+		result.setImported(result.getImported() + batch.size() - failed.size());
+		batch.clear();
+		batchLines.clear();
+	}
+
+	/*
+	 * Define a handler method which will write all notes of a user, including their
+	 * content, one serialized note per line (NDJSON). The notes are written to the
+	 * response while they are read from the database.
+	 * 
+	 * This handler method should map to the URL "/api/v1/note/{userId}/export" using HTTP GET method
+	 */
+	@GetMapping(value = "/api/v1/note/{userId}/export", produces = APPLICATION_NDJSON)
+	public ResponseEntity<StreamingResponseBody> exportNotes(@PathVariable("userId") String userId) {
+		StreamingResponseBody body = outputStream -> {
+			try (CloseableIterator<Note> notes = this.noteService.exportNotesByUserId(userId);
+					JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream)) {
+				generator.setRootValueSeparator(null);
+				while (notes.hasNext()) {
+					generator.writeObject(notes.next());
+					generator.writeRaw('\n');
+				}
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON)).body(body);
+	}
+
 	/*
 	 * Define a handler method which will delete a note from a database.
 	 * This handler method should return any one of the status messages basis 
@@ -75,23 +248,33 @@ public class NoteController {
 	@DeleteMapping("/api/v1/note/{userId}/{id}")
 	public ResponseEntity<Boolean> deleteNote(@PathVariable String userId,
 			@PathVariable int id) {
-		System.out.println("Fetching & Deleting note with id " + id);
-		boolean status = false;
-		Note note;
-		try {
-			note = this.noteService.getNoteByNoteId(userId, id);
-			if (note == null) {
-				System.out.println("Unable to delete. note with id " + id + " not found");
-				return new ResponseEntity<Boolean>(HttpStatus.NOT_FOUND);
-			}
+		boolean status = this.noteService.deleteNote(userId, id);
+		if (!status) {
+			logger.info("Unable to delete. note with id {} not found", id);
+			return new ResponseEntity<Boolean>(false, HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<Boolean>(status, HttpStatus.OK);
+	}
 
-			status = this.noteService.deleteNote(userId, id);
+	/*
+	 * Define a handler method which will delete all notes of a user from a database.
+	 * This handler method should return any one of the status messages basis 
+	 * on different situations: 
+	 * 1. 200(OK) - If the notes deleted successfully from database. 
+	 * 2. 404(NOT FOUND) - If the user has no notes.
+	 *
+	 * This handler method should map to the URL "/api/v1/note/{userId}" using HTTP Delete
+	 * method
+	 */
+	@DeleteMapping("/api/v1/note/{userId}")
+	public ResponseEntity<Boolean> deleteAllNotes(@PathVariable String userId) {
+		try {
+			boolean status = this.noteService.deleteAllNotes(userId);
 			return new ResponseEntity<Boolean>(status, HttpStatus.OK);
-		} catch (Exception ex) {
-			// TODO Auto-generated catch block
-			return new ResponseEntity<Boolean>(false,HttpStatus.NOT_FOUND);
+		} catch (NoteNotFoundExeption e) {
+			logger.error(e.getMessage());
+			return new ResponseEntity<Boolean>(false, HttpStatus.NOT_FOUND);
 		}
-	
 	}
 
 	/*
@@ -102,27 +285,34 @@ public class NoteController {
 	 * basis on different situations: 
 	 * 1. 200(OK) - If the note updated successfully.
 	 * 2. 404(NOT FOUND) - If the note with specified noteId is not found.
+	 * 3. 412(PRECONDITION FAILED) - If the note no longer has the version sent in
+	 * the If-Match header.
+	 * 4. 409(CONFLICT) - If the note kept changing while the update was retried.
 	 * 
 	 * This handler method should map to the URL "/api/v1/note/{id}" using HTTP PUT method.
+	 *
+	 * With an If-Match header holding the ETag returned by GET, the note is only
+	 * updated if nobody changed it since. Without it, the note is replaced whatever
+	 * its version. Either way the whole note is replaced by the request body, so a
+	 * field left out is cleared. The response carries the new ETag.
 	 */
 	@PutMapping("/api/v1/note/{userId}/{id}")
 	public ResponseEntity<Note> updateNote(@PathVariable String userId,
 			@PathVariable int id,
-			@RequestBody Note note) {
-		Note currentNote = null;
+			@RequestBody Note note,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		Long expectedVersion = parseIfMatch(ifMatch);
 		try {
-			currentNote = this.noteService.getNoteByNoteId(userId, id);
-			if (currentNote == null) {
-				System.out.println("category with id " + id + " not found");
-				return new ResponseEntity<Note>(HttpStatus.NOT_FOUND);
-			}
-
-			currentNote = this.noteService.updateNote(note, id, userId);
-			return new ResponseEntity<Note>(currentNote, HttpStatus.OK);
-		} catch (NoteNotFoundExeption e ) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			Note currentNote = expectedVersion == null ? this.noteService.updateNote(note, id, userId)
+					: this.noteService.updateNote(note, id, userId, expectedVersion);
+			return ResponseEntity.ok().eTag(eTag(currentNote)).body(currentNote);
+		} catch (NoteNotFoundExeption e) {
+			logger.info("note with id {} not found", id);
 			return new ResponseEntity<Note>(HttpStatus.NOT_FOUND);
+		} catch (NoteVersionConflictException e) {
+			logger.info("note with id {} was not updated: {}", id, e.getMessage());
+			return new ResponseEntity<Note>(
+					expectedVersion == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED);
 		}
 	}
 
@@ -133,7 +323,51 @@ public class NoteController {
 	 * 1. 200(OK) - If the note found successfully. 
 	 * 
 	 * This handler method should map to the URL "/api/v1/note" using HTTP GET method
+	 *
+	 * The notes are returned one page at a time, ordered by noteId and without
+	 * their noteContent. "after" is the noteId of the last note of the previous
+	 * page (0 for the first page) and "limit" the page size, capped at
+	 * MAX_PAGE_SIZE. The page is written to the response while it is read from
+	 * the database, so it is never held in memory as a whole.
 	 */
+	@GetMapping("/api/v1/note/{userId}")
+	public ResponseEntity<StreamingResponseBody> getAllNotes(@PathVariable("userId") String userId,
+			@RequestParam(value = "after", defaultValue = "0") int after,
+			@RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+		int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+		StreamingResponseBody body = outputStream -> {
+			try (CloseableIterator<Note> notes = this.noteService.getNotePageByUserId(userId, after, pageSize);
+					JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream)) {
+				generator.writeStartArray();
+				while (notes.hasNext()) {
+					generator.writeObject(notes.next());
+				}
+				generator.writeEndArray();
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+	}
+
+	/*
+	 * Define a handler method which will search the notes of a user by the words of
+	 * their title and content. This handler method should return any one of the
+	 * status messages basis on different situations:
+	 * 1. 200(OK) - With the matching notes, best match first, or an empty list.
+	 * 
+	 * This handler method should map to the URL "/api/v1/note/{userId}/search" using HTTP GET method
+	 *
+	 * "q" holds the words to search for, a word ending with '*' matches as a
+	 * prefix. At most "limit" notes are returned, capped at MAX_PAGE_SIZE, without
+	 * their noteContent.
+	 */
+	@GetMapping("/api/v1/note/{userId}/search")
+	public ResponseEntity<List<Note>> searchNotes(@PathVariable("userId") String userId,
+			@RequestParam("q") String query,
+			@RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+		int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+		return new ResponseEntity<List<Note>>(this.noteService.searchNotes(userId, query, pageSize), HttpStatus.OK);
+	}
+
 	
 	/*
 	 * Define a handler method which will show details of a specific note created by specific 
@@ -146,7 +380,8 @@ public class NoteController {
 	 * 
 	 */
 	@GetMapping("/api/v1/note/{userId}/{noteId}")
-	public ResponseEntity<Note> getNote(@PathVariable("userId") String userId,int noteId) {
+	public ResponseEntity<Note> getNote(@PathVariable("userId") String userId,
+			@PathVariable("noteId") int noteId) {
 		Note note = null;
 		try {
 
@@ -156,9 +391,34 @@ public class NoteController {
 			}
 
 		} catch (NoteNotFoundExeption e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			logger.error(e.getMessage());
+			return new ResponseEntity<Note>(HttpStatus.NOT_FOUND);
+		}
+		return ResponseEntity.ok().eTag(eTag(note)).body(note);
+	}
+
+	/* The ETag of a note is its version. */
+	private static String eTag(Note note) {
+		return "\"" + note.getNoteVersion() + "\"";
+	}
+
+	/*
+	 * This method returns the version in an If-Match header, or null when the
+	 * header is missing or "*". A header which is no version of this service
+	 * matches no note.
+	 */
+	private static Long parseIfMatch(String ifMatch) {
+		if (ifMatch == null || ifMatch.trim().equals("*")) {
+			return null;
+		}
+		String version = ifMatch.trim();
+		if (version.startsWith("W/")) {
+			version = version.substring(2);
+		}
+		try {
+			return Long.valueOf(version.replace("\"", ""));
+		} catch (NumberFormatException e) {
+			return -1L;
 		}
-		return new ResponseEntity<Note>(note, HttpStatus.OK);
 	}
 }
@@ -0,0 +1,10 @@
+package com.stackroute.keepnote.exception;
+
+public class NoteVersionConflictException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public NoteVersionConflictException(String message) {
+		super(message);
+	}
+}
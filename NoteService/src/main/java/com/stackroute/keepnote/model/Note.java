@@ -22,6 +22,11 @@ public class Note {
 	private Category category;
 	private List<Reminder> reminders;
 	private String noteCreatedBy;
+	/*
+	 * The version is incremented on every update of the note. Notes written
+	 * before it existed have version 0.
+	 */
+	private long noteVersion;
 
 
 	    // getters & setters
@@ -94,4 +99,12 @@ public class Note {
 	    	this.reminders=reminders;
 	    
 	    }
+
+	    public long getNoteVersion() {
+	        return this.noteVersion;
+	    }
+
+	    public void setNoteVersion(long noteVersion) {
+	        this.noteVersion=noteVersion;
+	    }
 	}
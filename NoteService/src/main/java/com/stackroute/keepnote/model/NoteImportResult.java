@@ -0,0 +1,66 @@
+package com.stackroute.keepnote.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * This class is returned by the bulk note import. It holds the number of
+ * imported notes and, for every line which could not be imported, the line
+ * number in the request body along with the reason.
+ */
+public class NoteImportResult {
+
+	private int imported;
+	private List<Failure> failures = new ArrayList<>();
+
+	public int getImported() {
+		return imported;
+	}
+
+	public void setImported(int imported) {
+		this.imported = imported;
+	}
+
+	public List<Failure> getFailures() {
+		return failures;
+	}
+
+	public void setFailures(List<Failure> failures) {
+		this.failures = failures;
+	}
+
+	public void addFailure(int line, String message) {
+		this.failures.add(new Failure(line, message));
+	}
+
+	public static class Failure {
+
+		private int line;
+		private String message;
+
+		public Failure() {
+		}
+
+		public Failure(int line, String message) {
+			this.line = line;
+			this.message = message;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public void setLine(int line) {
+			this.line = line;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public void setMessage(String message) {
+			this.message = message;
+		}
+	}
+
+}
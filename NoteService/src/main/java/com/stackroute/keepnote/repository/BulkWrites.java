@@ -0,0 +1,46 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.bson.Document;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+
+/*
+ * This class executes unordered bulk writes for the note repositories. In an
+ * unordered bulk write Mongo keeps going after a failed write, and reports every
+ * failure with the position of the write in the batch.
+ */
+final class BulkWrites {
+
+	private BulkWrites() {
+	}
+
+	private static final int DUPLICATE_KEY = 11000;
+
+	/*
+	 * This method returns the reason of every failed write, by position of the
+	 * write in the batch.
+	 */
+	static Map<Integer, String> unordered(MongoCollection<Document> collection, List<WriteModel<Document>> writes) {
+		Map<Integer, String> failed = new TreeMap<>();
+		if (writes.isEmpty()) {
+			return failed;
+		}
+		try {
+			collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+		} catch (MongoBulkWriteException e) {
+			for (BulkWriteError error : e.getWriteErrors()) {
+				failed.put(error.getIndex(), error.getCode() == DUPLICATE_KEY ? "noteId already exists" : error.getMessage());
+			}
+		}
+		return failed;
+	}
+
+}
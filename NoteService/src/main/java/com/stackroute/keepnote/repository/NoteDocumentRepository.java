@@ -0,0 +1,173 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Repository;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.stackroute.keepnote.model.Note;
+
+/*
+ * This class implements NoteRepositoryCustom for the layout where every note is
+ * stored as its own document in the "note" collection. The notes are looked up
+ * through a unique compound index on (noteCreatedBy, noteId), so no operation
+ * depends on the number of notes of the user and no user is capped by the
+ * document size limit.
+ *
+ * It is only registered when keepnote.note.storage is set to "document".
+ *
+ * The notes of a user are deleted keepnote.user.deletions.chunk-size at a time,
+ * so removing a user with many notes does not cause one long delete.
+ */
+@Repository
+@ConditionalOnProperty(name = "keepnote.note.storage", havingValue = "document")
+public class NoteDocumentRepository implements NoteRepositoryCustom {
+
+	public static final String COLLECTION = "note";
+
+	private final MongoTemplate mongoTemplate;
+	private final int deleteChunkSize;
+
+	@Autowired
+	public NoteDocumentRepository(MongoTemplate mongoTemplate,
+			@Value("${keepnote.user.deletions.chunk-size:1000}") int deleteChunkSize) {
+		this.mongoTemplate = mongoTemplate;
+		this.deleteChunkSize = deleteChunkSize;
+	}
+
+	@PostConstruct
+	public void ensureIndex() {
+		this.mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index().on("noteCreatedBy", Sort.Direction.ASC)
+				.on("noteId", Sort.Direction.ASC).unique().named("noteCreatedBy_noteId"));
+	}
+
+	public boolean pushNote(Note note) {
+		try {
+			this.mongoTemplate.insert(note, COLLECTION);
+			return true;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	public Map<Integer, String> pushNotes(List<Note> notes) {
+		List<WriteModel<Document>> writes = new ArrayList<>(notes.size());
+		for (Note note : notes) {
+			Document document = new Document();
+			this.mongoTemplate.getConverter().write(note, document);
+			writes.add(new InsertOneModel<Document>(document));
+		}
+		return BulkWrites.unordered(this.mongoTemplate.getCollection(COLLECTION), writes);
+	}
+
+	/*
+	 * The note is only replaced while its version is still the expected one. Notes
+	 * without a version count as version 0.
+	 */
+	public boolean setNote(String userId, Note note, long expectedVersion) {
+		note.setNoteCreatedBy(userId);
+		note.setNoteVersion(expectedVersion + 1);
+		Document document = new Document();
+		this.mongoTemplate.getConverter().write(note, document);
+		Bson version = expectedVersion == 0 ? Filters.in("noteVersion", 0L, null)
+				: Filters.eq("noteVersion", expectedVersion);
+		UpdateResult result = this.mongoTemplate.getCollection(COLLECTION).replaceOne(
+				Filters.and(Filters.eq("noteCreatedBy", userId), Filters.eq("noteId", note.getNoteId()), version),
+				document);
+		return result.getMatchedCount() > 0;
+	}
+
+	public boolean pullNote(String userId, int noteId) {
+		DeleteResult result = this.mongoTemplate.remove(byNote(userId, noteId), COLLECTION);
+		return result.getDeletedCount() > 0;
+	}
+
+	public Note findNote(String userId, int noteId) {
+		return this.mongoTemplate.findOne(byNote(userId, noteId), Note.class, COLLECTION);
+	}
+
+	public int findMaxNoteId(String userId) {
+		Query query = new Query(Criteria.where("noteCreatedBy").is(userId))
+				.with(Sort.by(Sort.Direction.DESC, "noteId")).limit(1);
+		query.fields().include("noteId");
+		Note note = this.mongoTemplate.findOne(query, Note.class, COLLECTION);
+		return note == null ? 0 : note.getNoteId();
+	}
+
+	public List<Note> findNotes(String userId) {
+		Query query = new Query(Criteria.where("noteCreatedBy").is(userId)).with(Sort.by("noteId"));
+		return this.mongoTemplate.find(query, Note.class, COLLECTION);
+	}
+
+	public boolean deleteNotes(String userId) {
+		return delete(Criteria.where("noteCreatedBy").is(userId)) > 0;
+	}
+
+	public long deleteNotesCreatedBefore(String userId, Date date) {
+		return delete(Criteria.where("noteCreatedBy").is(userId).orOperator(
+				Criteria.where("noteCreationDate").lt(date), Criteria.where("noteCreationDate").is(null)));
+	}
+
+	/*
+	 * This is a range scan on the (noteCreatedBy, noteId) index, so the cost of a
+	 * page does not depend on how many notes the user has.
+	 */
+	public CloseableIterator<Note> streamNoteSummaries(String userId, int afterNoteId, int limit) {
+		Query query = new Query(Criteria.where("noteCreatedBy").is(userId).and("noteId").gt(afterNoteId))
+				.with(Sort.by("noteId")).limit(limit);
+		query.fields().exclude("noteContent");
+		return this.mongoTemplate.stream(query, Note.class, COLLECTION);
+	}
+
+	public CloseableIterator<Note> streamNotes(String userId) {
+		Query query = new Query(Criteria.where("noteCreatedBy").is(userId)).with(Sort.by("noteId"));
+		return this.mongoTemplate.stream(query, Note.class, COLLECTION);
+	}
+
+	public CloseableIterator<Note> streamAllNotes() {
+		return this.mongoTemplate.stream(new Query(), Note.class, COLLECTION);
+	}
+
+	private Query byNote(String userId, int noteId) {
+		return new Query(Criteria.where("noteCreatedBy").is(userId).and("noteId").is(noteId));
+	}
+
+	private long delete(Criteria notes) {
+		long deleted = 0;
+		List<Object> ids;
+		do {
+			Query chunk = new Query(notes).limit(this.deleteChunkSize);
+			chunk.fields().include("_id");
+			ids = this.mongoTemplate.find(chunk, Document.class, COLLECTION).stream()
+					.map(note -> note.get("_id")).collect(Collectors.toList());
+			if (!ids.isEmpty()) {
+				DeleteResult result = this.mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), COLLECTION);
+				deleted += result.getDeletedCount();
+			}
+		} while (ids.size() == this.deleteChunkSize);
+		return deleted;
+	}
+
+}
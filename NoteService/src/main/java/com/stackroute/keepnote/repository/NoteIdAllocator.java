@@ -0,0 +1,129 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.function.IntSupplier;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/*
+ * This class hands out the noteIds of new notes, one sequence per user.
+ *
+ * The sequence of a user is a counter document {_id: userId, next: lastNoteId} in
+ * the "note_sequence" collection. Instead of one id, every round trip reserves a
+ * block of keepnote.note.id-block-size ids with a single findAndModify $inc, so
+ * the counter is never read and written back. The remaining ids of the block are
+ * handed out from memory, and most allocations do not touch the database at all.
+ *
+ * Since every block is reserved atomically, the ids are unique across threads
+ * and service instances. Ids of a block which was not used up, because the
+ * service stopped or the block was evicted, are skipped, so the noteIds of a
+ * user increase but may have gaps.
+ */
+@Component
+public class NoteIdAllocator {
+
+	public static final String COLLECTION = "note_sequence";
+
+	private final MongoTemplate mongoTemplate;
+	private final int blockSize;
+	private final Cache<String, Block> blocks;
+
+	@Autowired
+	public NoteIdAllocator(MongoTemplate mongoTemplate,
+			@Value("${keepnote.note.id-block-size:20}") int blockSize,
+			@Value("${keepnote.note.id-block-cache-size:10000}") long cacheSize) {
+		this.mongoTemplate = mongoTemplate;
+		this.blockSize = blockSize;
+		this.blocks = Caffeine.newBuilder().maximumSize(cacheSize).build();
+	}
+
+	/*
+	 * This method returns the next noteId of the given user. When the user has no
+	 * sequence yet, it is started after highestNoteId, the highest noteId the user
+	 * already has, so notes created before the sequence existed keep their ids.
+	 */
+	public int allocate(String userId, IntSupplier highestNoteId) {
+		while (true) {
+			Block block = this.blocks.get(userId, key -> new Block());
+			synchronized (block) {
+				if (block.retired) {
+					continue;
+				}
+				if (block.next > block.last) {
+					block.last = reserveBlock(userId, highestNoteId);
+					block.next = block.last - this.blockSize + 1;
+				}
+				return block.next++;
+			}
+		}
+	}
+
+	/*
+	 * This method makes sure that the sequence of the given user continues after
+	 * noteId. It is used when notes are written with their own noteIds, e.g. on
+	 * import. When the user has no sequence yet, it is started after the higher of
+	 * noteId and highestNoteId, like in allocate, since the user may have notes
+	 * above the written ones. The block cached by this instance may contain
+	 * noteId, so it is retired under its lock: a thread which fetched it before
+	 * sees the mark and fetches the new block, which is only reserved once the
+	 * sequence has moved.
+	 */
+	public void reserve(String userId, int noteId, IntSupplier highestNoteId) {
+		while (true) {
+			Block block = this.blocks.get(userId, key -> new Block());
+			synchronized (block) {
+				if (block.retired) {
+					continue;
+				}
+				if (this.mongoTemplate.updateFirst(byUser(userId), new Update().max("next", noteId), COLLECTION)
+						.getMatchedCount() == 0) {
+					this.mongoTemplate.upsert(byUser(userId),
+							new Update().max("next", Math.max(noteId, highestNoteId.getAsInt())), COLLECTION);
+				}
+				block.retired = true;
+				this.blocks.invalidate(userId);
+				return;
+			}
+		}
+	}
+
+	private int reserveBlock(String userId, IntSupplier highestNoteId) {
+		Document sequence = increment(userId);
+		if (sequence == null) {
+			this.mongoTemplate.upsert(byUser(userId), new Update().max("next", highestNoteId.getAsInt()), COLLECTION);
+			sequence = increment(userId);
+		}
+		return sequence.getInteger("next");
+	}
+
+	private Document increment(String userId) {
+		return this.mongoTemplate.findAndModify(byUser(userId), new Update().inc("next", this.blockSize),
+				FindAndModifyOptions.options().returnNew(true), Document.class, COLLECTION);
+	}
+
+	private Query byUser(String userId) {
+		return new Query(Criteria.where("_id").is(userId));
+	}
+
+	/*
+	 * The ids next..last are reserved for this instance and not yet handed out. A
+	 * retired block is no longer cached and hands out no more ids.
+	 */
+	private static final class Block {
+
+		private int next = 1;
+		private int last = 0;
+		private boolean retired;
+	}
+
+}
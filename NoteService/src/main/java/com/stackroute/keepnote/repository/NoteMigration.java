@@ -0,0 +1,135 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteUser;
+
+/*
+ * This class copies the notes of the existing NoteUser documents into the "note"
+ * collection used by NoteDocumentRepository. The NoteUser documents are streamed
+ * through a cursor and the notes are written with unordered bulk upserts of
+ * keepnote.note.migration.batch-size notes, so neither side is ever held in
+ * memory as a whole.
+ *
+ * Every note is written with $setOnInsert only. A note which was already created
+ * or updated in the new layout is therefore never overwritten by its old copy,
+ * which allows the migration to run while the service is serving requests.
+ *
+ * A NoteUser whose notes have all been written is marked with the field
+ * "migratedAt" and skipped by every later run, so a note which its user deleted
+ * from the new layout is not copied back when the migration is run again or
+ * restarted. Only the notes of the users which were being copied when a run
+ * stopped are copied again. Notes written to a NoteUser after it was marked are
+ * not copied, so the migration is run once the service writes to the new layout
+ * (keepnote.note.storage=document).
+ *
+ * It runs once at startup when keepnote.note.migration.enabled is true.
+ */
+@Component
+@ConditionalOnProperty(name = "keepnote.note.migration.enabled", havingValue = "true")
+public class NoteMigration implements ApplicationRunner {
+
+	/* The field of a NoteUser whose notes were all copied, with the time they were. */
+	public static final String MIGRATED_AT = "migratedAt";
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final MongoTemplate mongoTemplate;
+	private final int batchSize;
+
+	@Autowired
+	public NoteMigration(MongoTemplate mongoTemplate,
+			@Value("${keepnote.note.migration.batch-size:500}") int batchSize) {
+		this.mongoTemplate = mongoTemplate;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		long migrated = migrate();
+		logger.info("Migrated {} notes to the {} collection", migrated, NoteDocumentRepository.COLLECTION);
+	}
+
+	/*
+	 * This method returns the number of notes which did not exist yet in the new
+	 * layout.
+	 */
+	public long migrate() {
+		long migrated = 0;
+		int pending = 0;
+		BulkOperations bulk = newBatch();
+		/* The users whose notes are all in the batch, marked once it is written. */
+		List<String> completed = new ArrayList<>();
+		Query notMigrated = new Query(Criteria.where(MIGRATED_AT).exists(false));
+		try (CloseableIterator<NoteUser> noteUsers = this.mongoTemplate.stream(notMigrated, NoteUser.class)) {
+			while (noteUsers.hasNext()) {
+				NoteUser noteUser = noteUsers.next();
+				if (noteUser.getNotes() != null) {
+					for (Note note : noteUser.getNotes()) {
+						note.setNoteCreatedBy(noteUser.getUserId());
+						bulk.upsert(byNote(note), insertOnly(note));
+						if (++pending == this.batchSize) {
+							migrated += bulk.execute().getUpserts().size();
+							markMigrated(completed);
+							bulk = newBatch();
+							pending = 0;
+						}
+					}
+				}
+				completed.add(noteUser.getUserId());
+			}
+		}
+		if (pending > 0) {
+			migrated += bulk.execute().getUpserts().size();
+		}
+		markMigrated(completed);
+		return migrated;
+	}
+
+	private void markMigrated(List<String> userIds) {
+		if (!userIds.isEmpty()) {
+			this.mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(userIds)),
+					new Update().set(MIGRATED_AT, new Date()), NoteUser.class);
+			userIds.clear();
+		}
+	}
+
+	private BulkOperations newBatch() {
+		return this.mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class,
+				NoteDocumentRepository.COLLECTION);
+	}
+
+	private Query byNote(Note note) {
+		return new Query(Criteria.where("noteCreatedBy").is(note.getNoteCreatedBy()).and("noteId").is(note.getNoteId()));
+	}
+
+	private Update insertOnly(Note note) {
+		Document document = new Document();
+		this.mongoTemplate.getConverter().write(note, document);
+		Update update = new Update();
+		for (String key : document.keySet()) {
+			update.setOnInsert(key, document.get(key));
+		}
+		return update;
+	}
+
+}
@@ -8,8 +8,9 @@ import com.stackroute.keepnote.model.NoteUser;
 /*
 * This class is implementing the MongoRepository interface for Note.
 * Annotate this class with @Repository annotation
+* Single-note writes are provided by NoteRepositoryCustom.
 * */
 @Repository
-public interface NoteRepository extends MongoRepository<NoteUser, String> {
+public interface NoteRepository extends MongoRepository<NoteUser, String>, NoteRepositoryCustom {
 
 }
@@ -0,0 +1,100 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.util.CloseableIterator;
+
+import com.stackroute.keepnote.model.Note;
+
+/*
+ * This interface declares the single-note operations used by the NoteService.
+ * Each of these methods sends only the affected note to or from the database
+ * instead of reading and rewriting the complete NoteUser. It is implemented
+ * once for the embedded layout (NoteRepositoryImpl) and once for the layout
+ * storing each note as its own document (NoteDocumentRepository).
+ */
+public interface NoteRepositoryCustom {
+
+	/*
+	 * This method should append the note to the notes of its creator, creating the
+	 * NoteUser document if it does not exist yet. It should return false if a note
+	 * with the same noteId already exists for the user.
+	 */
+	boolean pushNote(Note note);
+
+	/*
+	 * This method should append the given notes like pushNote, in a single
+	 * unordered bulk write. A note which cannot be written does not prevent the
+	 * others from being written. It should return the reason of every note which
+	 * was not written, by position of the note in the list.
+	 */
+	Map<Integer, String> pushNotes(List<Note> notes);
+
+	/*
+	 * This method should replace the note having the same noteId in the notes of
+	 * the given user, but only while that note still has expectedVersion. The note
+	 * is written with version expectedVersion + 1. It should return false if no
+	 * such note exists or the note has been updated in the meantime.
+	 */
+	boolean setNote(String userId, Note note, long expectedVersion);
+
+	/*
+	 * This method should remove the note with the given noteId from the notes of
+	 * the given user. It should return false if no such note exists.
+	 */
+	boolean pullNote(String userId, int noteId);
+
+	/*
+	 * This method should return the note with the given noteId created by the
+	 * given user, or null if no such note exists.
+	 */
+	Note findNote(String userId, int noteId);
+
+	/*
+	 * This method should return the highest noteId of the notes created by the
+	 * given user, or 0 if the user has no notes.
+	 */
+	int findMaxNoteId(String userId);
+
+	/*
+	 * This method should return all notes created by the given user. It should
+	 * return an empty list if the user has no notes.
+	 */
+	List<Note> findNotes(String userId);
+
+	/*
+	 * This method should remove all notes created by the given user. It should
+	 * return false if the user has no notes.
+	 */
+	boolean deleteNotes(String userId);
+
+	/*
+	 * This method should remove the notes created by the given user before the
+	 * given date, and the notes without a noteCreationDate. It should return how
+	 * many notes were removed.
+	 */
+	long deleteNotesCreatedBefore(String userId, Date date);
+
+	/*
+	 * This method should stream at most limit notes created by the given user whose
+	 * noteId is greater than afterNoteId, ordered by noteId. The noteContent of the
+	 * notes is not read. The returned iterator has to be closed by the caller.
+	 */
+	CloseableIterator<Note> streamNoteSummaries(String userId, int afterNoteId, int limit);
+
+	/*
+	 * This method should stream all notes created by the given user, ordered by
+	 * noteId. The returned iterator has to be closed by the caller.
+	 */
+	CloseableIterator<Note> streamNotes(String userId);
+
+	/*
+	 * This method should stream the notes of all users, including their
+	 * noteContent and noteCreatedBy. The returned iterator has to be closed by the
+	 * caller.
+	 */
+	CloseableIterator<Note> streamAllNotes();
+
+}
@@ -0,0 +1,215 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteUser;
+
+/*
+ * This class implements NoteRepositoryCustom for the embedded layout, where all
+ * notes of a user are kept in the notes array of one NoteUser document. It uses
+ * positional updates and projections through MongoTemplate. Spring Data picks
+ * it up as the custom fragment of NoteRepository because of the "Impl" postfix.
+ */
+public class NoteRepositoryImpl implements NoteRepositoryCustom {
+
+	private final MongoTemplate mongoTemplate;
+
+	@Autowired
+	public NoteRepositoryImpl(MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	/*
+	 * The query only matches a NoteUser which does not already hold the noteId, so
+	 * the $push never produces duplicates. When the user already holds the noteId
+	 * the upsert tries to insert a second document with the same _id, which is
+	 * reported by Mongo as a duplicate key.
+	 */
+	public boolean pushNote(Note note) {
+		Query query = new Query(Criteria.where("_id").is(note.getNoteCreatedBy())
+				.and("notes.noteId").ne(note.getNoteId()));
+		Update update = new Update().push("notes", note);
+		try {
+			UpdateResult result = this.mongoTemplate.upsert(query, update, NoteUser.class);
+			return result.getMatchedCount() > 0 || result.getUpsertedId() != null;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	public Map<Integer, String> pushNotes(List<Note> notes) {
+		List<WriteModel<Document>> writes = new ArrayList<>(notes.size());
+		for (Note note : notes) {
+			Document document = new Document();
+			this.mongoTemplate.getConverter().write(note, document);
+			writes.add(new UpdateOneModel<Document>(
+					Filters.and(Filters.eq("_id", note.getNoteCreatedBy()), Filters.ne("notes.noteId", note.getNoteId())),
+					Updates.push("notes", document), new UpdateOptions().upsert(true)));
+		}
+		return BulkWrites.unordered(this.mongoTemplate.getCollection(this.mongoTemplate.getCollectionName(NoteUser.class)),
+				writes);
+	}
+
+	/*
+	 * notes.$ refers to the array element matched by the $elemMatch criteria, so
+	 * only that element is replaced, and only if its version is still the
+	 * expected one. Notes without a version count as version 0.
+	 */
+	public boolean setNote(String userId, Note note, long expectedVersion) {
+		Criteria element = Criteria.where("noteId").is(note.getNoteId());
+		if (expectedVersion == 0) {
+			element = element.and("noteVersion").in(0L, null);
+		} else {
+			element = element.and("noteVersion").is(expectedVersion);
+		}
+		Query query = new Query(Criteria.where("_id").is(userId).and("notes").elemMatch(element));
+		note.setNoteVersion(expectedVersion + 1);
+		Update update = new Update().set("notes.$", note);
+		UpdateResult result = this.mongoTemplate.updateFirst(query, update, NoteUser.class);
+		return result.getMatchedCount() > 0;
+	}
+
+	public boolean pullNote(String userId, int noteId) {
+		Query query = new Query(Criteria.where("_id").is(userId).and("notes.noteId").is(noteId));
+		Update update = new Update().pull("notes", new BasicDBObject("noteId", noteId));
+		UpdateResult result = this.mongoTemplate.updateFirst(query, update, NoteUser.class);
+		return result.getModifiedCount() > 0;
+	}
+
+	/*
+	 * The $elemMatch projection makes Mongo return only the matching note, so the
+	 * remaining notes of the user are neither transferred nor deserialized.
+	 */
+	public Note findNote(String userId, int noteId) {
+		Query query = new Query(Criteria.where("_id").is(userId).and("notes.noteId").is(noteId));
+		query.fields().elemMatch("notes", Criteria.where("noteId").is(noteId));
+		NoteUser noteUser = this.mongoTemplate.findOne(query, NoteUser.class);
+		if (noteUser == null || noteUser.getNotes() == null || noteUser.getNotes().isEmpty()) {
+			return null;
+		}
+		return noteUser.getNotes().get(0);
+	}
+
+	public int findMaxNoteId(String userId) {
+		Aggregation aggregation = Aggregation.newAggregation(
+				Aggregation.match(Criteria.where("_id").is(userId)),
+				Aggregation.unwind("notes"),
+				Aggregation.group("_id").max("notes.noteId").as("noteId"));
+		Document result = this.mongoTemplate.aggregate(aggregation,
+				this.mongoTemplate.getCollectionName(NoteUser.class), Document.class).getUniqueMappedResult();
+		return result == null ? 0 : result.getInteger("noteId");
+	}
+
+	public List<Note> findNotes(String userId) {
+		NoteUser noteUser = this.mongoTemplate.findById(userId, NoteUser.class);
+		if (noteUser == null || noteUser.getNotes() == null) {
+			return new ArrayList<>();
+		}
+		return noteUser.getNotes();
+	}
+
+	public boolean deleteNotes(String userId) {
+		DeleteResult result = this.mongoTemplate.remove(new Query(Criteria.where("_id").is(userId)), NoteUser.class);
+		return result.getDeletedCount() > 0;
+	}
+
+	/*
+	 * The notes are pulled in one update, which returns the NoteUser as it was, so
+	 * the removed notes are counted from it. The NoteUser is removed once it has
+	 * no notes left.
+	 */
+	public long deleteNotesCreatedBefore(String userId, Date date) {
+		Query user = new Query(Criteria.where("_id").is(userId));
+		Update pull = new Update().pull("notes", new BasicDBObject("$or",
+				Arrays.asList(new BasicDBObject("noteCreationDate", new BasicDBObject("$lt", date)),
+						new BasicDBObject("noteCreationDate", null))));
+		NoteUser noteUser = this.mongoTemplate.findAndModify(user, pull, NoteUser.class);
+		this.mongoTemplate.remove(new Query(Criteria.where("_id").is(userId).and("notes").size(0)), NoteUser.class);
+		if (noteUser == null || noteUser.getNotes() == null) {
+			return 0;
+		}
+		return noteUser.getNotes().stream()
+				.filter(note -> note.getNoteCreationDate() == null || note.getNoteCreationDate().before(date)).count();
+	}
+
+	/*
+	 * The notes of the user are unwound on the server and only the requested page
+	 * is sent back, projected to the fields shown in list views.
+	 */
+	public CloseableIterator<Note> streamNoteSummaries(String userId, int afterNoteId, int limit) {
+		Aggregation aggregation = Aggregation.newAggregation(
+				Aggregation.match(Criteria.where("_id").is(userId)),
+				Aggregation.unwind("notes"),
+				Aggregation.match(Criteria.where("notes.noteId").gt(afterNoteId)),
+				Aggregation.sort(Sort.Direction.ASC, "notes.noteId"),
+				Aggregation.limit(limit),
+				projectNote(false));
+		return this.mongoTemplate.aggregateStream(aggregation, this.mongoTemplate.getCollectionName(NoteUser.class),
+				Note.class);
+	}
+
+	public CloseableIterator<Note> streamNotes(String userId) {
+		Aggregation aggregation = Aggregation.newAggregation(
+				Aggregation.match(Criteria.where("_id").is(userId)),
+				Aggregation.unwind("notes"),
+				Aggregation.sort(Sort.Direction.ASC, "notes.noteId"),
+				projectNote(true));
+		return this.mongoTemplate.aggregateStream(aggregation, this.mongoTemplate.getCollectionName(NoteUser.class),
+				Note.class);
+	}
+
+	public CloseableIterator<Note> streamAllNotes() {
+		Aggregation aggregation = Aggregation.newAggregation(
+				Aggregation.unwind("notes"),
+				projectNote(true));
+		return this.mongoTemplate.aggregateStream(aggregation, this.mongoTemplate.getCollectionName(NoteUser.class),
+				Note.class);
+	}
+
+	/*
+	 * This method lifts the fields of an unwound note to the top level, so the
+	 * result can be read as a Note. The creator is taken from the owning NoteUser,
+	 * like NoteMigration does, since older notes may not carry noteCreatedBy.
+	 */
+	private ProjectionOperation projectNote(boolean withContent) {
+		ProjectionOperation projection = Aggregation.project()
+				.and("notes.noteId").as("noteId")
+				.and("notes.noteTitle").as("noteTitle")
+				.and("notes.noteStatus").as("noteStatus")
+				.and("notes.noteCreationDate").as("noteCreationDate")
+				.and("notes.category").as("category")
+				.and("notes.reminders").as("reminders")
+				.and("_id").as("noteCreatedBy")
+				.and("notes.noteVersion").as("noteVersion");
+		if (withContent) {
+			projection = projection.and("notes.noteContent").as("noteContent");
+		}
+		return projection.andExclude("_id");
+	}
+
+}
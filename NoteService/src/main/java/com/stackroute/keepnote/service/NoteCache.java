@@ -0,0 +1,119 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stackroute.keepnote.model.Note;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/*
+ * This class keeps recently read notes in memory, keyed by (userId, noteId).
+ *
+ * The cache is bounded by the total length of the cached titles and contents
+ * (keepnote.note.cache.maximum-weight characters) rather than by the number of
+ * notes, so a few very large notes cannot push the memory use beyond the bound.
+ * Caffeine evicts with W-TinyLFU, which keeps frequently read notes even when a
+ * burst of one-off reads goes through the cache.
+ *
+ * NoteServiceImpl reads through this cache and invalidates the affected entries
+ * on every write. The hit, miss and eviction counters are published as "notes"
+ * cache metrics.
+ */
+@Component
+public class NoteCache implements MeterBinder {
+
+	private final Cache<NoteKey, Note> cache;
+
+	public NoteCache(@Value("${keepnote.note.cache.maximum-weight:16777216}") long maximumWeight) {
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maximumWeight)
+				.weigher((NoteKey key, Note note) -> weigh(note))
+				.recordStats()
+				.build();
+	}
+
+	/*
+	 * This method returns the cached note, or loads it with the given loader. A
+	 * note which does not exist (null) is not cached.
+	 */
+	public Note get(String userId, int noteId, Function<NoteKey, Note> loader) {
+		return this.cache.get(new NoteKey(userId, noteId), loader);
+	}
+
+	public void invalidate(String userId, int noteId) {
+		this.cache.invalidate(new NoteKey(userId, noteId));
+	}
+
+	/*
+	 * This method walks the whole cache. It is only used when all notes of a user
+	 * are deleted, which is rare compared to single-note operations.
+	 */
+	public void invalidateUser(String userId) {
+		this.cache.asMap().keySet().removeIf(key -> key.getUserId().equals(userId));
+	}
+
+	public Cache<NoteKey, Note> getCache() {
+		return this.cache;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, this.cache, "notes");
+	}
+
+	private static int weigh(Note note) {
+		int weight = 1;
+		if (note.getNoteTitle() != null) {
+			weight += note.getNoteTitle().length();
+		}
+		if (note.getNoteContent() != null) {
+			weight += note.getNoteContent().length();
+		}
+		return weight;
+	}
+
+	public static final class NoteKey {
+
+		private final String userId;
+		private final int noteId;
+
+		public NoteKey(String userId, int noteId) {
+			this.userId = userId;
+			this.noteId = noteId;
+		}
+
+		public String getUserId() {
+			return userId;
+		}
+
+		public int getNoteId() {
+			return noteId;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof NoteKey)) {
+				return false;
+			}
+			NoteKey other = (NoteKey) o;
+			return noteId == other.noteId && userId.equals(other.userId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(userId, noteId);
+		}
+	}
+
+}
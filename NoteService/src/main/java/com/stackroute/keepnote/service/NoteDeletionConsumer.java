@@ -0,0 +1,40 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.repository.NoteDocumentRepository;
+import com.stackroute.keepnote.userdeletion.UserDeletionConsumer;
+
+/*
+ * This class purges the notes which deleted users created before they were
+ * deleted, see UserDeletionConsumer of keepnote-user-deletion. The notes are removed
+ * through NoteService.deleteNotesCreatedBefore for either layout, so they also
+ * leave the NoteCache and the search index.
+ */
+@Component
+public class NoteDeletionConsumer extends UserDeletionConsumer {
+
+	public static final String CONSUMER = "notes";
+
+	private final NoteService noteService;
+
+	@Autowired
+	public NoteDeletionConsumer(MongoTemplate mongoTemplate, NoteService noteService,
+			@Value("${keepnote.user.deletions.batch-size:100}") int batchSize,
+			@Value("${keepnote.user.deletions.chunk-size:1000}") int chunkSize) {
+		super(mongoTemplate, CONSUMER, NoteDocumentRepository.COLLECTION, "noteCreatedBy", "noteCreationDate",
+				batchSize, chunkSize);
+		this.noteService = noteService;
+	}
+
+	@Override
+	public long purge(String userId, Date deletedAt) {
+		return this.noteService.deleteNotesCreatedBefore(userId, deletedAt == null ? new Date() : deletedAt);
+	}
+
+}
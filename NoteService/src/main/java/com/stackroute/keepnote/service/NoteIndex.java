@@ -0,0 +1,408 @@
+package com.stackroute.keepnote.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.repository.NoteRepositoryCustom;
+
+/*
+ * This class keeps an in-process Lucene index over the noteTitle and noteContent
+ * of all notes, so notes can be searched without reading them from MongoDB.
+ *
+ * Every note is one Lucene document identified by "userId/noteId". The user is
+ * indexed as its own field and every search is restricted to it. Only noteId
+ * and noteTitle are stored, which is enough to return ranked summaries; the
+ * content is indexed but not stored.
+ *
+ * NoteServiceImpl updates the index after every successful write. A thread of
+ * the index reopens the searcher every keepnote.note.search.refresh-interval
+ * milliseconds when the index has changed, so a note can be found shortly after
+ * it was written and searches never wait for a reopen.
+ *
+ * The index is kept in memory unless keepnote.note.search.directory is set. On
+ * disk it is committed every keepnote.note.search.commit-interval seconds, on
+ * rebuild and on shutdown. Every commit records whether the index was closed
+ * cleanly; an index which is new, in memory, or was not closed cleanly after
+ * its last rebuild may miss writes and is stale (see isStale), and
+ * NoteIndexRebuild rebuilds it from the database at startup.
+ *
+ * A rebuild runs while the notes are written as usual. The notes and users
+ * written during the rebuild are recorded, and once all notes of the database
+ * are indexed they are read again and indexed in their current state, so the
+ * rebuild neither brings back a deleted note nor replaces a note with an older
+ * version. Nothing is committed or made visible to the searches before that.
+ */
+@Component
+public class NoteIndex {
+
+	private static final String ID = "id";
+	private static final String USER = "user";
+	private static final String NOTE_ID = "noteId";
+	private static final String TITLE = "title";
+	private static final String CONTENT = "content";
+	private static final float TITLE_BOOST = 2.0f;
+	/* The commit data telling whether the index was closed cleanly after its last rebuild. */
+	private static final String STATE = "state";
+	private static final String OPEN = "open";
+	private static final String CLOSED = "closed";
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final Analyzer analyzer = new StandardAnalyzer();
+	private final Directory directory;
+	private final IndexWriter writer;
+	private final SearcherManager searcherManager;
+	private volatile boolean stale;
+	private volatile boolean rebuilding;
+	/* The "userId/noteId" of the notes and the users written while the index is rebuilt. */
+	private volatile Set<String> writtenNotes;
+	private volatile Set<String> writtenUsers;
+	private ScheduledExecutorService executor;
+
+	@Autowired
+	public NoteIndex(@Value("${keepnote.note.search.directory:}") String path,
+			@Value("${keepnote.note.search.refresh-interval:1000}") long refreshMillis,
+			@Value("${keepnote.note.search.commit-interval:60}") long commitInterval) throws IOException {
+		this(path.isEmpty() ? new RAMDirectory() : FSDirectory.open(Paths.get(path)));
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "note-index");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.scheduleWithFixedDelay(this::refreshChanges, refreshMillis, refreshMillis,
+				TimeUnit.MILLISECONDS);
+		this.executor.scheduleWithFixedDelay(this::commitChanges, commitInterval, commitInterval, TimeUnit.SECONDS);
+	}
+
+	/*
+	 * The index in directory is opened without a thread of its own; the searcher
+	 * only sees the writes after refresh or rebuild.
+	 */
+	public NoteIndex(Directory directory) throws IOException {
+		this.directory = directory;
+		this.stale = !DirectoryReader.indexExists(directory)
+				|| !CLOSED.equals(SegmentInfos.readLatestCommit(directory).getUserData().get(STATE));
+		this.writer = new IndexWriter(directory, new IndexWriterConfig(this.analyzer));
+		this.writer.setLiveCommitData(Collections.singletonMap(STATE, OPEN).entrySet());
+		this.writer.commit();
+		this.searcherManager = new SearcherManager(this.writer, null);
+	}
+
+	/* Whether the index may miss notes and has to be rebuilt from the database. */
+	public boolean isStale() {
+		return this.stale;
+	}
+
+	/*
+	 * This method adds the note of the given user to the index, or replaces its
+	 * previous version.
+	 */
+	public void index(String userId, Note note) {
+		try {
+			this.writer.updateDocument(idTerm(userId, note.getNoteId()), toDocument(userId, note));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		record(this.writtenNotes, id(userId, note.getNoteId()));
+	}
+
+	public void delete(String userId, int noteId) {
+		try {
+			this.writer.deleteDocuments(idTerm(userId, noteId));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		record(this.writtenNotes, id(userId, noteId));
+	}
+
+	public void deleteUser(String userId) {
+		try {
+			this.writer.deleteDocuments(new Term(USER, userId));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		record(this.writtenUsers, userId);
+	}
+
+	/*
+	 * This method replaces the whole index with the notes of the given store and
+	 * commits it. The notes written meanwhile are read again from the store
+	 * afterwards (see the comment of the class). It returns the number of notes
+	 * indexed from the store.
+	 */
+	public synchronized long rebuild(NoteRepositoryCustom store) {
+		this.writtenNotes = ConcurrentHashMap.newKeySet();
+		this.writtenUsers = ConcurrentHashMap.newKeySet();
+		this.rebuilding = true;
+		try {
+			this.writer.deleteAll();
+			long indexed = 0;
+			try (CloseableIterator<Note> notes = store.streamAllNotes()) {
+				while (notes.hasNext()) {
+					Note note = notes.next();
+					this.writer.updateDocument(idTerm(note.getNoteCreatedBy(), note.getNoteId()),
+							toDocument(note.getNoteCreatedBy(), note));
+					indexed++;
+				}
+			}
+			reindexWritten(store);
+			this.writer.commit();
+			this.stale = false;
+			this.searcherManager.maybeRefreshBlocking();
+			return indexed;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			this.rebuilding = false;
+			this.writtenNotes = null;
+			this.writtenUsers = null;
+		}
+	}
+
+	/*
+	 * A note or user is removed from its set before it is read again, so a write
+	 * racing with the read records it once more and it is read again in the next
+	 * round. The rounds end when no write happened during the last one.
+	 */
+	private void reindexWritten(NoteRepositoryCustom store) throws IOException {
+		while (!this.writtenUsers.isEmpty() || !this.writtenNotes.isEmpty()) {
+			for (String userId : drain(this.writtenUsers)) {
+				this.writer.deleteDocuments(new Term(USER, userId));
+				try (CloseableIterator<Note> notes = store.streamNotes(userId)) {
+					while (notes.hasNext()) {
+						Note note = notes.next();
+						this.writer.updateDocument(idTerm(userId, note.getNoteId()), toDocument(userId, note));
+					}
+				}
+			}
+			for (String id : drain(this.writtenNotes)) {
+				int separator = id.lastIndexOf('/');
+				String userId = id.substring(0, separator);
+				int noteId = Integer.parseInt(id.substring(separator + 1));
+				Note note = store.findNote(userId, noteId);
+				if (note == null) {
+					this.writer.deleteDocuments(idTerm(userId, noteId));
+				} else {
+					this.writer.updateDocument(idTerm(userId, noteId), toDocument(userId, note));
+				}
+			}
+		}
+	}
+
+	private static List<String> drain(Set<String> written) {
+		List<String> drained = new ArrayList<>();
+		Iterator<String> iterator = written.iterator();
+		while (iterator.hasNext()) {
+			drained.add(iterator.next());
+			iterator.remove();
+		}
+		return drained;
+	}
+
+	private static void record(Set<String> written, String key) {
+		if (written != null) {
+			written.add(key);
+		}
+	}
+
+	/* This method makes all writes so far visible to the searches. */
+	public void refresh() {
+		try {
+			this.searcherManager.maybeRefreshBlocking();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * This method returns at most limit notes of the given user, best match first.
+	 * All words of the query have to match the title or the content, and a match in
+	 * the title ranks higher. A word ending with '*' matches every word starting
+	 * with it. The returned notes only carry noteId, noteTitle and noteCreatedBy.
+	 */
+	public List<Note> search(String userId, String queryText, int limit) {
+		Query query = parse(userId, queryText);
+		List<Note> notes = new ArrayList<>();
+		if (query == null) {
+			return notes;
+		}
+		try {
+			IndexSearcher searcher = this.searcherManager.acquire();
+			try {
+				for (ScoreDoc hit : searcher.search(query, limit).scoreDocs) {
+					Document document = searcher.doc(hit.doc);
+					Note note = new Note();
+					note.setNoteId(document.getField(NOTE_ID).numericValue().intValue());
+					note.setNoteTitle(document.get(TITLE));
+					note.setNoteCreatedBy(userId);
+					notes.add(note);
+				}
+			} finally {
+				this.searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return notes;
+	}
+
+	/*
+	 * The index is marked as closed cleanly only when it was not stale, so an
+	 * index which was never rebuilt is rebuilt at the next start as well.
+	 */
+	@PreDestroy
+	public void close() throws IOException {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+		if (!this.stale) {
+			this.writer.setLiveCommitData(Collections.singletonMap(STATE, CLOSED).entrySet());
+		}
+		this.searcherManager.close();
+		this.writer.close();
+		this.directory.close();
+	}
+
+	/* While the index is rebuilt, the searches keep the previous index until the rebuild is done. */
+	private void refreshChanges() {
+		if (this.rebuilding) {
+			return;
+		}
+		try {
+			this.searcherManager.maybeRefresh();
+		} catch (IOException | RuntimeException e) {
+			logger.warn("The note index could not be reopened, it is tried again: {}", e.toString());
+		}
+	}
+
+	/* A rebuild which is not done yet must not be committed, see rebuild. */
+	private void commitChanges() {
+		if (this.rebuilding) {
+			return;
+		}
+		try {
+			if (this.writer.hasUncommittedChanges()) {
+				this.writer.commit();
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.warn("The note index could not be committed, it is tried again: {}", e.toString());
+		}
+	}
+
+	/*
+	 * The query is analyzed with the same analyzer as the notes, so it matches
+	 * regardless of case and punctuation. It returns null when the query has no
+	 * searchable word.
+	 */
+	private Query parse(String userId, String queryText) {
+		BooleanQuery.Builder words = new BooleanQuery.Builder();
+		boolean empty = true;
+		for (String word : queryText.trim().split("\\s+")) {
+			boolean prefix = word.endsWith("*");
+			for (String token : analyze(word)) {
+				words.add(match(token, prefix), BooleanClause.Occur.MUST);
+				empty = false;
+			}
+		}
+		if (empty) {
+			return null;
+		}
+		return new BooleanQuery.Builder()
+				.add(new TermQuery(new Term(USER, userId)), BooleanClause.Occur.FILTER)
+				.add(words.build(), BooleanClause.Occur.MUST)
+				.build();
+	}
+
+	private Query match(String token, boolean prefix) {
+		Query title = prefix ? new PrefixQuery(new Term(TITLE, token)) : new TermQuery(new Term(TITLE, token));
+		Query content = prefix ? new PrefixQuery(new Term(CONTENT, token)) : new TermQuery(new Term(CONTENT, token));
+		return new BooleanQuery.Builder()
+				.add(new BoostQuery(title, TITLE_BOOST), BooleanClause.Occur.SHOULD)
+				.add(content, BooleanClause.Occur.SHOULD)
+				.build();
+	}
+
+	private List<String> analyze(String text) {
+		List<String> tokens = new ArrayList<>();
+		try (TokenStream stream = this.analyzer.tokenStream(CONTENT, text)) {
+			CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken()) {
+				tokens.add(term.toString());
+			}
+			stream.end();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return tokens;
+	}
+
+	private static String id(String userId, int noteId) {
+		return userId + "/" + noteId;
+	}
+
+	private static Term idTerm(String userId, int noteId) {
+		return new Term(ID, id(userId, noteId));
+	}
+
+	private static Document toDocument(String userId, Note note) {
+		Document document = new Document();
+		document.add(new StringField(ID, id(userId, note.getNoteId()), Field.Store.NO));
+		document.add(new StringField(USER, userId, Field.Store.NO));
+		document.add(new StoredField(NOTE_ID, note.getNoteId()));
+		if (note.getNoteTitle() != null) {
+			document.add(new TextField(TITLE, note.getNoteTitle(), Field.Store.YES));
+		}
+		if (note.getNoteContent() != null) {
+			document.add(new TextField(CONTENT, note.getNoteContent(), Field.Store.NO));
+		}
+		return document;
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.stackroute.keepnote.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ * This class rebuilds the NoteIndex from the notes stored in MongoDB. The notes
+ * are streamed through a cursor, so they are never held in memory as a whole.
+ *
+ * It runs once at startup when the index is stale (see NoteIndex.isStale), i.e.
+ * always for the index kept in memory, or when keepnote.note.search.rebuild is
+ * true. Notes written while the rebuild runs are indexed by NoteServiceImpl as
+ * usual, and read again by the rebuild before it is published.
+ *
+ * Every instance of the service has an index of its own, which only sees the
+ * writes of that instance. When several instances run, the index is rebuilt
+ * every keepnote.note.search.rebuild-interval minutes, so it picks up the notes
+ * written through the other instances; 0 rebuilds it only at startup.
+ */
+@Component
+public class NoteIndexRebuild implements ApplicationRunner {
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	@Autowired
+	private NoteService noteService;
+
+	@Autowired
+	private NoteIndex noteIndex;
+
+	@Value("${keepnote.note.search.rebuild:false}")
+	private boolean rebuild;
+
+	@Value("${keepnote.note.search.rebuild-interval:0}")
+	private long rebuildInterval;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (this.rebuild || this.noteIndex.isStale()) {
+			rebuild();
+		}
+	}
+
+	@Scheduled(initialDelayString = "#{${keepnote.note.search.rebuild-interval:0} > 0 ? ${keepnote.note.search.rebuild-interval:0} * 60000 : 60000}",
+			fixedDelayString = "#{${keepnote.note.search.rebuild-interval:0} > 0 ? ${keepnote.note.search.rebuild-interval:0} * 60000 : 60000}")
+	public void rebuildPeriodically() {
+		if (this.rebuildInterval > 0) {
+			rebuild();
+		}
+	}
+
+	private void rebuild() {
+		long started = System.currentTimeMillis();
+		long indexed = this.noteService.rebuildSearchIndex();
+		logger.info("Indexed {} notes in {} ms", indexed, System.currentTimeMillis() - started);
+	}
+
+}
@@ -1,9 +1,14 @@
 package com.stackroute.keepnote.service;
 
 import com.stackroute.keepnote.exception.NoteNotFoundExeption;
+import com.stackroute.keepnote.exception.NoteVersionConflictException;
 import com.stackroute.keepnote.model.Note;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.util.CloseableIterator;
 
 
 public interface NoteService {
@@ -20,11 +25,26 @@ public interface NoteService {
 
     boolean deleteAllNotes(String userId) throws NoteNotFoundExeption;
 
-    Note updateNote(Note note, int id, String userId) throws NoteNotFoundExeption;
+    long deleteNotesCreatedBefore(String userId, Date date);
+
+    Note updateNote(Note note, int id, String userId) throws NoteNotFoundExeption, NoteVersionConflictException;
+
+    Note updateNote(Note note, int id, String userId, long expectedVersion)
+            throws NoteNotFoundExeption, NoteVersionConflictException;
 
     Note getNoteByNoteId(String userId,int noteId) throws NoteNotFoundExeption;
 
     List<Note> getAllNoteByUserId(String userId);
 
+    CloseableIterator<Note> getNotePageByUserId(String userId, int afterNoteId, int limit);
+
+    Map<Integer, String> createNotes(List<Note> notes);
+
+    CloseableIterator<Note> exportNotesByUserId(String userId);
+
+    List<Note> searchNotes(String userId, String query, int limit);
+
+    long rebuildSearchIndex();
+
 
 }
@@ -1,15 +1,21 @@
 package com.stackroute.keepnote.service;
 
-import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Service;
 
 import com.stackroute.keepnote.exception.NoteNotFoundExeption;
+import com.stackroute.keepnote.exception.NoteVersionConflictException;
 import com.stackroute.keepnote.model.Note;
-import com.stackroute.keepnote.model.NoteUser;
+import com.stackroute.keepnote.repository.NoteDocumentRepository;
+import com.stackroute.keepnote.repository.NoteIdAllocator;
 import com.stackroute.keepnote.repository.NoteRepository;
+import com.stackroute.keepnote.repository.NoteRepositoryCustom;
 
 /*
 * Service classes are used here to implement additional business logic/validation 
@@ -23,6 +29,8 @@ import com.stackroute.keepnote.repository.NoteRepository;
 @Service
 public class NoteServiceImpl implements NoteService {
 
+	private static final int MAX_UPDATE_ATTEMPTS = 5;
+
 	/*
 	 * Autowiring should be implemented for the NoteRepository and
 	 * MongoOperation. (Use Constructor-based autowiring) Please note that we
@@ -32,115 +40,215 @@ public class NoteServiceImpl implements NoteService {
 	private NoteRepository noteRepository;
 
 	/*
-	 * This method should be used to save a new note.
+	 * NoteDocumentRepository is only available when the notes are stored as
+	 * separate documents (keepnote.note.storage=document). Otherwise the notes are
+	 * embedded in NoteUser and handled by NoteRepository.
+	 */
+	@Autowired(required = false)
+	private NoteDocumentRepository noteDocumentRepository;
+
+	/*
+	 * Notes read by getNoteByNoteId are kept in NoteCache. Every write below
+	 * invalidates the affected entries after the database has been updated.
+	 */
+	@Autowired
+	private NoteCache noteCache;
+
+	/*
+	 * NoteIndex is updated after every successful write, so searchNotes finds the
+	 * notes without reading them from the database.
+	 */
+	@Autowired
+	private NoteIndex noteIndex;
+
+	/*
+	 * NoteIdAllocator hands out the noteIds of new notes from a per-user sequence,
+	 * so concurrent creates never pick the same noteId.
+	 */
+	@Autowired
+	private NoteIdAllocator noteIdAllocator;
+
+	private NoteRepositoryCustom noteStore() {
+		if (this.noteDocumentRepository != null) {
+			return this.noteDocumentRepository;
+		}
+		return this.noteRepository;
+	}
+
+	/*
+	 * This method should be used to save a new note. The note gets the next noteId
+	 * of its creator, replacing any noteId sent by the client, and is pushed into
+	 * the notes of its creator, so the existing notes are neither read nor
+	 * rewritten. The noteCreationDate is set to the system date.
 	 */
 	public boolean createNote(Note note) {
-		try {
-			if (note != null) {
-				List<Note> noteList = new ArrayList<>();
-				NoteUser noteUser = new NoteUser();
-				noteUser.setUserId(note.getNoteCreatedBy());
-				noteUser.setNotes(noteList);
-				noteList.add(note);
-				NoteUser currentNote = this.noteRepository.save(noteUser);
-				if (currentNote != null) {
-					return true;
-				} else {
-					return false;
-				}
-			} else {
-				return false;
+		if (note != null) {
+			String userId = note.getNoteCreatedBy();
+			note.setNoteId(this.noteIdAllocator.allocate(userId, () -> this.noteStore().findMaxNoteId(userId)));
+			note.setNoteVersion(0);
+			note.setNoteCreationDate(new Date());
+			boolean created = this.noteStore().pushNote(note);
+			this.noteCache.invalidate(note.getNoteCreatedBy(), note.getNoteId());
+			if (created) {
+				this.noteIndex.index(note.getNoteCreatedBy(), note);
+			}
+			return created;
+		} else {
+			return false;
+		}
+	}
+
+	/*
+	 * This method should be used to save many notes at once. The notes are written
+	 * in one unordered bulk write, and the reason of every note which could not be
+	 * saved is returned by its position in the list. The notes keep their own
+	 * noteIds, so the sequence of every creator is moved past them. They keep their
+	 * noteCreationDate as well; a note without one gets the system date.
+	 */
+	public Map<Integer, String> createNotes(List<Note> notes) {
+		Date now = new Date();
+		for (Note note : notes) {
+			if (note.getNoteCreationDate() == null) {
+				note.setNoteCreationDate(now);
 			}
-		} catch (Exception e) {
-			throw e;
 		}
+		Map<Integer, String> failed = this.noteStore().pushNotes(notes);
+		Map<String, Integer> highestNoteIds = new HashMap<>();
+		for (int i = 0; i < notes.size(); i++) {
+			Note note = notes.get(i);
+			this.noteCache.invalidate(note.getNoteCreatedBy(), note.getNoteId());
+			if (!failed.containsKey(i)) {
+				this.noteIndex.index(note.getNoteCreatedBy(), note);
+				highestNoteIds.merge(note.getNoteCreatedBy(), note.getNoteId(), Math::max);
+			}
+		}
+		highestNoteIds.forEach((userId, noteId) -> this.noteIdAllocator.reserve(userId, noteId,
+				() -> this.noteStore().findMaxNoteId(userId)));
+		return failed;
 	}
 
 	/* This method should be used to delete an existing note. */
 
 	public boolean deleteNote(String userId, int noteId) {
-		NoteUser currentNoteUser = this.noteRepository.findById(userId).get();
-		if (currentNoteUser != null) {
-			try {
-				List<Note> noteList = new ArrayList<>();
-				NoteUser noteUser = new NoteUser();
-				noteUser.setUserId(userId);
-				if (!currentNoteUser.getNotes().isEmpty()) {
-					for (Note note : currentNoteUser.getNotes()) {
-						if (note.getNoteId() == noteId) {
-							noteList.add(note);
-						}
-					}
-					noteUser.setNotes(noteList);
-					this.noteRepository.delete(noteUser);
-				}
-
-				return true;
-			} catch (Exception e) {
-				throw e;
-			}
-		} else {
-			return false;
-		}
+		boolean deleted = this.noteStore().pullNote(userId, noteId);
+		this.noteCache.invalidate(userId, noteId);
+		this.noteIndex.delete(userId, noteId);
+		return deleted;
 	}
 
 	/* This method should be used to delete all notes with specific userId. */
 
-	public boolean deleteAllNotes(String userId) {
-		NoteUser currentNoteUser = this.noteRepository.findById(userId).get();
-		if (currentNoteUser != null) {
-			this.noteRepository.delete(currentNoteUser);
+	public boolean deleteAllNotes(String userId) throws NoteNotFoundExeption {
+		boolean deleted = this.noteStore().deleteNotes(userId);
+		this.noteCache.invalidateUser(userId);
+		this.noteIndex.deleteUser(userId);
+		if (deleted) {
 			return true;
+		} else {
+			throw new NoteNotFoundExeption("Notes  were not found");
 		}
-		return false;
 	}
 
 	/*
-	 * This method should be used to update a existing note.
+	 * This method should be used to purge the notes of a deleted user, the ones
+	 * created before the given date. Notes created since, by a user registered
+	 * again with the same userId, are kept and indexed again.
 	 */
-	public Note updateNote(Note note, int id, String userId) throws NoteNotFoundExeption {
+	public long deleteNotesCreatedBefore(String userId, Date date) {
+		long deleted = this.noteStore().deleteNotesCreatedBefore(userId, date);
+		this.noteCache.invalidateUser(userId);
+		if (deleted > 0) {
+			this.noteIndex.deleteUser(userId);
+			try (CloseableIterator<Note> notes = this.noteStore().streamNotes(userId)) {
+				notes.forEachRemaining(note -> this.noteIndex.index(userId, note));
+			}
+		}
+		return deleted;
+	}
 
-		NoteUser currentNoteUser = this.noteRepository.findById(userId).get();
-		if (currentNoteUser != null) {
+	/*
+	 * This method should be used to update a existing note. The note is replaced
+	 * as a whole by the given one, so a field left out of it is cleared. Only the
+	 * matching element of the notes array is written, and only while the note
+	 * still has the version read just before. When somebody updated it in between,
+	 * the version is read again and the write is retried, at most
+	 * MAX_UPDATE_ATTEMPTS times. The last update wins, like without versions; a
+	 * client which must not overwrite other updates sends the version it read (see
+	 * the method below).
+	 */
+	public Note updateNote(Note note, int id, String userId)
+			throws NoteNotFoundExeption, NoteVersionConflictException {
 
-			List<Note> noteList = new ArrayList<>();
-			NoteUser noteUser = new NoteUser();
-			noteUser.setUserId(userId);
-			if (!currentNoteUser.getNotes().isEmpty()) {
-				for (Note cnote : currentNoteUser.getNotes()) {
-					if (cnote.getNoteId() == id) {
-						noteList.add(note);
-					}
-				}
-				noteUser.setNotes(noteList);
-				currentNoteUser = this.noteRepository.save(noteUser);
-				return note;
-			} else {
-				return null;
+		for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+			Note current = findCurrentNote(userId, id);
+			Note replacement = replace(note, current, userId);
+			if (compareAndSet(userId, replacement, current.getNoteVersion())) {
+				return replacement;
 			}
-		} else {
+		}
+		throw new NoteVersionConflictException("Note  is updated too often");
+	}
+
+	/*
+	 * This method should be used to update a existing note which is expected to
+	 * still have expectedVersion. It fails if the note has been updated since.
+	 */
+	public Note updateNote(Note note, int id, String userId, long expectedVersion)
+			throws NoteNotFoundExeption, NoteVersionConflictException {
+
+		Note current = findCurrentNote(userId, id);
+		Note replacement = replace(note, current, userId);
+		if (current.getNoteVersion() != expectedVersion || !compareAndSet(userId, replacement, expectedVersion)) {
+			throw new NoteVersionConflictException("Note  was updated in the meantime");
+		}
+		return replacement;
+	}
+
+	/* The current note is read from the database, NoteCache may be stale. */
+	private Note findCurrentNote(String userId, int noteId) throws NoteNotFoundExeption {
+		Note current = this.noteStore().findNote(userId, noteId);
+		if (current == null) {
 			throw new NoteNotFoundExeption("Note  was not found");
 		}
+		return current;
+	}
 
+	private boolean compareAndSet(String userId, Note note, long expectedVersion) {
+		boolean updated = this.noteStore().setNote(userId, note, expectedVersion);
+		if (updated) {
+			this.noteCache.invalidate(userId, note.getNoteId());
+			this.noteIndex.index(userId, note);
+		}
+		return updated;
+	}
+
+	/*
+	 * This method returns the note replacing the current one: all fields are taken
+	 * from the update, except the noteId, creator and creation date, which cannot
+	 * be changed. The update itself is not modified, so it can be applied again to
+	 * a newer version.
+	 */
+	private static Note replace(Note update, Note current, String userId) {
+		Note replacement = new Note();
+		replacement.setNoteId(current.getNoteId());
+		replacement.setNoteCreatedBy(userId);
+		replacement.setNoteCreationDate(current.getNoteCreationDate());
+		replacement.setNoteTitle(update.getNoteTitle());
+		replacement.setNoteContent(update.getNoteContent());
+		replacement.setNoteStatus(update.getNoteStatus());
+		replacement.setCategory(update.getCategory());
+		replacement.setReminders(update.getReminders());
+		return replacement;
 	}
 
 	/*
 	 * This method should be used to get a note by noteId created by specific
-	 * user
+	 * user. Only the requested note is read from the database, and only when it
+	 * is not in NoteCache.
 	 */
 	public Note getNoteByNoteId(String userId, int noteId) throws NoteNotFoundExeption {
-		Note note = null;
-		NoteUser currentNoteUser = this.noteRepository.findById(userId).get();
-		if (currentNoteUser != null) {
-			if (!currentNoteUser.getNotes().isEmpty()) {
-				for (Note cnote : currentNoteUser.getNotes()) {
-					if (cnote.getNoteId() == noteId)
-						note = cnote;
-				}
-			} else {
-				return null;
-			}
-		} else {
+		Note note = this.noteCache.get(userId, noteId, key -> this.noteStore().findNote(userId, noteId));
+		if (note == null) {
 			throw new NoteNotFoundExeption("Note  was not found");
 		}
 		return note;
@@ -151,11 +259,44 @@ public class NoteServiceImpl implements NoteService {
 	 */
 	public List<Note> getAllNoteByUserId(String userId) {
 
-		NoteUser currentNoteUser = this.noteRepository.findById(userId).get();
-		if (currentNoteUser != null) {
-			return currentNoteUser.getNotes();
-		}
-		return null;
+		return this.noteStore().findNotes(userId);
+	}
+
+	/*
+	 * This method should be used to get one page of the notes with specific userId,
+	 * starting after the note with afterNoteId. The notes are streamed from the
+	 * database without their noteContent.
+	 */
+	public CloseableIterator<Note> getNotePageByUserId(String userId, int afterNoteId, int limit) {
+
+		return this.noteStore().streamNoteSummaries(userId, afterNoteId, limit);
+	}
+
+	/*
+	 * This method should be used to read all notes with specific userId, including
+	 * their noteContent, one at a time.
+	 */
+	public CloseableIterator<Note> exportNotesByUserId(String userId) {
+
+		return this.noteStore().streamNotes(userId);
+	}
+
+	/*
+	 * This method should be used to search the notes with specific userId by the
+	 * words of their noteTitle and noteContent. The best matches come first and
+	 * only carry noteId and noteTitle.
+	 */
+	public List<Note> searchNotes(String userId, String query, int limit) {
+
+		return this.noteIndex.search(userId, query, limit);
+	}
+
+	/*
+	 * This method should be used to replace the search index with the notes
+	 * currently stored in the database. It returns the number of indexed notes.
+	 */
+	public long rebuildSearchIndex() {
+		return this.noteIndex.rebuild(this.noteStore());
 	}
 
 }
@@ -3,6 +3,7 @@ package com.stackroute.keepnote.test.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stackroute.keepnote.controller.NoteController;
 import com.stackroute.keepnote.exception.NoteNotFoundExeption;
+import com.stackroute.keepnote.exception.NoteVersionConflictException;
 import com.stackroute.keepnote.model.Category;
 import com.stackroute.keepnote.model.Note;
 import com.stackroute.keepnote.model.Reminder;
@@ -13,22 +14,30 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.util.ReflectionTestUtils;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest
@@ -45,6 +54,8 @@ public class NoteControllerTest {
     private Reminder reminder;
     @MockBean
     private NoteService noteService;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
     @InjectMocks
     private NoteController noteController;
     private List<Note> noteList;
@@ -99,6 +110,7 @@ public class NoteControllerTest {
         mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/note").contentType(MediaType.APPLICATION_JSON)
                 .content(asJsonString(note)))
                 .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.header().string("Location", "/api/v1/note/Jhon123/1"))
                 .andDo(MockMvcResultHandlers.print());
 
     }
@@ -169,6 +181,45 @@ public class NoteControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(asJsonString(note)))
                 .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"0\""))
+                .andDo(MockMvcResultHandlers.print());
+    }
+
+    @Test
+    public void updateNoteIfMatch() throws Exception {
+
+        note.setNoteVersion(4);
+        when(noteService.updateNote(any(), eq(1), eq("Jhon123"), eq(3L))).thenReturn(note);
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/note/Jhon123/1")
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(note)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"4\""))
+                .andDo(MockMvcResultHandlers.print());
+    }
+
+    @Test
+    public void updateNoteIfMatchFailure() throws Exception {
+
+        when(noteService.updateNote(any(), eq(1), eq("Jhon123"), eq(3L)))
+                .thenThrow(NoteVersionConflictException.class);
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/note/Jhon123/1")
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(note)))
+                .andExpect(MockMvcResultMatchers.status().isPreconditionFailed())
+                .andDo(MockMvcResultHandlers.print());
+    }
+
+    @Test
+    public void updateNoteConflict() throws Exception {
+
+        when(noteService.updateNote(any(), eq(1), eq("Jhon123"))).thenThrow(NoteVersionConflictException.class);
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/note/Jhon123/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(note)))
+                .andExpect(MockMvcResultMatchers.status().isConflict())
                 .andDo(MockMvcResultHandlers.print());
     }
 
@@ -193,6 +244,7 @@ public class NoteControllerTest {
         mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/note/Jhon123/1")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("ETag", "\"0\""))
                 .andDo(MockMvcResultHandlers.print());
     }
 
@@ -209,22 +261,107 @@ public class NoteControllerTest {
 
     @Test
     public void getAllNotesByUserIdSuccess() throws Exception {
-        when(noteService.getAllNoteByUserId("Jhon123")).thenReturn(noteList);
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/note/Jhon123")
+        when(noteService.getNotePageByUserId("Jhon123", 0, 20)).thenReturn(iterator(noteList));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/note/Jhon123")
                 .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
                 .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].noteId").value(1))
                 .andDo(MockMvcResultHandlers.print());
     }
 
     @Test
     public void getAllNotesByUserIdFailure() throws Exception {
-        when(noteService.getAllNoteByUserId("Jhon123")).thenReturn(null);
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/note/Jhon123")
+        when(noteService.getNotePageByUserId("Jhon123", 1, 100)).thenReturn(iterator(new ArrayList<>()));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/note/Jhon123?after=1&limit=500")
                 .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
                 .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string("[]"))
                 .andDo(MockMvcResultHandlers.print());
     }
 
+    @Test
+    public void importNotesSuccess() throws Exception {
+        Map<Integer, String> failed = new TreeMap<>();
+        failed.put(1, "noteId already exists");
+        when(noteService.createNotes(any())).thenReturn(failed);
+        String body = asJsonString(note) + "\n{not json\n\n" + asJsonString(note) + "\n";
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/note/bulk")
+                .contentType("application/x-ndjson").content(body))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.imported").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failures[0].line").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failures[1].line").value(4))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failures[1].message").value("noteId already exists"))
+                .andDo(MockMvcResultHandlers.print());
+    }
+
+    @Test
+    public void importNotesRejectsLongLines() throws Exception {
+        ReflectionTestUtils.setField(noteController, "maxImportLineSize", 500);
+        when(noteService.createNotes(any())).thenReturn(new TreeMap<>());
+        Note longNote = new Note();
+        longNote.setNoteCreatedBy("Jhon123");
+        char[] content = new char[1000];
+        Arrays.fill(content, 'x');
+        longNote.setNoteContent(new String(content));
+        Note shortNote = new Note();
+        shortNote.setNoteCreatedBy("Jhon123");
+        shortNote.setNoteTitle("IPL");
+        String body = asJsonString(longNote) + "\n" + asJsonString(shortNote) + "\n";
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/note/bulk")
+                .contentType("application/x-ndjson").content(body))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.imported").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failures[0].line").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.failures[0].message").value("line is longer than 500 bytes"));
+    }
+
+    @Test
+    public void exportNotesSuccess() throws Exception {
+        noteList.add(note);
+        when(noteService.exportNotesByUserId("Jhon123")).thenReturn(iterator(noteList));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/note/Jhon123/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        String line = asJsonString(note) + "\n";
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(line + line))
+                .andDo(MockMvcResultHandlers.print());
+    }
+
+    @Test
+    public void searchNotesSuccess() throws Exception {
+        when(noteService.searchNotes("Jhon123", "ipl sched*", 100)).thenReturn(noteList);
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/note/Jhon123/search")
+                .param("q", "ipl sched*").param("limit", "500"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].noteId").value(1))
+                .andDo(MockMvcResultHandlers.print());
+    }
+
+    private static CloseableIterator<Note> iterator(List<Note> notes) {
+        Iterator<Note> iterator = notes.iterator();
+        return new CloseableIterator<Note>() {
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public Note next() {
+                return iterator.next();
+            }
+
+            public void close() {
+            }
+        };
+    }
+
     private static String asJsonString(final Object obj) {
         try {
             return new ObjectMapper().writeValueAsString(obj);
@@ -0,0 +1,152 @@
+package com.stackroute.keepnote.test.repository;
+
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteUser;
+import com.stackroute.keepnote.repository.NoteDocumentRepository;
+import com.stackroute.keepnote.repository.NoteMigration;
+import com.stackroute.keepnote.repository.NoteRepository;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@RunWith(SpringRunner.class)
+@DataMongoTest
+@TestPropertySource(properties = {"keepnote.note.storage=document", "keepnote.note.migration.enabled=true",
+        "keepnote.note.migration.batch-size=2"})
+@Import({NoteDocumentRepository.class, NoteMigration.class})
+public class NoteDocumentRepositoryTest {
+
+    @Autowired
+    private NoteDocumentRepository noteDocumentRepository;
+    @Autowired
+    private NoteMigration noteMigration;
+    @Autowired
+    private NoteRepository noteRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private Note note;
+
+
+    @Before
+    public void setUp() throws Exception {
+
+        note = new Note();
+        note.setNoteId(1);
+        note.setNoteTitle("IPL lists");
+        note.setNoteContent("Mumbai Indians vs RCB match scheduled  for 4 PM");
+        note.setNoteStatus("Active");
+        note.setNoteCreatedBy("Jhon123");
+        note.setNoteCreationDate(new Date());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        noteRepository.deleteAll();
+        mongoTemplate.dropCollection(NoteDocumentRepository.COLLECTION);
+    }
+
+    @Test
+    public void pushNoteTest() {
+        Assert.assertEquals(true, noteDocumentRepository.pushNote(note));
+        Assert.assertEquals(false, noteDocumentRepository.pushNote(note));
+        Assert.assertEquals(1, noteDocumentRepository.findNotes("Jhon123").size());
+    }
+
+    @Test
+    public void setNoteTest() {
+        noteDocumentRepository.pushNote(note);
+        note.setNoteContent("Mumbai Indians vs RCB match scheduled  for 4 PM is cancelled");
+        Assert.assertEquals(true, noteDocumentRepository.setNote("Jhon123", note, 0));
+        Assert.assertEquals("Mumbai Indians vs RCB match scheduled  for 4 PM is cancelled",
+                noteDocumentRepository.findNote("Jhon123", 1).getNoteContent());
+        Assert.assertEquals(1, noteDocumentRepository.findNote("Jhon123", 1).getNoteVersion());
+        Assert.assertEquals(false, noteDocumentRepository.setNote("Jhon123", note, 0));
+        Assert.assertEquals(false, noteDocumentRepository.setNote("Jhon", note, 1));
+    }
+
+    @Test
+    public void pullNoteTest() {
+        noteDocumentRepository.pushNote(note);
+        Assert.assertEquals(true, noteDocumentRepository.pullNote("Jhon123", 1));
+        Assert.assertNull(noteDocumentRepository.findNote("Jhon123", 1));
+        Assert.assertEquals(false, noteDocumentRepository.deleteNotes("Jhon123"));
+    }
+
+    @Test
+    public void deleteNotesCreatedBeforeTest() {
+        note.setNoteCreationDate(new Date(1000));
+        noteDocumentRepository.pushNote(note);
+        Note newNote = new Note();
+        newNote.setNoteId(2);
+        newNote.setNoteCreatedBy("Jhon123");
+        newNote.setNoteCreationDate(new Date(3000));
+        noteDocumentRepository.pushNote(newNote);
+
+        Assert.assertEquals(1, noteDocumentRepository.deleteNotesCreatedBefore("Jhon123", new Date(2000)));
+        Assert.assertNull(noteDocumentRepository.findNote("Jhon123", 1));
+        Assert.assertNotNull(noteDocumentRepository.findNote("Jhon123", 2));
+    }
+
+    @Test
+    public void migrateTest() {
+        List<Note> noteList = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Note migratedNote = new Note();
+            migratedNote.setNoteId(i);
+            migratedNote.setNoteTitle("Note " + i);
+            noteList.add(migratedNote);
+        }
+        NoteUser noteUser = new NoteUser();
+        noteUser.setUserId("Jhon123");
+        noteUser.setNotes(noteList);
+        noteRepository.insert(noteUser);
+
+        note.setNoteId(1);
+        note.setNoteTitle("Written after the switch");
+        noteDocumentRepository.setNote("Jhon123", note, 0);
+        noteDocumentRepository.pushNote(note);
+
+        Assert.assertEquals(4, noteMigration.migrate());
+        Assert.assertEquals(0, noteMigration.migrate());
+        Assert.assertEquals(5, noteDocumentRepository.findNotes("Jhon123").size());
+        Assert.assertEquals("Written after the switch", noteDocumentRepository.findNote("Jhon123", 1).getNoteTitle());
+
+        noteDocumentRepository.pullNote("Jhon123", 2);
+        Assert.assertEquals(0, noteMigration.migrate());
+        Assert.assertNull(noteDocumentRepository.findNote("Jhon123", 2));
+    }
+
+    @Test
+    public void streamNoteSummariesTest() {
+        for (int i = 1; i <= 5; i++) {
+            Note pageNote = new Note();
+            pageNote.setNoteId(i);
+            pageNote.setNoteContent("content " + i);
+            pageNote.setNoteCreatedBy("Jhon123");
+            noteDocumentRepository.pushNote(pageNote);
+        }
+        List<Note> page = new ArrayList<>();
+        try (CloseableIterator<Note> notes = noteDocumentRepository.streamNoteSummaries("Jhon123", 2, 2)) {
+            notes.forEachRemaining(page::add);
+        }
+        Assert.assertEquals(2, page.size());
+        Assert.assertEquals(3, page.get(0).getNoteId());
+        Assert.assertEquals(4, page.get(1).getNoteId());
+        Assert.assertNull(page.get(0).getNoteContent());
+    }
+}
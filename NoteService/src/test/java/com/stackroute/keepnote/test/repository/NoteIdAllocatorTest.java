@@ -0,0 +1,106 @@
+package com.stackroute.keepnote.test.repository;
+
+import com.stackroute.keepnote.repository.NoteIdAllocator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RunWith(SpringRunner.class)
+@DataMongoTest
+@TestPropertySource(properties = {"keepnote.note.id-block-size=3"})
+@Import(NoteIdAllocator.class)
+public class NoteIdAllocatorTest {
+
+    @Autowired
+    private NoteIdAllocator noteIdAllocator;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @After
+    public void tearDown() throws Exception {
+
+        mongoTemplate.dropCollection(NoteIdAllocator.COLLECTION);
+    }
+
+    @Test
+    public void allocateStartsAfterExistingNotes() {
+        Assert.assertEquals(5, noteIdAllocator.allocate("Jhon123", () -> 4));
+        Assert.assertEquals(6, noteIdAllocator.allocate("Jhon123", () -> 4));
+        Assert.assertEquals(1, noteIdAllocator.allocate("Alex456", () -> 0));
+    }
+
+    @Test
+    public void allocateReservesBlocks() {
+        for (int i = 1; i <= 7; i++) {
+            Assert.assertEquals(i, noteIdAllocator.allocate("Jhon123", () -> 0));
+        }
+        Assert.assertEquals(9, mongoTemplate.getCollection(NoteIdAllocator.COLLECTION).find().first().getInteger("next").intValue());
+    }
+
+    @Test
+    public void reserveMovesSequence() {
+        noteIdAllocator.allocate("Jhon123", () -> 0);
+        noteIdAllocator.reserve("Jhon123", 20, () -> 0);
+        Assert.assertEquals(21, noteIdAllocator.allocate("Jhon123", () -> 0));
+        noteIdAllocator.reserve("Jhon123", 2, () -> 0);
+        Assert.assertEquals(24, noteIdAllocator.allocate("Jhon123", () -> 0));
+    }
+
+    @Test
+    public void reserveStartsSequenceAfterExistingNotes() {
+        noteIdAllocator.reserve("Jhon123", 3, () -> 8);
+        Assert.assertEquals(9, noteIdAllocator.allocate("Jhon123", () -> 8));
+        noteIdAllocator.reserve("Alex456", 5, () -> 2);
+        Assert.assertEquals(6, noteIdAllocator.allocate("Alex456", () -> 2));
+    }
+
+    @Test
+    public void allocateConcurrently() throws Exception {
+        Set<Integer> noteIds = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> noteIds.add(noteIdAllocator.allocate("Jhon123", () -> 0)));
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        Assert.assertEquals(200, noteIds.size());
+    }
+
+    @Test
+    public void allocateAfterReserveConcurrently() throws Exception {
+        Set<Integer> noteIds = ConcurrentHashMap.newKeySet();
+        AtomicBoolean reserved = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            executor.execute(() -> {
+                boolean afterReserve = reserved.get();
+                int noteId = noteIdAllocator.allocate("Jhon123", () -> 0);
+                if (afterReserve) {
+                    noteIds.add(noteId);
+                }
+            });
+            if (i == 200) {
+                noteIdAllocator.reserve("Jhon123", 10000, () -> 0);
+                reserved.set(true);
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        Assert.assertFalse(noteIds.isEmpty());
+        Assert.assertTrue(noteIds.stream().allMatch(noteId -> noteId > 10000));
+    }
+}
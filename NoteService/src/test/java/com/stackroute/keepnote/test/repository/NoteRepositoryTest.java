@@ -12,12 +12,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(SpringRunner.class)
 @DataMongoTest
@@ -139,4 +142,94 @@ public class NoteRepositoryTest {
         List<Note> allNotes = noteRepository.findById("Jhon123").get().getNotes();
         Assert.assertEquals(1, allNotes.size());
     }
+
+    @Test
+    public void pushNoteTest() {
+        noteRepository.insert(noteUser);
+        Note secondNote = new Note();
+        secondNote.setNoteId(2);
+        secondNote.setNoteTitle("Match result");
+        secondNote.setNoteCreatedBy("Jhon123");
+        Assert.assertEquals(true, noteRepository.pushNote(secondNote));
+        Assert.assertEquals(false, noteRepository.pushNote(secondNote));
+        List<Note> allNotes = noteRepository.findById("Jhon123").get().getNotes();
+        Assert.assertEquals(2, allNotes.size());
+    }
+
+    @Test
+    public void setNoteTest() {
+        noteRepository.insert(noteUser);
+        note.setNoteContent("Mumbai Indians vs RCB match scheduled  for 4 PM is cancelled");
+        Assert.assertEquals(true, noteRepository.setNote("Jhon123", note, 0));
+        List<Note> allNotes = noteRepository.findById("Jhon123").get().getNotes();
+        Assert.assertEquals("Mumbai Indians vs RCB match scheduled  for 4 PM is cancelled", allNotes.get(0).getNoteContent());
+        Assert.assertEquals(1, allNotes.get(0).getNoteVersion());
+        Assert.assertEquals(false, noteRepository.setNote("Jhon123", note, 0));
+        Assert.assertEquals(true, noteRepository.setNote("Jhon123", note, 1));
+        note.setNoteId(5);
+        Assert.assertEquals(false, noteRepository.setNote("Jhon123", note, 0));
+    }
+
+    @Test
+    public void pullNoteTest() {
+        noteRepository.insert(noteUser);
+        Assert.assertEquals(true, noteRepository.pullNote("Jhon123", 1));
+        Assert.assertEquals(false, noteRepository.pullNote("Jhon123", 1));
+        List<Note> allNotes = noteRepository.findById("Jhon123").get().getNotes();
+        Assert.assertEquals(true, allNotes.isEmpty());
+    }
+
+    @Test
+    public void streamNoteSummariesTest() {
+        noteRepository.insert(noteUser);
+        for (int i = 2; i <= 5; i++) {
+            Note pageNote = new Note();
+            pageNote.setNoteId(i);
+            pageNote.setNoteContent("content " + i);
+            pageNote.setNoteCreatedBy("Jhon123");
+            noteRepository.pushNote(pageNote);
+        }
+        List<Note> page = new ArrayList<>();
+        try (CloseableIterator<Note> notes = noteRepository.streamNoteSummaries("Jhon123", 2, 2)) {
+            notes.forEachRemaining(page::add);
+        }
+        Assert.assertEquals(2, page.size());
+        Assert.assertEquals(3, page.get(0).getNoteId());
+        Assert.assertEquals(4, page.get(1).getNoteId());
+        Assert.assertNull(page.get(0).getNoteContent());
+    }
+
+    @Test
+    public void pushNotesTest() {
+        noteRepository.insert(noteUser);
+        Note second = new Note();
+        second.setNoteId(2);
+        second.setNoteCreatedBy("Jhon123");
+        Map<Integer, String> failed = noteRepository.pushNotes(Arrays.asList(note, second));
+        Assert.assertEquals(1, failed.size());
+        Assert.assertTrue(failed.containsKey(0));
+        Assert.assertEquals(2, noteRepository.findNotes("Jhon123").size());
+    }
+
+    @Test
+    public void streamNotesTest() {
+        noteRepository.insert(noteUser);
+        List<Note> notes = new ArrayList<>();
+        try (CloseableIterator<Note> iterator = noteRepository.streamNotes("Jhon123")) {
+            iterator.forEachRemaining(notes::add);
+        }
+        Assert.assertEquals(1, notes.size());
+        Assert.assertEquals(note.getNoteContent(), notes.get(0).getNoteContent());
+    }
+
+    @Test
+    public void findMaxNoteIdTest() {
+        Assert.assertEquals(0, noteRepository.findMaxNoteId("Jhon123"));
+        noteRepository.insert(noteUser);
+        Note second = new Note();
+        second.setNoteId(9);
+        second.setNoteCreatedBy("Jhon123");
+        noteRepository.pushNote(second);
+        Assert.assertEquals(9, noteRepository.findMaxNoteId("Jhon123"));
+    }
 }
@@ -0,0 +1,63 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.stackroute.keepnote.service.NoteDeletionConsumer;
+import com.stackroute.keepnote.service.NoteService;
+import com.stackroute.keepnote.userdeletion.UserDeletionConsumer;
+
+/* The polling itself is tested by UserDeletionConsumerTest of keepnote-user-deletion. */
+public class NoteDeletionConsumerTest {
+
+    private static final Date DELETED_AT = new Date(2000);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private NoteService noteService;
+
+    private NoteDeletionConsumer consumer;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        consumer = new NoteDeletionConsumer(mongoTemplate, noteService, 100, 2);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(UserDeletionConsumer.COLLECTION)))
+                .thenReturn(Collections.singletonList(new Document("_id", "Jhon123").append("deletedAt", DELETED_AT)));
+    }
+
+    @Test
+    public void pollPurgesNotesCreatedBeforeDeletion() {
+        when(noteService.deleteNotesCreatedBefore("Jhon123", DELETED_AT)).thenReturn(3L);
+
+        consumer.poll();
+
+        verify(noteService).deleteNotesCreatedBefore("Jhon123", DELETED_AT);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), eq("note"));
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(UserDeletionConsumer.COLLECTION));
+    }
+
+    @Test
+    public void purgeUserWithoutNotes() {
+        assertEquals(0, consumer.purge("Jhon123", DELETED_AT));
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.stackroute.keepnote.test.service;
+
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.repository.NoteRepositoryCustom;
+import com.stackroute.keepnote.service.NoteIndex;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.util.CloseableIterator;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NoteIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private NoteIndex noteIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        noteIndex = new NoteIndex(new RAMDirectory());
+        noteIndex.index("Jhon123", note(1, "IPL lists", "Mumbai Indians vs RCB match scheduled  for 4 PM"));
+        noteIndex.index("Jhon123", note(2, "Groceries", "Buy milk before the IPL match"));
+        noteIndex.index("Jhon123", note(3, "Meeting", "Weekly sync"));
+        noteIndex.index("Alex456", note(1, "IPL tickets", "Book tickets"));
+        noteIndex.refresh();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        noteIndex.close();
+    }
+
+    @Test
+    public void searchRanksTitleMatchesFirst() {
+        List<Note> notes = noteIndex.search("Jhon123", "ipl", 10);
+        Assert.assertEquals(2, notes.size());
+        Assert.assertEquals(1, notes.get(0).getNoteId());
+        Assert.assertEquals("IPL lists", notes.get(0).getNoteTitle());
+        Assert.assertNull(notes.get(0).getNoteContent());
+        Assert.assertEquals(2, notes.get(1).getNoteId());
+    }
+
+    @Test
+    public void searchRequiresAllWords() {
+        List<Note> notes = noteIndex.search("Jhon123", "IPL milk", 10);
+        Assert.assertEquals(1, notes.size());
+        Assert.assertEquals(2, notes.get(0).getNoteId());
+    }
+
+    @Test
+    public void searchPrefix() {
+        Assert.assertEquals(1, noteIndex.search("Jhon123", "sched*", 10).size());
+        Assert.assertEquals(0, noteIndex.search("Jhon123", "sched", 10).size());
+    }
+
+    @Test
+    public void searchOnlyFindsNotesOfUser() {
+        List<Note> notes = noteIndex.search("Alex456", "ipl", 10);
+        Assert.assertEquals(1, notes.size());
+        Assert.assertEquals("IPL tickets", notes.get(0).getNoteTitle());
+    }
+
+    @Test
+    public void searchWithoutWords() {
+        Assert.assertTrue(noteIndex.search("Jhon123", " ! ", 10).isEmpty());
+    }
+
+    @Test
+    public void indexReplacesNote() {
+        noteIndex.index("Jhon123", note(3, "Meeting", "Discuss the IPL schedule"));
+        noteIndex.refresh();
+        Assert.assertEquals(3, noteIndex.search("Jhon123", "ipl", 10).size());
+        Assert.assertTrue(noteIndex.search("Jhon123", "weekly", 10).isEmpty());
+    }
+
+    @Test
+    public void deleteNote() {
+        noteIndex.delete("Jhon123", 1);
+        noteIndex.refresh();
+        List<Note> notes = noteIndex.search("Jhon123", "ipl", 10);
+        Assert.assertEquals(1, notes.size());
+        Assert.assertEquals(2, notes.get(0).getNoteId());
+    }
+
+    @Test
+    public void deleteUser() {
+        noteIndex.deleteUser("Jhon123");
+        noteIndex.refresh();
+        Assert.assertTrue(noteIndex.search("Jhon123", "ipl", 10).isEmpty());
+        Assert.assertEquals(1, noteIndex.search("Alex456", "ipl", 10).size());
+    }
+
+    @Test
+    public void rebuild() {
+        Note rebuilt = note(7, "Holiday", "Pack for the trip");
+        rebuilt.setNoteCreatedBy("Jhon123");
+        Assert.assertEquals(1, noteIndex.rebuild(store(Arrays.asList(rebuilt).iterator())));
+        Assert.assertTrue(noteIndex.search("Jhon123", "ipl", 10).isEmpty());
+        Assert.assertEquals(7, noteIndex.search("Jhon123", "trip", 10).get(0).getNoteId());
+    }
+
+    @Test
+    public void rebuildReadsAgainNotesWrittenMeanwhile() {
+        Note deleted = note(7, "Holiday", "Pack for the trip");
+        deleted.setNoteCreatedBy("Jhon123");
+        Note outdated = note(8, "Groceries", "Buy milk");
+        outdated.setNoteCreatedBy("Jhon123");
+        Iterator<Note> notes = Arrays.asList(deleted, outdated).iterator();
+        NoteRepositoryCustom store = store(new Iterator<Note>() {
+            public boolean hasNext() {
+                return notes.hasNext();
+            }
+
+            public Note next() {
+                Note note = notes.next();
+                if (note == deleted) {
+                    // The notes are deleted and updated after the cursor has read them.
+                    noteIndex.delete("Jhon123", 7);
+                    noteIndex.index("Jhon123", note(8, "Groceries", "Buy bread"));
+                }
+                return note;
+            }
+        });
+        when(store.findNote("Jhon123", 8)).thenReturn(note(8, "Groceries", "Buy bread"));
+
+        Assert.assertEquals(2, noteIndex.rebuild(store));
+        Assert.assertTrue(noteIndex.search("Jhon123", "trip", 10).isEmpty());
+        Assert.assertTrue(noteIndex.search("Jhon123", "milk", 10).isEmpty());
+        Assert.assertEquals(8, noteIndex.search("Jhon123", "bread", 10).get(0).getNoteId());
+    }
+
+    @Test
+    public void rebuildReadsAgainUsersDeletedMeanwhile() {
+        Note deleted = note(7, "Holiday", "Pack for the trip");
+        deleted.setNoteCreatedBy("Jhon123");
+        Iterator<Note> notes = Collections.singletonList(deleted).iterator();
+        NoteRepositoryCustom store = store(new Iterator<Note>() {
+            public boolean hasNext() {
+                return notes.hasNext();
+            }
+
+            public Note next() {
+                noteIndex.deleteUser("Jhon123");
+                return notes.next();
+            }
+        });
+        when(store.streamNotes("Jhon123")).thenReturn(closeable(Collections.<Note>emptyList().iterator()));
+
+        noteIndex.rebuild(store);
+        Assert.assertTrue(noteIndex.search("Jhon123", "trip", 10).isEmpty());
+    }
+
+    @Test
+    public void writesFoundAfterRefresh() {
+        noteIndex.index("Jhon123", note(4, "Holiday", "Pack for the trip"));
+        Assert.assertTrue(noteIndex.search("Jhon123", "trip", 10).isEmpty());
+        noteIndex.refresh();
+        Assert.assertEquals(1, noteIndex.search("Jhon123", "trip", 10).size());
+    }
+
+    @Test
+    public void indexStaleUntilRebuiltAndClosed() throws Exception {
+        Assert.assertTrue(noteIndex.isStale());
+
+        Path path = temporaryFolder.newFolder().toPath();
+        NoteIndex onDisk = new NoteIndex(FSDirectory.open(path));
+        Assert.assertTrue(onDisk.isStale());
+        onDisk.close();
+        onDisk = new NoteIndex(FSDirectory.open(path));
+        Assert.assertTrue(onDisk.isStale());
+        Note rebuilt = note(7, "Holiday", "Pack for the trip");
+        rebuilt.setNoteCreatedBy("Jhon123");
+        onDisk.rebuild(store(Arrays.asList(rebuilt).iterator()));
+        Assert.assertFalse(onDisk.isStale());
+        onDisk.close();
+
+        onDisk = new NoteIndex(FSDirectory.open(path));
+        Assert.assertFalse(onDisk.isStale());
+        Assert.assertEquals(1, onDisk.search("Jhon123", "trip", 10).size());
+        onDisk.close();
+    }
+
+    private static NoteRepositoryCustom store(Iterator<Note> notes) {
+        NoteRepositoryCustom store = mock(NoteRepositoryCustom.class);
+        when(store.streamAllNotes()).thenReturn(closeable(notes));
+        return store;
+    }
+
+    private static CloseableIterator<Note> closeable(Iterator<Note> iterator) {
+        return new CloseableIterator<Note>() {
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public Note next() {
+                return iterator.next();
+            }
+
+            public void close() {
+            }
+        };
+    }
+
+    private static Note note(int noteId, String title, String content) {
+        Note note = new Note();
+        note.setNoteId(noteId);
+        note.setNoteTitle(title);
+        note.setNoteContent(content);
+        return note;
+    }
+}
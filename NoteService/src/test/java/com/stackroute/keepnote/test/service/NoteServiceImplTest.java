@@ -1,11 +1,15 @@
 package com.stackroute.keepnote.test.service;
 
 import com.stackroute.keepnote.exception.NoteNotFoundExeption;
+import com.stackroute.keepnote.exception.NoteVersionConflictException;
 import com.stackroute.keepnote.model.Category;
 import com.stackroute.keepnote.model.Note;
 import com.stackroute.keepnote.model.NoteUser;
 import com.stackroute.keepnote.model.Reminder;
+import com.stackroute.keepnote.repository.NoteIdAllocator;
 import com.stackroute.keepnote.repository.NoteRepository;
+import com.stackroute.keepnote.service.NoteCache;
+import com.stackroute.keepnote.service.NoteIndex;
 import com.stackroute.keepnote.service.NoteServiceImpl;
 import org.junit.Assert;
 import org.junit.Before;
@@ -13,12 +17,14 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
 import java.util.*;
@@ -36,6 +42,12 @@ public class NoteServiceImplTest {
     private Reminder reminder;
     @Mock
     private NoteRepository noteRepository;
+    @Spy
+    private NoteCache noteCache = new NoteCache(1024);
+    @Mock
+    private NoteIndex noteIndex;
+    @Mock
+    private NoteIdAllocator noteIdAllocator;
     @InjectMocks
     private NoteServiceImpl noteServiceImpl;
     private List<Note> noteList = null;
@@ -96,15 +108,16 @@ public class NoteServiceImplTest {
 
     @Test
     public void createNoteSuccess() {
-        when(noteRepository.insert((NoteUser) any())).thenReturn(noteUser);
+        when(noteRepository.pushNote(note)).thenReturn(true);
         boolean status = noteServiceImpl.createNote(note);
         Assert.assertEquals(true, status);
-        verify(noteRepository, times(1)).insert((NoteUser) any());
+        verify(noteRepository, times(1)).pushNote(note);
+        verify(noteRepository, times(0)).save((NoteUser) any());
     }
 
     @Test
     public void createNoteFailure() {
-        when(noteRepository.insert((NoteUser) any())).thenReturn(null);
+        when(noteRepository.pushNote(note)).thenReturn(false);
         boolean status = noteServiceImpl.createNote(note);
         Assert.assertEquals(false, status);
     }
@@ -112,26 +125,24 @@ public class NoteServiceImplTest {
 
     @Test
     public void deleteNoteSuccess() {
-        when(noteRepository.findById(noteUser.getUserId())).thenReturn(options);
-        when(noteRepository.save(noteUser)).thenReturn(noteUser);
+        when(noteRepository.pullNote("Jhon123", note.getNoteId())).thenReturn(true);
         boolean flag = noteServiceImpl.deleteNote("Jhon123", note.getNoteId());
         Assert.assertEquals(true, flag);
+        verify(noteRepository, times(0)).findById("Jhon123");
     }
 
-    @Test(expected = NullPointerException.class)
+    @Test
     public void deleteNoteFailure() {
-        when(noteRepository.findById(noteUser.getUserId())).thenReturn(null);
-        when(noteRepository.save(noteUser)).thenReturn(noteUser);
+        when(noteRepository.pullNote("Jhon123", note.getNoteId())).thenReturn(false);
         boolean flag = noteServiceImpl.deleteNote("Jhon123", note.getNoteId());
-        Assert.assertEquals(true, flag);
+        Assert.assertEquals(false, flag);
     }
 
 
     @Test
     public void deleteAllNoteSuccess() throws NoteNotFoundExeption {
 
-        when(noteRepository.findById("Jhon123")).thenReturn(options);
-        when(noteRepository.save(noteUser)).thenReturn(noteUser);
+        when(noteRepository.deleteNotes("Jhon123")).thenReturn(true);
         boolean flag = noteServiceImpl.deleteAllNotes("Jhon123");
         Assert.assertEquals(true, flag);
 
@@ -148,21 +159,26 @@ public class NoteServiceImplTest {
     }
 
     @Test
-    public void updateNoteSuccess() throws NoteNotFoundExeption {
+    public void updateNoteSuccess() throws NoteNotFoundExeption, NoteVersionConflictException {
 
-        when(noteRepository.findById("Jhon123")).thenReturn(options);
-        note.setNoteContent("Match cancelled");
+        when(noteRepository.findNote("Jhon123", note.getNoteId())).thenReturn(note);
+        when(noteRepository.setNote(eq("Jhon123"), any(), eq(0L))).thenReturn(true);
+        Note update = new Note();
+        update.setNoteTitle(note.getNoteTitle());
+        update.setNoteContent("Match cancelled");
         noteList.add(note);
-        Note fetchedNote = noteServiceImpl.updateNote(note, note.getNoteId(), note.getNoteCreatedBy());
-        Assert.assertEquals(note, fetchedNote);
+        Note fetchedNote = noteServiceImpl.updateNote(update, note.getNoteId(), note.getNoteCreatedBy());
+        Assert.assertEquals("Match cancelled", fetchedNote.getNoteContent());
+        Assert.assertEquals(note.getNoteTitle(), fetchedNote.getNoteTitle());
+        Assert.assertEquals(note.getNoteCreationDate(), fetchedNote.getNoteCreationDate());
 
 
     }
 
     @Test(expected = NoteNotFoundExeption.class)
-    public void updateNoteFailure() throws NoteNotFoundExeption {
+    public void updateNoteFailure() throws NoteNotFoundExeption, NoteVersionConflictException {
 
-        when(noteRepository.findById("Jhon123")).thenThrow(NoSuchElementException.class);
+        when(noteRepository.findNote("Jhon123", note.getNoteId())).thenReturn(null);
         note.setNoteContent("Match cancelled");
         noteList.add(note);
         Note fetchedNote = noteServiceImpl.updateNote(note, note.getNoteId(), note.getNoteCreatedBy());
@@ -173,22 +189,185 @@ public class NoteServiceImplTest {
 
     @Test
     public void getNoteByNoteIdSuccess() throws NoteNotFoundExeption {
-        when(noteRepository.findById("Jhon123")).thenReturn(options);
+        when(noteRepository.findNote("Jhon123", note.getNoteId())).thenReturn(note);
         Note fetechedNote = noteServiceImpl.getNoteByNoteId("Jhon123", note.getNoteId());
         Assert.assertEquals(note, fetechedNote);
     }
 
     @Test(expected = NoteNotFoundExeption.class)
     public void getNoteByNoteIdFailure() throws NoteNotFoundExeption {
-        when(noteRepository.findById("Jhon123")).thenThrow(NoSuchElementException.class);
+        when(noteRepository.findNote("Jhon123", note.getNoteId())).thenReturn(null);
         Note fetechedNote = noteServiceImpl.getNoteByNoteId("Jhon123", note.getNoteId());
         Assert.assertEquals(note, fetechedNote);
     }
 
     @Test
     public void getAllNoteByUserId() {
-        when(noteRepository.findById("Jhon123")).thenReturn(options);
+        when(noteRepository.findNotes("Jhon123")).thenReturn(noteList);
         List<Note> notes = noteServiceImpl.getAllNoteByUserId("Jhon123");
         Assert.assertEquals(noteList, notes);
     }
+
+    @Test
+    public void getNotePageByUserId() {
+        noteServiceImpl.getNotePageByUserId("Jhon123", 0, 20);
+        verify(noteRepository, times(1)).streamNoteSummaries("Jhon123", 0, 20);
+        verify(noteRepository, times(0)).findById("Jhon123");
+    }
+
+    @Test
+    public void getNoteByNoteIdCached() throws NoteNotFoundExeption {
+        when(noteRepository.findNote("Jhon123", note.getNoteId())).thenReturn(note);
+        noteServiceImpl.getNoteByNoteId("Jhon123", note.getNoteId());
+        Note fetechedNote = noteServiceImpl.getNoteByNoteId("Jhon123", note.getNoteId());
+        Assert.assertEquals(note, fetechedNote);
+        verify(noteRepository, times(1)).findNote("Jhon123", note.getNoteId());
+        Assert.assertEquals(1, noteCache.getCache().stats().hitCount());
+    }
+
+    @Test
+    public void updateNoteInvalidatesCache() throws NoteNotFoundExeption, NoteVersionConflictException {
+        when(noteRepository.findNote("Jhon123", note.getNoteId())).thenReturn(note);
+        when(noteRepository.setNote(eq("Jhon123"), any(), eq(0L))).thenReturn(true);
+        noteServiceImpl.getNoteByNoteId("Jhon123", note.getNoteId());
+        noteServiceImpl.updateNote(note, note.getNoteId(), "Jhon123");
+        noteServiceImpl.getNoteByNoteId("Jhon123", note.getNoteId());
+        verify(noteRepository, times(3)).findNote("Jhon123", note.getNoteId());
+    }
+
+    @Test
+    public void deleteAllNotesInvalidatesCache() throws NoteNotFoundExeption {
+        when(noteRepository.findNote("Jhon123", note.getNoteId())).thenReturn(note);
+        when(noteRepository.deleteNotes("Jhon123")).thenReturn(true);
+        noteServiceImpl.getNoteByNoteId("Jhon123", note.getNoteId());
+        noteServiceImpl.deleteAllNotes("Jhon123");
+        Assert.assertEquals(0, noteCache.getCache().estimatedSize());
+    }
+
+    @Test
+    public void createNotesSuccess() {
+        Map<Integer, String> failed = new TreeMap<>();
+        failed.put(0, "noteId already exists");
+        when(noteRepository.pushNotes(noteList)).thenReturn(failed);
+        Assert.assertEquals(failed, noteServiceImpl.createNotes(noteList));
+        verify(noteRepository, times(1)).pushNotes(noteList);
+    }
+
+    @Test
+    public void exportNotesByUserId() {
+        noteServiceImpl.exportNotesByUserId("Jhon123");
+        verify(noteRepository, times(1)).streamNotes("Jhon123");
+    }
+
+    @Test
+    public void createNoteIndexesNote() {
+        when(noteRepository.pushNote(note)).thenReturn(true);
+        noteServiceImpl.createNote(note);
+        verify(noteIndex, times(1)).index("Jhon123", note);
+    }
+
+    @Test
+    public void createNoteFailureDoesNotIndex() {
+        when(noteRepository.pushNote(note)).thenReturn(false);
+        noteServiceImpl.createNote(note);
+        verify(noteIndex, times(0)).index(any(), any());
+    }
+
+    @Test
+    public void deleteNoteRemovesFromIndex() {
+        when(noteRepository.pullNote("Jhon123", 1)).thenReturn(true);
+        noteServiceImpl.deleteNote("Jhon123", 1);
+        verify(noteIndex, times(1)).delete("Jhon123", 1);
+    }
+
+    @Test
+    public void searchNotes() {
+        when(noteIndex.search("Jhon123", "ipl", 20)).thenReturn(noteList);
+        Assert.assertEquals(noteList, noteServiceImpl.searchNotes("Jhon123", "ipl", 20));
+    }
+
+    @Test
+    public void rebuildSearchIndex() {
+        when(noteIndex.rebuild(noteRepository)).thenReturn(3L);
+        Assert.assertEquals(3L, noteServiceImpl.rebuildSearchIndex());
+    }
+
+    @Test
+    public void createNoteAllocatesNoteId() {
+        when(noteIdAllocator.allocate(eq("Jhon123"), any())).thenReturn(7);
+        when(noteRepository.pushNote(note)).thenReturn(true);
+        noteServiceImpl.createNote(note);
+        Assert.assertEquals(7, note.getNoteId());
+    }
+
+    @Test
+    public void createNotesReservesNoteIds() {
+        Note second = new Note();
+        second.setNoteId(5);
+        second.setNoteCreatedBy("Jhon123");
+        when(noteRepository.pushNotes(any())).thenReturn(new TreeMap<>());
+        noteServiceImpl.createNotes(Arrays.asList(second, note));
+        verify(noteIdAllocator, times(1)).reserve(eq("Jhon123"), eq(5), any());
+    }
+
+    @Test
+    public void updateNoteReplacesWholeNote() throws NoteNotFoundExeption, NoteVersionConflictException {
+        when(noteRepository.findNote("Jhon123", 1)).thenReturn(note);
+        when(noteRepository.setNote(eq("Jhon123"), any(), eq(0L))).thenReturn(true);
+        Note update = new Note();
+        update.setNoteContent("Match cancelled");
+        Note updated = noteServiceImpl.updateNote(update, 1, "Jhon123");
+        Assert.assertNull(updated.getNoteTitle());
+        Assert.assertNull(updated.getCategory());
+        Assert.assertEquals(1, updated.getNoteId());
+        Assert.assertEquals("Jhon123", updated.getNoteCreatedBy());
+    }
+
+    @Test
+    public void updateNoteRetriesWithLatestVersion() throws NoteNotFoundExeption, NoteVersionConflictException {
+        Note changed = new Note();
+        changed.setNoteId(1);
+        changed.setNoteTitle("IPL final");
+        changed.setNoteContent(note.getNoteContent());
+        changed.setNoteVersion(1);
+        when(noteRepository.findNote("Jhon123", 1)).thenReturn(note, changed);
+        when(noteRepository.setNote(eq("Jhon123"), any(), eq(0L))).thenReturn(false);
+        when(noteRepository.setNote(eq("Jhon123"), any(), eq(1L))).thenReturn(true);
+        Note update = new Note();
+        update.setNoteTitle("IPL lists");
+        update.setNoteContent("Match cancelled");
+        Note updated = noteServiceImpl.updateNote(update, 1, "Jhon123");
+        Assert.assertEquals("IPL lists", updated.getNoteTitle());
+        Assert.assertEquals("Match cancelled", updated.getNoteContent());
+        verify(noteRepository, times(1)).setNote("Jhon123", updated, 1L);
+        verify(noteIndex, times(1)).index("Jhon123", updated);
+    }
+
+    @Test(expected = NoteVersionConflictException.class)
+    public void updateNoteGivesUp() throws NoteNotFoundExeption, NoteVersionConflictException {
+        when(noteRepository.findNote("Jhon123", 1)).thenReturn(note);
+        when(noteRepository.setNote(eq("Jhon123"), any(), eq(0L))).thenReturn(false);
+        try {
+            noteServiceImpl.updateNote(new Note(), 1, "Jhon123");
+        } finally {
+            verify(noteRepository, times(5)).setNote(eq("Jhon123"), any(), eq(0L));
+        }
+    }
+
+    @Test
+    public void updateNoteWithVersion() throws NoteNotFoundExeption, NoteVersionConflictException {
+        note.setNoteVersion(3);
+        when(noteRepository.findNote("Jhon123", 1)).thenReturn(note);
+        when(noteRepository.setNote(eq("Jhon123"), any(), eq(3L))).thenReturn(true);
+        Note update = new Note();
+        update.setNoteContent("Match cancelled");
+        Assert.assertEquals("Match cancelled", noteServiceImpl.updateNote(update, 1, "Jhon123", 3).getNoteContent());
+    }
+
+    @Test(expected = NoteVersionConflictException.class)
+    public void updateNoteWithStaleVersion() throws NoteNotFoundExeption, NoteVersionConflictException {
+        note.setNoteVersion(3);
+        when(noteRepository.findNote("Jhon123", 1)).thenReturn(note);
+        noteServiceImpl.updateNote(new Note(), 1, "Jhon123", 2);
+    }
 }
@@ -1,11 +1,16 @@
 package com.stackroute.keepnote.controller;
 
-import java.util.List;
+import java.util.Date;
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,13 +18,19 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stackroute.keepnote.exception.ReminderNotCreatedException;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
 import com.stackroute.keepnote.model.Reminder;
 import com.stackroute.keepnote.service.ReminderService;
 
+import io.jsonwebtoken.Claims;
+
 
 /*
  * As in this assignment, we are working with creating RESTful web service, hence annotate
@@ -49,6 +60,11 @@ import com.stackroute.keepnote.service.ReminderService; @Controller annotation,
  */
 @RestController
 public class ReminderController {
+	private static final int DEFAULT_PAGE_SIZE = 20;
+	private static final int MAX_PAGE_SIZE = 100;
+	/* The claim of the token which holds the role of the user, and the role allowed to export all reminders. */
+	private static final String ROLE = "rol";
+	private static final String ADMIN = "Admin";
 	private Logger logger=LoggerFactory.getLogger(this.getClass());
 	/*
 	 * From the problem statement, we can understand that the application requires
@@ -70,9 +86,11 @@ public class ReminderController {
 	 */
 	@Autowired
 	private ReminderService reminderService;
+	private ObjectMapper objectMapper;
 
-	public ReminderController(ReminderService reminderService) {
+	public ReminderController(ReminderService reminderService, ObjectMapper objectMapper) {
 		this.reminderService=reminderService;
+		this.objectMapper=objectMapper;
 	}
 
 	/*
@@ -193,18 +211,76 @@ public class ReminderController {
 	 * Define a handler method which will get us the all reminders.
 	 * This handler method should return any one of the status messages basis on
 	 * different situations: 
-	 * 1. 200(OK) - If the reminder found successfully. 
-	 * 2. 404(NOT FOUND) - If the reminder with specified reminderId is not found.
+	 * 1. 200(OK) - With the reminders of all users. 
+	 * 2. 403(FORBIDDEN) - If the token of the request is not one of an admin.
 	 * 
 	 * This handler method should map to the URL "/api/v1/reminder" using HTTP GET method
+	 *
+	 * This is an export for admins; users list their own reminders through
+	 * "/api/v1/reminder/user/{userId}". The reminders are written to the response
+	 * while they are read from the database, so they are never held in memory as a
+	 * whole.
 	 */
 	@GetMapping("/api/v1/reminder")
-	public ResponseEntity<List<Reminder>> getReminders() {
-		List<Reminder> categorys = null;
-     	categorys =this.reminderService.getAllReminders();
-		if (categorys == null) {
-			return new ResponseEntity<List<Reminder>>(HttpStatus.UNAUTHORIZED);
+	public ResponseEntity<StreamingResponseBody> getReminders(HttpServletRequest request) {
+		if (!isAdmin(request)) {
+			return new ResponseEntity<StreamingResponseBody>(HttpStatus.FORBIDDEN);
 		}
+		return stream(() -> this.reminderService.exportAllReminders());
+	}
 
-		return new ResponseEntity<List<Reminder>>(categorys, HttpStatus.OK);
-	}}
+	/*
+	 * Define a handler method which will get us the reminders created by a userId.
+	 * This handler method should return any one of the status messages basis on
+	 * different situations: 
+	 * 1. 200(OK) - With the page of reminders, which is empty after the last one. 
+	 * 2. 403(FORBIDDEN) - If the token of the request is neither one of the user nor of an admin.
+	 * 
+	 * This handler method should map to the URL "/api/v1/reminder/user/{userId}" using HTTP GET method
+	 *
+	 * The reminders are returned one page at a time, ordered by creation and
+	 * without their reminderDescription. "after" and "afterId" are the
+	 * reminderCreationDate (in milliseconds) and reminderId of the last reminder of
+	 * the previous page, left out for the first page, and "limit" the page size,
+	 * capped at MAX_PAGE_SIZE.
+	 */
+	@GetMapping("/api/v1/reminder/user/{userId}")
+	public ResponseEntity<StreamingResponseBody> getRemindersByUserId(@PathVariable("userId") String userId,
+			@RequestParam(value = "after", required = false) Long after,
+			@RequestParam(value = "afterId", required = false) String afterId,
+			@RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+			HttpServletRequest request) {
+		if (!isUser(request, userId) && !isAdmin(request)) {
+			return new ResponseEntity<StreamingResponseBody>(HttpStatus.FORBIDDEN);
+		}
+		int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+		Date afterDate = after == null ? null : new Date(after);
+		return stream(() -> this.reminderService.getReminderPageByUserId(userId, afterDate, afterId, pageSize));
+	}
+
+	/* The reminders are written as a JSON array, while they are read. */
+	private ResponseEntity<StreamingResponseBody> stream(Supplier<CloseableIterator<Reminder>> source) {
+		StreamingResponseBody body = outputStream -> {
+			try (CloseableIterator<Reminder> reminders = source.get();
+					JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream)) {
+				generator.writeStartArray();
+				while (reminders.hasNext()) {
+					generator.writeObject(reminders.next());
+				}
+				generator.writeEndArray();
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+	}
+
+	/* The JwtFilter leaves the claims of the verified token in the "token" attribute. */
+	private static boolean isUser(HttpServletRequest request, String userId) {
+		Object token = request.getAttribute("token");
+		return token instanceof Claims && userId.equals(((Claims) token).getSubject());
+	}
+
+	private static boolean isAdmin(HttpServletRequest request) {
+		Object token = request.getAttribute("token");
+		return token instanceof Claims && ADMIN.equalsIgnoreCase(((Claims) token).get(ROLE, String.class));
+	}
+}
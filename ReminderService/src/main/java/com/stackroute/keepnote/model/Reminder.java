@@ -3,13 +3,32 @@ package com.stackroute.keepnote.model;
 import java.util.Date;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /*
  * Please note that this class is annotated with @Document annotation
  * @Document identifies a domain object to be persisted to MongoDB.
+ *
+ * The reminders of a user are listed by reminderCreationDate through the
+ * compound index on (reminderCreatedBy, reminderCreationDate, _id); _id makes
+ * the order unique, so pages can continue after the last reminder shown.
+ *
+ * A reminder with a reminderDueDate is fired by the ReminderScheduler at that
+ * time, which sets its reminderFiredDate. The scheduler finds the reminders to
+ * fire through the index on (reminderFiredDate, reminderPartition,
+ * reminderDueDate); reminderPartition is derived from the reminderCreatedBy and
+ * decides which instance of the service fires the reminder (see ReminderLeases).
  *  */
 @Document
+@CompoundIndexes({
+		@CompoundIndex(name = "reminderCreatedBy_reminderCreationDate",
+				def = "{'reminderCreatedBy': 1, 'reminderCreationDate': 1, '_id': 1}"),
+		@CompoundIndex(name = "reminderFiredDate_reminderPartition_reminderDueDate",
+				def = "{'reminderFiredDate': 1, 'reminderPartition': 1, 'reminderDueDate': 1}") })
 public class Reminder {
 
 	/*
@@ -29,6 +48,10 @@ public class Reminder {
 	private String reminderType;
 	private String reminderCreatedBy;
 	private Date reminderCreationDate;
+	private Date reminderDueDate;
+	private Date reminderFiredDate;
+	@JsonIgnore
+	private int reminderPartition;
 	public Reminder() {
 
 	}
@@ -68,5 +91,23 @@ public class Reminder {
 	public void setReminderCreationDate(Date reminderCreationDate) {
 		this.reminderCreationDate = reminderCreationDate;
 	}
+	public Date getReminderDueDate() {
+		return reminderDueDate;
+	}
+	public void setReminderDueDate(Date reminderDueDate) {
+		this.reminderDueDate = reminderDueDate;
+	}
+	public Date getReminderFiredDate() {
+		return reminderFiredDate;
+	}
+	public void setReminderFiredDate(Date reminderFiredDate) {
+		this.reminderFiredDate = reminderFiredDate;
+	}
+	public int getReminderPartition() {
+		return reminderPartition;
+	}
+	public void setReminderPartition(int reminderPartition) {
+		this.reminderPartition = reminderPartition;
+	}
 
 }
@@ -0,0 +1,63 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.model.Reminder;
+
+/*
+ * This class gives a reminderCreationDate to the reminders stored without one,
+ * before the ReminderService set it on create. The reminders of a user are
+ * paged by reminderCreationDate (see ReminderRepositoryImpl), which skips the
+ * reminders without one after the first page.
+ *
+ * Their creation date is unknown, so they get the epoch: they keep coming first,
+ * ordered by reminderId, as they did before, and they are still purged as
+ * created before a user deletion (see ReminderDeletionConsumer). The reminders
+ * are updated with a single updateMulti, and a run which finds none changes
+ * nothing.
+ *
+ * It runs once at startup unless keepnote.reminder.migration.enabled is false.
+ */
+@Component
+@ConditionalOnProperty(name = "keepnote.reminder.migration.enabled", havingValue = "true", matchIfMissing = true)
+public class ReminderCreationDateBackfill implements ApplicationRunner {
+
+	public static final Date UNKNOWN_CREATION_DATE = new Date(0);
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final MongoTemplate mongoTemplate;
+
+	@Autowired
+	public ReminderCreationDateBackfill(MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		long backfilled = backfill();
+		if (backfilled > 0) {
+			logger.info("Set the reminderCreationDate of {} reminders", backfilled);
+		}
+	}
+
+	/* This method returns the number of reminders which had no reminderCreationDate. */
+	public long backfill() {
+		return this.mongoTemplate.updateMulti(new Query(Criteria.where("reminderCreationDate").is(null)),
+				new Update().set("reminderCreationDate", UNKNOWN_CREATION_DATE), Reminder.class)
+				.getModifiedCount();
+	}
+
+}
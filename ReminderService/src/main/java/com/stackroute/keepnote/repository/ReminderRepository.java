@@ -8,8 +8,9 @@ import com.stackroute.keepnote.model.Reminder;
 /*
 * This class is implementing the MongoRepository interface for User.
 * Annotate this class with @Repository annotation
+* Listing the reminders of a user is provided by ReminderRepositoryCustom.
 * */
 @Repository
-public interface ReminderRepository extends MongoRepository<Reminder, String> {
+public interface ReminderRepository extends MongoRepository<Reminder, String>, ReminderRepositoryCustom {
 
 }
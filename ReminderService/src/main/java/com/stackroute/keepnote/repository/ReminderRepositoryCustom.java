@@ -0,0 +1,31 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.Date;
+
+import org.springframework.data.util.CloseableIterator;
+
+import com.stackroute.keepnote.model.Reminder;
+
+/*
+ * This interface declares the reminder reads which are streamed from the
+ * database instead of being loaded as a whole. They are implemented with
+ * MongoTemplate in ReminderRepositoryImpl.
+ */
+public interface ReminderRepositoryCustom {
+
+	/*
+	 * This method should stream at most limit reminders created by the given user,
+	 * ordered by reminderCreationDate and reminderId, starting after the reminder
+	 * with afterDate and afterId (from the first reminder when afterDate is null).
+	 * The reminderDescription of the reminders is not read. The returned iterator
+	 * has to be closed by the caller.
+	 */
+	CloseableIterator<Reminder> streamReminderSummaries(String userId, Date afterDate, String afterId, int limit);
+
+	/*
+	 * This method should stream the reminders of all users. The returned iterator
+	 * has to be closed by the caller.
+	 */
+	CloseableIterator<Reminder> streamAllReminders();
+
+}
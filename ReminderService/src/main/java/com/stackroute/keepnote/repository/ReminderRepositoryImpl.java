@@ -0,0 +1,52 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import com.stackroute.keepnote.model.Reminder;
+
+/*
+ * This class implements ReminderRepositoryCustom through MongoTemplate. Spring
+ * Data picks it up as the custom fragment of ReminderRepository because of the
+ * "Impl" postfix.
+ */
+public class ReminderRepositoryImpl implements ReminderRepositoryCustom {
+
+	private final MongoTemplate mongoTemplate;
+
+	@Autowired
+	public ReminderRepositoryImpl(MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	/*
+	 * This is a range scan on the (reminderCreatedBy, reminderCreationDate, _id)
+	 * index, so the cost of a page does not depend on how many reminders the user
+	 * has. A page continues after the reminder with afterDate, or after afterId
+	 * among the reminders created at the same time.
+	 */
+	public CloseableIterator<Reminder> streamReminderSummaries(String userId, Date afterDate, String afterId,
+			int limit) {
+		Criteria criteria = Criteria.where("reminderCreatedBy").is(userId);
+		if (afterDate != null && afterId != null) {
+			criteria = criteria.orOperator(Criteria.where("reminderCreationDate").gt(afterDate),
+					Criteria.where("reminderCreationDate").is(afterDate).and("_id").gt(afterId));
+		} else if (afterDate != null) {
+			criteria = criteria.and("reminderCreationDate").gt(afterDate);
+		}
+		Query query = new Query(criteria).with(Sort.by("reminderCreationDate", "_id")).limit(limit);
+		query.fields().exclude("reminderDescription");
+		return this.mongoTemplate.stream(query, Reminder.class);
+	}
+
+	public CloseableIterator<Reminder> streamAllReminders() {
+		return this.mongoTemplate.stream(new Query(), Reminder.class);
+	}
+
+}
@@ -0,0 +1,20 @@
+package com.stackroute.keepnote.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.model.Reminder;
+
+/* This sink writes one log line per fired reminder. */
+@Component
+public class LoggingReminderSink implements ReminderSink {
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	public void fire(Reminder reminder) {
+		logger.info("reminder={} user={} type={} fired, due={}", reminder.getReminderId(),
+				reminder.getReminderCreatedBy(), reminder.getReminderType(), reminder.getReminderDueDate());
+	}
+
+}
@@ -0,0 +1,334 @@
+package com.stackroute.keepnote.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.model.Reminder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * This sink mails the fired reminders to their owners. It is only created when
+ * a mail server is configured (spring.mail.host), as only then Spring Boot
+ * provides the MailSender.
+ *
+ * The users have no mail address in KeepNote, so the address of an owner is
+ * made from its userId by keepnote.reminder.mail.to, e.g. %s@example.com, which
+ * must be set with spring.mail.host. Only users whose mailbox is named after
+ * their userId at that domain receive the reminders.
+ *
+ * fire only queues the reminder under its owner and returns. Every
+ * keepnote.reminder.mail.flush-interval milliseconds a thread of its own takes up
+ * to keepnote.reminder.mail.batch-size owners from the queue and sends each of
+ * them one message with all their queued reminders, so a user with many
+ * reminders due at once gets one mail. All messages of a round are sent over one
+ * connection to the mail server. At most keepnote.reminder.mail.rate messages
+ * are sent per second; the owners over the rate wait in the queue.
+ *
+ * The queue holds at most keepnote.reminder.mail.queue-capacity reminders,
+ * including the ones waiting to be sent again. When it is full, fire waits up to
+ * keepnote.reminder.mail.offer-timeout milliseconds for room, which slows the
+ * ReminderScheduler down, and then drops the reminder.
+ *
+ * A message which the mail server did not accept, or all messages of a round
+ * when the connection to it failed, are tried again after a backoff which doubles
+ * with every attempt, from keepnote.reminder.mail.backoff up to
+ * keepnote.reminder.mail.max-backoff milliseconds, of which a random part is
+ * waited so retries of many messages do not hit the server at once. It is given
+ * up after keepnote.reminder.mail.max-attempts attempts.
+ *
+ * The messages are counted as "keepnote.reminder.mail" with the tag outcome
+ * (sent, retried, failed or dropped), and each round is timed as
+ * "keepnote.reminder.mail.rounds"; the queued reminders are the gauge
+ * "keepnote.reminder.mail.queued".
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.mail", name = "host")
+public class MailReminderSink implements ReminderSink {
+
+	public static final String MAILS = "keepnote.reminder.mail";
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final MailSender mailSender;
+	private final String from;
+	private final String to;
+	private final int queueCapacity;
+	private final long offerTimeoutMillis;
+	private final long flushIntervalMillis;
+	private final int batchSize;
+	private final double rate;
+	private final double burst;
+	private final int maxAttempts;
+	private final long backoffMillis;
+	private final long maxBackoffMillis;
+	private final Counter sent;
+	private final Counter retried;
+	private final Counter failed;
+	private final Counter dropped;
+	private final Timer rounds;
+
+	/* The reminders waiting to be mailed by owner, in the order the owners were queued; guarded by itself. */
+	private final Map<String, List<Reminder>> pending = new LinkedHashMap<>();
+	private int queued;
+
+	/* Only used by the thread which sends the messages. */
+	private final List<Retry> retries = new ArrayList<>();
+	private double tokens;
+	private long refilled = -1;
+	private ScheduledExecutorService executor;
+
+	@Autowired
+	public MailReminderSink(MailSender mailSender, MeterRegistry meterRegistry,
+			@Value("${keepnote.reminder.mail.from:keepnote@localhost}") String from,
+			@Value("${keepnote.reminder.mail.to}") String to,
+			@Value("${keepnote.reminder.mail.queue-capacity:10000}") int queueCapacity,
+			@Value("${keepnote.reminder.mail.offer-timeout:1000}") long offerTimeoutMillis,
+			@Value("${keepnote.reminder.mail.flush-interval:1000}") long flushIntervalMillis,
+			@Value("${keepnote.reminder.mail.batch-size:50}") int batchSize,
+			@Value("${keepnote.reminder.mail.rate:50}") double rate,
+			@Value("${keepnote.reminder.mail.max-attempts:5}") int maxAttempts,
+			@Value("${keepnote.reminder.mail.backoff:1000}") long backoffMillis,
+			@Value("${keepnote.reminder.mail.max-backoff:60000}") long maxBackoffMillis) {
+		this.mailSender = mailSender;
+		this.from = from;
+		this.to = to;
+		this.queueCapacity = queueCapacity;
+		this.offerTimeoutMillis = offerTimeoutMillis;
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.batchSize = batchSize;
+		this.rate = rate;
+		this.maxAttempts = maxAttempts;
+		this.backoffMillis = backoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.burst = Math.max(1, Math.min(batchSize, rate));
+		this.tokens = this.burst;
+		this.sent = counter(meterRegistry, "sent");
+		this.retried = counter(meterRegistry, "retried");
+		this.failed = counter(meterRegistry, "failed");
+		this.dropped = counter(meterRegistry, "dropped");
+		this.rounds = Timer.builder(MAILS + ".rounds").description("Time to send one round of reminder mails")
+				.register(meterRegistry);
+		meterRegistry.gauge(MAILS + ".queued", this, MailReminderSink::getQueued);
+	}
+
+	@PostConstruct
+	public synchronized void start() {
+		if (this.executor == null) {
+			this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "reminder-mail");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.executor.scheduleWithFixedDelay(this::run, this.flushIntervalMillis, this.flushIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+			this.executor = null;
+			int unsent = getQueued();
+			if (unsent > 0) {
+				logger.warn("{} fired reminders are not mailed, the service stops", unsent);
+			}
+		}
+	}
+
+	public void fire(Reminder reminder) {
+		synchronized (this.pending) {
+			long deadline = System.currentTimeMillis() + this.offerTimeoutMillis;
+			long wait = this.offerTimeoutMillis;
+			while (this.queued >= this.queueCapacity && wait > 0) {
+				try {
+					this.pending.wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				wait = deadline - System.currentTimeMillis();
+			}
+			if (this.queued >= this.queueCapacity) {
+				this.dropped.increment();
+				logger.warn("reminder={} user={} is not mailed, the mail queue is full", reminder.getReminderId(),
+						reminder.getReminderCreatedBy());
+				return;
+			}
+			this.pending.computeIfAbsent(reminder.getReminderCreatedBy(), owner -> new ArrayList<>()).add(reminder);
+			this.queued++;
+		}
+	}
+
+	/*
+	 * This method sends one round: the retries which are due and then the queued
+	 * owners, as many messages as the rate allows at nowMillis.
+	 */
+	public void flush(long nowMillis) {
+		int budget = Math.min(this.batchSize, permits(nowMillis));
+		List<Retry> round = new ArrayList<>();
+		for (Iterator<Retry> due = this.retries.iterator(); due.hasNext() && round.size() < budget;) {
+			Retry retry = due.next();
+			if (retry.dueMillis <= nowMillis) {
+				due.remove();
+				round.add(retry);
+			}
+		}
+		synchronized (this.pending) {
+			for (Iterator<Map.Entry<String, List<Reminder>>> owners = this.pending.entrySet().iterator(); owners
+					.hasNext() && round.size() < budget;) {
+				Map.Entry<String, List<Reminder>> owner = owners.next();
+				owners.remove();
+				round.add(new Retry(message(owner.getKey(), owner.getValue()), owner.getValue().size()));
+			}
+		}
+		if (!round.isEmpty()) {
+			this.tokens -= round.size();
+			this.rounds.record(() -> send(round, nowMillis));
+		}
+	}
+
+	/* The number of reminders waiting to be mailed, including the ones waiting to be sent again. */
+	public int getQueued() {
+		synchronized (this.pending) {
+			return this.queued;
+		}
+	}
+
+	private void send(List<Retry> round, long nowMillis) {
+		SimpleMailMessage[] messages = new SimpleMailMessage[round.size()];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = round.get(i).message;
+		}
+		Map<Object, Exception> failures = Collections.emptyMap();
+		RuntimeException error = null;
+		boolean allFailed = false;
+		try {
+			this.mailSender.send(messages);
+		} catch (MailSendException e) {
+			// lists every message which was not sent, all of them when the connection
+			// failed; none when they were sent and only closing the connection failed
+			failures = e.getFailedMessages();
+			error = e;
+			if (failures.isEmpty()) {
+				logger.warn("The reminder mails were sent, but the connection could not be closed: {}",
+						e.toString());
+			}
+		} catch (RuntimeException e) {
+			// e.g. the authentication failed, before any message was sent
+			allFailed = true;
+			error = e;
+		}
+		int done = 0;
+		for (Retry message : round) {
+			if (!allFailed && !failures.containsKey(message.message)) {
+				this.sent.increment();
+				done += message.reminders;
+			} else if (++message.attempts < this.maxAttempts) {
+				this.retried.increment();
+				message.dueMillis = nowMillis + backoff(message.attempts);
+				this.retries.add(message);
+			} else {
+				this.failed.increment();
+				done += message.reminders;
+				logger.warn("reminders={} could not be mailed to {} in {} attempts: {}", message.reminders,
+						message.message.getTo()[0], message.attempts, error.toString());
+			}
+		}
+		synchronized (this.pending) {
+			this.queued -= done;
+			this.pending.notifyAll();
+		}
+	}
+
+	/* A token bucket of batch-size tokens, or rate if it is lower, filled with rate tokens per second. */
+	private int permits(long nowMillis) {
+		if (this.refilled >= 0 && nowMillis > this.refilled) {
+			this.tokens = Math.min(this.burst, this.tokens + (nowMillis - this.refilled) * this.rate / 1000);
+		}
+		this.refilled = Math.max(this.refilled, nowMillis);
+		return (int) this.tokens;
+	}
+
+	/* Half of the doubled backoff is waited, and a random part of the other half. */
+	private long backoff(int attempts) {
+		long backoff = this.backoffMillis << Math.min(attempts - 1, 30);
+		if (backoff <= 0 || backoff > this.maxBackoffMillis) {
+			backoff = this.maxBackoffMillis;
+		}
+		return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+	}
+
+	private SimpleMailMessage message(String owner, List<Reminder> reminders) {
+		SimpleMailMessage message = new SimpleMailMessage();
+		message.setFrom(this.from);
+		message.setTo(String.format(this.to, owner));
+		message.setSubject(reminders.size() == 1 ? "Reminder: " + reminders.get(0).getReminderName()
+				: reminders.size() + " reminders");
+		StringBuilder text = new StringBuilder();
+		for (Reminder reminder : reminders) {
+			text.append(reminder.getReminderName());
+			if (reminder.getReminderType() != null) {
+				text.append(" (").append(reminder.getReminderType()).append(')');
+			}
+			text.append(", due ").append(reminder.getReminderDueDate()).append('\n');
+			if (reminder.getReminderDescription() != null) {
+				text.append(reminder.getReminderDescription()).append('\n');
+			}
+			text.append('\n');
+		}
+		message.setText(text.toString());
+		return message;
+	}
+
+	/* An exception would stop the periodic task, so it is logged and the task runs again next time. */
+	private void run() {
+		try {
+			flush(System.currentTimeMillis());
+		} catch (RuntimeException e) {
+			logger.warn("The reminder mails could not be sent, they are tried again: {}", e.toString());
+		}
+	}
+
+	private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+		return Counter.builder(MAILS).description("Reminder mails").tag("outcome", outcome).register(meterRegistry);
+	}
+
+	private static final class Retry {
+
+		private final SimpleMailMessage message;
+		private final int reminders;
+		private int attempts;
+		private long dueMillis;
+
+		private Retry(SimpleMailMessage message, int reminders) {
+			this.message = message;
+			this.reminders = reminders;
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.stackroute.keepnote.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.client.result.UpdateResult;
+
+/*
+ * This class shares the reminders between the running instances of the
+ * ReminderService. Every reminder belongs to one of
+ * keepnote.reminder.scheduler.partitions partitions (see partitionOf), and every
+ * partition is leased to one instance at a time through a document of the
+ * "reminder_lease" collection, which holds its owner and the time the lease
+ * expires. The partition of a reminder is stored with it, so the number of
+ * partitions must not be changed once reminders exist.
+ *
+ * Every instance announces itself in the "reminder_scheduler" collection on each
+ * renew and then holds its share of the partitions, the partitions divided by the
+ * live instances, rounded up. It renews the leases it holds up to its share,
+ * releases the others and takes free or expired leases until it has its share.
+ * So an instance which joins is handed partitions by the others on their next
+ * renew, and the partitions of an instance which stops are taken over once its
+ * leases have expired, after keepnote.reminder.scheduler.lease-duration seconds.
+ */
+@Component
+@ConditionalOnProperty(name = "keepnote.reminder.scheduler.enabled", havingValue = "true", matchIfMissing = true)
+public class ReminderLeases {
+
+	public static final String LEASES = "reminder_lease";
+	public static final String INSTANCES = "reminder_scheduler";
+
+	private final MongoTemplate mongoTemplate;
+	private final int partitions;
+	private final long leaseMillis;
+	private final String instanceId;
+	private Set<Integer> held = new TreeSet<>();
+
+	@Autowired
+	public ReminderLeases(MongoTemplate mongoTemplate,
+			@Value("${keepnote.reminder.scheduler.partitions:16}") int partitions,
+			@Value("${keepnote.reminder.scheduler.lease-duration:30}") long leaseDuration,
+			@Value("${keepnote.reminder.scheduler.instance-id:}") String instanceId) {
+		this.mongoTemplate = mongoTemplate;
+		this.partitions = partitions;
+		this.leaseMillis = leaseDuration * 1000;
+		this.instanceId = instanceId.isEmpty() ? defaultInstanceId() : instanceId;
+	}
+
+	/* The partition of the reminders of a user; it only depends on the userId and the number of partitions. */
+	public static int partitionOf(String userId, int partitions) {
+		return userId == null ? 0 : Math.floorMod(userId.hashCode(), partitions);
+	}
+
+	public String getInstanceId() {
+		return this.instanceId;
+	}
+
+	/* This method renews the leases of this instance and returns the partitions it holds until nowMillis plus the lease duration. */
+	public synchronized Set<Integer> renew(long nowMillis) {
+		Date now = new Date(nowMillis);
+		Date expiresAt = new Date(nowMillis + this.leaseMillis);
+		this.mongoTemplate.upsert(new Query(Criteria.where("_id").is(this.instanceId)),
+				new Update().set("expiresAt", expiresAt), INSTANCES);
+		long instances = Math.max(1, this.mongoTemplate.count(new Query(Criteria.where("expiresAt").gt(now)), INSTANCES));
+		int share = (int) ((this.partitions + instances - 1) / instances);
+
+		Set<Integer> leased = new TreeSet<>();
+		for (Integer partition : this.held) {
+			if (leased.size() < share && lease(partition, now, expiresAt)) {
+				leased.add(partition);
+			} else {
+				release(partition);
+			}
+		}
+		for (int partition = 0; partition < this.partitions && leased.size() < share; partition++) {
+			if (!leased.contains(partition) && lease(partition, now, expiresAt)) {
+				leased.add(partition);
+			}
+		}
+		this.held = leased;
+		return new TreeSet<>(leased);
+	}
+
+	/* This method gives up all leases of this instance, so the other instances can take them over at once. */
+	public synchronized void release() {
+		for (Integer partition : this.held) {
+			release(partition);
+		}
+		this.held = new TreeSet<>();
+		this.mongoTemplate.remove(new Query(Criteria.where("_id").is(this.instanceId)), INSTANCES);
+	}
+
+	/*
+	 * The lease is taken when this instance holds it or it has expired. When
+	 * another instance holds it, the query does not match and the upsert tries to
+	 * insert a second document with the same _id, which Mongo reports as a
+	 * duplicate key.
+	 */
+	private boolean lease(int partition, Date now, Date expiresAt) {
+		Query query = new Query(Criteria.where("_id").is(partition)
+				.orOperator(Criteria.where("owner").is(this.instanceId), Criteria.where("expiresAt").lte(now)));
+		Update update = new Update().set("owner", this.instanceId).set("expiresAt", expiresAt);
+		try {
+			UpdateResult result = this.mongoTemplate.upsert(query, update, LEASES);
+			return result.getMatchedCount() > 0 || result.getUpsertedId() != null;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	private void release(int partition) {
+		this.mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(partition).and("owner").is(this.instanceId)),
+				new Update().set("expiresAt", new Date(0)), LEASES);
+	}
+
+	private static String defaultInstanceId() {
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			host = "reminder-service";
+		}
+		return host + "-" + UUID.randomUUID();
+	}
+
+}
@@ -0,0 +1,190 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.model.Reminder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * This class fires the reminders when their reminderDueDate has come.
+ *
+ * Every keepnote.reminder.scheduler.load-interval seconds it renews the
+ * partitions this instance holds (see ReminderLeases) and loads the reminders of
+ * those partitions which are not fired yet and due within the next
+ * keepnote.reminder.scheduler.horizon seconds, through the index on
+ * (reminderFiredDate, reminderPartition, reminderDueDate). Only their id and due
+ * date are read, and they are kept in a TimingWheel. Every
+ * keepnote.reminder.scheduler.tick milliseconds the wheel is advanced, and every
+ * reminder which has become due is claimed by setting its reminderFiredDate,
+ * with a findAndModify which only matches while the reminder is still due, not
+ * fired and in a partition of this instance. A reminder which was changed or
+ * deleted in the meantime, or fired by another instance, is skipped. The claimed
+ * reminder is handed to every ReminderSink.
+ *
+ * The reminder is claimed before it is handed to the sinks, so it is fired at
+ * most once, even while a partition moves to another instance; it is lost if
+ * the instance stops between the two.
+ *
+ * Loading and firing run on one thread, which is the only one using the wheel.
+ * The fired and skipped reminders are counted as "keepnote.reminder.fired" with
+ * the tag outcome (fired or skipped).
+ */
+@Component
+@ConditionalOnProperty(name = "keepnote.reminder.scheduler.enabled", havingValue = "true", matchIfMissing = true)
+public class ReminderScheduler {
+
+	public static final String FIRED = "keepnote.reminder.fired";
+	private static final int WHEEL_SIZE = 64;
+	private static final int WHEEL_LEVELS = 3;
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final MongoTemplate mongoTemplate;
+	private final ReminderLeases leases;
+	private final List<ReminderSink> sinks;
+	private final long tickMillis;
+	private final long loadIntervalMillis;
+	private final long horizonMillis;
+	private final int loadBatchSize;
+	private final TimingWheel<Reminder> wheel;
+	private final Map<String, Long> loaded = new HashMap<>();
+	private final Counter fired;
+	private final Counter skipped;
+	private Set<Integer> partitions = Collections.emptySet();
+	private ScheduledExecutorService executor;
+
+	@Autowired
+	public ReminderScheduler(MongoTemplate mongoTemplate, ReminderLeases leases, List<ReminderSink> sinks,
+			MeterRegistry meterRegistry,
+			@Value("${keepnote.reminder.scheduler.tick:1000}") long tickMillis,
+			@Value("${keepnote.reminder.scheduler.load-interval:10}") long loadInterval,
+			@Value("${keepnote.reminder.scheduler.horizon:600}") long horizon,
+			@Value("${keepnote.reminder.scheduler.load-batch-size:10000}") int loadBatchSize) {
+		this.mongoTemplate = mongoTemplate;
+		this.leases = leases;
+		this.sinks = sinks;
+		this.tickMillis = tickMillis;
+		this.loadIntervalMillis = loadInterval * 1000;
+		this.loadBatchSize = loadBatchSize;
+		this.wheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+		this.horizonMillis = Math.min(horizon * 1000, this.wheel.getRangeMillis());
+		this.fired = Counter.builder(FIRED).tag("outcome", "fired").register(meterRegistry);
+		this.skipped = Counter.builder(FIRED).tag("outcome", "skipped").register(meterRegistry);
+	}
+
+	@PostConstruct
+	public synchronized void start() {
+		if (this.executor == null) {
+			this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "reminder-scheduler");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.executor.scheduleWithFixedDelay(() -> run(this::load), 0, this.loadIntervalMillis,
+					TimeUnit.MILLISECONDS);
+			this.executor.scheduleAtFixedRate(() -> run(this::tick), this.tickMillis, this.tickMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+			this.executor = null;
+			this.leases.release();
+		}
+	}
+
+	/* This method renews the leases and loads the reminders which are due before nowMillis plus the horizon. */
+	public void load(long nowMillis) {
+		this.partitions = this.leases.renew(nowMillis);
+		if (this.partitions.isEmpty()) {
+			return;
+		}
+		Query query = new Query(Criteria.where("reminderFiredDate").is(null)
+				.and("reminderPartition").in(this.partitions)
+				.and("reminderDueDate").lte(new Date(nowMillis + this.horizonMillis)))
+				.with(Sort.by("reminderDueDate")).limit(this.loadBatchSize);
+		query.fields().include("_id").include("reminderDueDate");
+		for (Reminder reminder : this.mongoTemplate.find(query, Reminder.class)) {
+			Long due = reminder.getReminderDueDate().getTime();
+			if (!due.equals(this.loaded.get(reminder.getReminderId())) && this.wheel.add(reminder, due)) {
+				this.loaded.put(reminder.getReminderId(), due);
+			}
+		}
+	}
+
+	/* This method fires the loaded reminders which are due at nowMillis. */
+	public void tick(long nowMillis) {
+		for (Reminder due : this.wheel.advance(nowMillis)) {
+			this.loaded.remove(due.getReminderId(), due.getReminderDueDate().getTime());
+			fire(due.getReminderId(), nowMillis);
+		}
+	}
+
+	/* The number of reminders waiting in the wheel. */
+	public int getScheduled() {
+		return this.wheel.size();
+	}
+
+	private void fire(String reminderId, long nowMillis) {
+		Query query = new Query(Criteria.where("_id").is(reminderId)
+				.and("reminderFiredDate").is(null)
+				.and("reminderPartition").in(this.partitions)
+				.and("reminderDueDate").lte(new Date(nowMillis)));
+		Reminder reminder = this.mongoTemplate.findAndModify(query,
+				new Update().set("reminderFiredDate", new Date(nowMillis)),
+				FindAndModifyOptions.options().returnNew(true), Reminder.class);
+		if (reminder == null) {
+			this.skipped.increment();
+			return;
+		}
+		this.fired.increment();
+		for (ReminderSink sink : this.sinks) {
+			try {
+				sink.fire(reminder);
+			} catch (RuntimeException e) {
+				logger.warn("reminder={} could not be passed to {}: {}", reminderId, sink.getClass().getSimpleName(),
+						e.toString());
+			}
+		}
+	}
+
+	/* An exception would stop the periodic task, so it is logged and the task runs again next time. */
+	private void run(LongConsumer task) {
+		try {
+			task.accept(System.currentTimeMillis());
+		} catch (RuntimeException e) {
+			logger.warn("The reminder scheduler failed, it tries again: {}", e.toString());
+		}
+	}
+
+}
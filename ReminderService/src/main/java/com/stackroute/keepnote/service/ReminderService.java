@@ -4,8 +4,11 @@ import com.stackroute.keepnote.exception.ReminderNotCreatedException;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
 import com.stackroute.keepnote.model.Reminder;
 
+import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.util.CloseableIterator;
+
 public interface ReminderService {
 	
 	/*
@@ -22,4 +25,8 @@ public interface ReminderService {
     Reminder getReminderById(String reminderId) throws ReminderNotFoundException;
 
     List<Reminder> getAllReminders();
+
+    CloseableIterator<Reminder> getReminderPageByUserId(String userId, Date afterDate, String afterId, int limit);
+
+    CloseableIterator<Reminder> exportAllReminders();
 }
@@ -1,9 +1,13 @@
 package com.stackroute.keepnote.service;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Service;
 
 import com.stackroute.keepnote.exception.ReminderNotCreatedException;
@@ -32,12 +36,27 @@ public class ReminderServiceImpl implements ReminderService {
 	@Autowired
 	private ReminderRepository reminderRepository;
 
+	/*
+	 * The reminders are spread over these partitions, which the running instances
+	 * lease to fire them. A reminder keeps the partition it was given when it was
+	 * created or updated, so the number must not be changed once reminders exist.
+	 */
+	@Value("${keepnote.reminder.scheduler.partitions:16}")
+	private int partitions = 16;
+
 	/*
 	 * This method should be used to save a new reminder.Call the corresponding
 	 * method of Respository interface.
+	 * 
+	 * The reminderCreationDate is set to the system date, as the reminders of a
+	 * user are listed by it. A new reminder is not fired yet, and is put into the
+	 * partition of its user.
 	 */
 	public Reminder createReminder(Reminder reminder) throws ReminderNotCreatedException {
 
+		reminder.setReminderCreationDate(new Date());
+		reminder.setReminderFiredDate(null);
+		reminder.setReminderPartition(ReminderLeases.partitionOf(reminder.getReminderCreatedBy(), this.partitions));
 		Reminder currentReminder = this.reminderRepository.save(reminder);
 		if (currentReminder != null) {
 			return currentReminder;
@@ -67,19 +86,25 @@ public class ReminderServiceImpl implements ReminderService {
 	/*
 	 * This method should be used to update a existing reminder.Call the
 	 * corresponding method of Respository interface.
+	 * 
+	 * The name, description, type and due date are taken from the given
+	 * reminder. A reminder whose due date changes is fired again at the new due
+	 * date, and its partition is computed again.
 	 */
 	public Reminder updateReminder(Reminder reminder, String reminderId) throws ReminderNotFoundException {
 
-		Reminder currentReminder = this.reminderRepository.findById(reminderId).get();
-		if (currentReminder != null) {
-			try {
-				return this.reminderRepository.save(currentReminder);
-			} catch (Exception e) {
-				throw e;
-			}
-		} else {
-			throw new ReminderNotFoundException("reminder was not found");
+		Reminder currentReminder = this.reminderRepository.findById(reminderId)
+				.orElseThrow(() -> new ReminderNotFoundException("reminder was not found"));
+		currentReminder.setReminderName(reminder.getReminderName());
+		currentReminder.setReminderDescription(reminder.getReminderDescription());
+		currentReminder.setReminderType(reminder.getReminderType());
+		if (!Objects.equals(currentReminder.getReminderDueDate(), reminder.getReminderDueDate())) {
+			currentReminder.setReminderDueDate(reminder.getReminderDueDate());
+			currentReminder.setReminderFiredDate(null);
 		}
+		currentReminder.setReminderPartition(
+				ReminderLeases.partitionOf(currentReminder.getReminderCreatedBy(), this.partitions));
+		return this.reminderRepository.save(currentReminder);
 	}
 
 	/*
@@ -95,6 +120,9 @@ public class ReminderServiceImpl implements ReminderService {
 	/*
 	 * This method should be used to get all reminders. Call the corresponding
 	 * method of Respository interface.
+	 * 
+	 * All reminders of all users are loaded at once; exportAllReminders reads
+	 * them one at a time instead.
 	 */
 
 	public List<Reminder> getAllReminders() {
@@ -102,4 +130,24 @@ public class ReminderServiceImpl implements ReminderService {
 		return this.reminderRepository.findAll();
 	}
 
+	/*
+	 * This method should be used to get one page of the reminders with specific
+	 * userId, ordered by creation, starting after the reminder with afterDate and
+	 * afterId. The reminders are streamed from the database without their
+	 * reminderDescription.
+	 */
+	public CloseableIterator<Reminder> getReminderPageByUserId(String userId, Date afterDate, String afterId,
+			int limit) {
+
+		return this.reminderRepository.streamReminderSummaries(userId, afterDate, afterId, limit);
+	}
+
+	/*
+	 * This method should be used to read the reminders of all users one at a time.
+	 */
+	public CloseableIterator<Reminder> exportAllReminders() {
+
+		return this.reminderRepository.streamAllReminders();
+	}
+
 }
@@ -0,0 +1,17 @@
+package com.stackroute.keepnote.service;
+
+import com.stackroute.keepnote.model.Reminder;
+
+/*
+ * This interface receives the reminders fired by the ReminderScheduler. Every
+ * ReminderSink bean is called for every fired reminder.
+ *
+ * fire is called on the thread of the scheduler, so a sink which does slow work,
+ * e.g. talking to another server, has to hand the reminder over to a thread of
+ * its own and return.
+ */
+public interface ReminderSink {
+
+	void fire(Reminder reminder);
+
+}
@@ -0,0 +1,125 @@
+package com.stackroute.keepnote.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * This class is a hierarchical timing wheel: items are added with a due time and
+ * handed back by advance once that time has passed.
+ *
+ * Time is counted in ticks of tickMillis. The first level has wheelSize slots of
+ * one tick, every further level wheelSize slots of wheelSize times the span of
+ * the level below, so levels levels cover wheelSize^levels ticks. An item is put
+ * into the slot of the lowest level whose range reaches its due time. When the
+ * wheel reaches a slot of a higher level, the items of that slot are put into the
+ * lower levels again, until they expire from the first level. Adding an item and
+ * advancing by a tick therefore take constant time, whatever the number of items.
+ *
+ * Items due before the current tick expire on the next tick. The class is not
+ * thread-safe; it is meant to be used by a single thread.
+ */
+public class TimingWheel<T> {
+
+	private final long tickMillis;
+	private final int wheelSize;
+	private final long[] spans;
+	private final List<List<Entry<T>>> slots;
+	private long currentTick;
+	private int size;
+
+	public TimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+		this.tickMillis = tickMillis;
+		this.wheelSize = wheelSize;
+		this.spans = new long[levels + 1];
+		this.spans[0] = 1;
+		for (int level = 1; level <= levels; level++) {
+			this.spans[level] = Math.multiplyExact(this.spans[level - 1], wheelSize);
+		}
+		this.slots = new ArrayList<>(levels * wheelSize);
+		for (int slot = 0; slot < levels * wheelSize; slot++) {
+			this.slots.add(new ArrayList<>());
+		}
+		this.currentTick = Math.floorDiv(startMillis, tickMillis);
+	}
+
+	/* How far ahead of the current time an item can be added. */
+	public long getRangeMillis() {
+		return (this.spans[this.spans.length - 1] - 1) * this.tickMillis;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/* It returns false, and does not add the item, when dueMillis is beyond the range of the wheel. */
+	public boolean add(T item, long dueMillis) {
+		long dueTick = Math.max(Math.floorDiv(dueMillis, this.tickMillis), this.currentTick + 1);
+		if (!place(new Entry<>(item, dueTick))) {
+			return false;
+		}
+		this.size++;
+		return true;
+	}
+
+	/* This method moves the wheel to nowMillis and returns the items which have become due, in order. */
+	public List<T> advance(long nowMillis) {
+		List<T> expired = new ArrayList<>();
+		long targetTick = Math.floorDiv(nowMillis, this.tickMillis);
+		while (this.currentTick < targetTick) {
+			this.currentTick++;
+			for (int level = this.spans.length - 2; level > 0; level--) {
+				if (this.currentTick % this.spans[level] == 0) {
+					for (Entry<T> entry : drain(level)) {
+						if (entry.dueTick <= this.currentTick) {
+							expired.add(entry.item);
+						} else {
+							place(entry);
+						}
+					}
+				}
+			}
+			for (Entry<T> entry : drain(0)) {
+				expired.add(entry.item);
+			}
+		}
+		this.size -= expired.size();
+		return expired;
+	}
+
+	private boolean place(Entry<T> entry) {
+		long delta = entry.dueTick - this.currentTick;
+		for (int level = 0; level < this.spans.length - 1; level++) {
+			if (delta < this.spans[level + 1]) {
+				this.slots.get(slot(level, entry.dueTick)).add(entry);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private List<Entry<T>> drain(int level) {
+		List<Entry<T>> slot = this.slots.get(slot(level, this.currentTick));
+		if (slot.isEmpty()) {
+			return slot;
+		}
+		List<Entry<T>> entries = new ArrayList<>(slot);
+		slot.clear();
+		return entries;
+	}
+
+	private int slot(int level, long tick) {
+		return level * this.wheelSize + (int) ((tick / this.spans[level]) % this.wheelSize);
+	}
+
+	private static final class Entry<T> {
+
+		private final T item;
+		private final long dueTick;
+
+		private Entry(T item, long dueTick) {
+			this.item = item;
+			this.dueTick = dueTick;
+		}
+	}
+
+}
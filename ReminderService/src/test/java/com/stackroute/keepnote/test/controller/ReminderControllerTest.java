@@ -2,10 +2,13 @@ package com.stackroute.keepnote.test.controller;
 
 
 
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import org.junit.Before;
@@ -13,12 +16,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
@@ -30,7 +36,11 @@ import com.stackroute.keepnote.exception.ReminderNotCreatedException;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
 import com.stackroute.keepnote.model.Reminder;
 import com.stackroute.keepnote.service.ReminderService;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 
 @RunWith(SpringRunner.class)
@@ -45,6 +55,9 @@ public class ReminderControllerTest {
     @MockBean
     private ReminderService reminderService;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private ReminderController reminderController;
 
@@ -170,13 +183,102 @@ public class ReminderControllerTest {
     @Test
     public void getAllReminderById() throws Exception
     {
-        when(reminderService.getAllReminders()).thenReturn(reminderList);
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder").contentType(MediaType.APPLICATION_JSON)
-                .content(asJsonString(reminderList))).andExpect(MockMvcResultMatchers.status().isOk())
+        when(reminderService.exportAllReminders()).thenReturn(iterator(reminderList));
+        Claims admin = Jwts.claims().setSubject("Admin1");
+        admin.put("rol", "Admin");
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder").requestAttr("token", admin)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].reminderId").value(reminder.getReminderId()))
                 .andDo(MockMvcResultHandlers.print());
 
     }
 
+    @Test
+    public void getAllReminderForbidden() throws Exception
+    {
+        Claims user = Jwts.claims().setSubject("John123");
+        user.put("rol", "user");
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder").requestAttr("token", user))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder"))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        verify(reminderService, never()).exportAllReminders();
+    }
+
+    @Test
+    public void getRemindersByUserIdSuccess() throws Exception
+    {
+        when(reminderService.getReminderPageByUserId("John123", null, null, 20)).thenReturn(iterator(reminderList));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder/user/John123")
+                .requestAttr("token", Jwts.claims().setSubject("John123")))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].reminderName").value("Email"))
+                .andDo(MockMvcResultHandlers.print());
+    }
+
+    @Test
+    public void getRemindersByUserIdNextPage() throws Exception
+    {
+        when(reminderService.getReminderPageByUserId("John123", new Date(1000), "r1", 100))
+                .thenReturn(iterator(new ArrayList<>()));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder/user/John123")
+                .requestAttr("token", Jwts.claims().setSubject("John123"))
+                .param("after", "1000").param("afterId", "r1").param("limit", "500"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string("[]"));
+    }
+
+    @Test
+    public void getRemindersByUserIdOfAdmin() throws Exception
+    {
+        when(reminderService.getReminderPageByUserId("John123", null, null, 20)).thenReturn(iterator(reminderList));
+        Claims admin = Jwts.claims().setSubject("Admin1");
+        admin.put("rol", "Admin");
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder/user/John123")
+                .requestAttr("token", admin))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    public void getRemindersByUserIdOfOtherUser() throws Exception
+    {
+        Claims other = Jwts.claims().setSubject("Alex456");
+        other.put("rol", "user");
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder/user/John123").requestAttr("token", other))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/reminder/user/John123"))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+        verify(reminderService, never()).getReminderPageByUserId(any(), any(), any(), anyInt());
+    }
+
+    private static CloseableIterator<Reminder> iterator(List<Reminder> reminders) {
+        Iterator<Reminder> iterator = reminders.iterator();
+        return new CloseableIterator<Reminder>() {
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public Reminder next() {
+                return iterator.next();
+            }
+
+            public void close() {
+            }
+        };
+    }
 
     private static String asJsonString(final Object obj) {
         try {
@@ -1,6 +1,7 @@
 package com.stackroute.keepnote.test.repository;
 
 import com.stackroute.keepnote.model.Reminder;
+import com.stackroute.keepnote.repository.ReminderCreationDateBackfill;
 import com.stackroute.keepnote.repository.ReminderRepository;
 import org.junit.After;
 import org.junit.Assert;
@@ -9,8 +10,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -22,6 +26,8 @@ public class ReminderRepositoryTest {
 
     @Autowired
     private ReminderRepository reminderRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
     private Reminder reminder;
 
     @Before
@@ -96,4 +102,40 @@ public class ReminderRepositoryTest {
         Assert.assertEquals(2, allReminders.size());
 
     }
+
+    @Test
+    public void pagesReachRemindersWithoutCreationDate() {
+        for (int i = 1; i <= 3; i++) {
+            Reminder legacy = new Reminder();
+            legacy.setReminderId("legacy" + i);
+            legacy.setReminderName("Legacy reminder");
+            legacy.setReminderCreatedBy("Jhon123");
+            reminderRepository.insert(legacy);
+        }
+        reminderRepository.insert(reminder);
+
+        Assert.assertEquals(3, new ReminderCreationDateBackfill(mongoTemplate).backfill());
+        Assert.assertEquals(0, new ReminderCreationDateBackfill(mongoTemplate).backfill());
+
+        List<String> reminderIds = new ArrayList<>();
+        Date afterDate = null;
+        String afterId = null;
+        while (true) {
+            List<Reminder> page = new ArrayList<>();
+            try (CloseableIterator<Reminder> reminders = reminderRepository.streamReminderSummaries("Jhon123",
+                    afterDate, afterId, 2)) {
+                reminders.forEachRemaining(page::add);
+            }
+            if (page.isEmpty()) {
+                break;
+            }
+            Reminder last = page.get(page.size() - 1);
+            page.forEach(paged -> reminderIds.add(paged.getReminderId()));
+            afterDate = last.getReminderCreationDate();
+            afterId = last.getReminderId();
+        }
+        Assert.assertEquals(4, reminderIds.size());
+        Assert.assertEquals("legacy1", reminderIds.get(0));
+        Assert.assertEquals(reminder.getReminderId(), reminderIds.get(3));
+    }
 }
@@ -0,0 +1,266 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.mail.internet.MimeMessage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.icegreen.greenmail.junit.GreenMailRule;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.stackroute.keepnote.model.Reminder;
+import com.stackroute.keepnote.service.MailReminderSink;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MailReminderSinkTest {
+
+    private static final long NOW = 1_000_000;
+
+    @Rule
+    public final GreenMailRule greenMail = new GreenMailRule(ServerSetupTest.SMTP);
+
+    private MeterRegistry meterRegistry;
+    private JavaMailSenderImpl mailSender;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+    }
+
+    @Test
+    public void remindersOfAnOwnerAreMailedTogether() throws Exception {
+        MailReminderSink sink = sink(mailSender, 100, 50, 3);
+        sink.fire(reminder("r1", "Jhon123", "Meeting"));
+        sink.fire(reminder("r2", "Mary456", "Call"));
+        sink.fire(reminder("r3", "Jhon123", "Lunch"));
+        assertEquals(3, sink.getQueued());
+
+        sink.flush(NOW);
+
+        MimeMessage[] messages = greenMail.getReceivedMessages();
+        assertEquals(2, messages.length);
+        assertEquals("Jhon123@localhost", messages[0].getAllRecipients()[0].toString());
+        assertEquals("2 reminders", messages[0].getSubject());
+        String text = GreenMailUtil.getBody(messages[0]);
+        assertTrue(text.contains("Meeting") && text.contains("Lunch"));
+        assertEquals("Reminder: Call", messages[1].getSubject());
+        assertEquals(0, sink.getQueued());
+        assertEquals(2, count("sent"), 0);
+        assertEquals(1, meterRegistry.get(MailReminderSink.MAILS + ".rounds").timer().count());
+    }
+
+    @Test
+    public void mailsAreSentAtTheRate() {
+        MailReminderSink sink = sink(mailSender, 100, 2, 3);
+        for (int i = 0; i < 5; i++) {
+            sink.fire(reminder("r" + i, "user" + i, "Meeting"));
+        }
+
+        sink.flush(NOW);
+        assertEquals(2, greenMail.getReceivedMessages().length);
+        sink.flush(NOW + 250);
+        assertEquals(2, greenMail.getReceivedMessages().length);
+        sink.flush(NOW + 1000);
+        assertEquals(4, greenMail.getReceivedMessages().length);
+        assertEquals(1, sink.getQueued());
+    }
+
+    @Test
+    public void reminderIsDroppedWhenTheQueueIsFull() {
+        MailReminderSink sink = sink(mailSender, 2, 50, 3);
+        sink.fire(reminder("r1", "Jhon123", "Meeting"));
+        sink.fire(reminder("r2", "Jhon123", "Lunch"));
+        sink.fire(reminder("r3", "Mary456", "Call"));
+
+        assertEquals(2, sink.getQueued());
+        assertEquals(1, count("dropped"), 0);
+    }
+
+    @Test
+    public void failedMessagesAreSentAgain() {
+        FailingMailSender failing = new FailingMailSender(1, "Mary456@localhost");
+        MailReminderSink sink = sink(failing, 100, 50, 3);
+        sink.fire(reminder("r1", "Jhon123", "Meeting"));
+        sink.fire(reminder("r2", "Mary456", "Call"));
+
+        sink.flush(NOW);
+        assertEquals(1, count("sent"), 0);
+        assertEquals(1, count("retried"), 0);
+        assertEquals(1, sink.getQueued());
+
+        sink.flush(NOW + 40);
+        assertEquals(1, failing.rounds.size());
+
+        sink.flush(NOW + 100);
+        assertEquals(2, failing.rounds.size());
+        assertEquals(Arrays.asList("Mary456@localhost"), failing.rounds.get(1));
+        assertEquals(2, count("sent"), 0);
+        assertEquals(0, sink.getQueued());
+    }
+
+    @Test
+    public void messageIsGivenUpAfterMaxAttempts() {
+        FailingMailSender failing = new FailingMailSender(Integer.MAX_VALUE, "Jhon123@localhost");
+        MailReminderSink sink = sink(failing, 100, 50, 3);
+        sink.fire(reminder("r1", "Jhon123", "Meeting"));
+
+        for (int i = 0; i < 10; i++) {
+            sink.flush(NOW + i * 1000);
+        }
+
+        assertEquals(3, failing.rounds.size());
+        assertEquals(2, count("retried"), 0);
+        assertEquals(1, count("failed"), 0);
+        assertEquals(0, sink.getQueued());
+    }
+
+    @Test
+    public void messagesAreSentWhenOnlyClosingTheConnectionFails() {
+        // JavaMailSenderImpl lists no failed messages when the messages were sent and the transport could not be closed
+        FailingMailSender closing = new FailingMailSender(1,
+                messages -> new MailSendException("Failed to close server connection after message sending",
+                        new IllegalStateException("closed")));
+        MailReminderSink sink = sink(closing, 100, 50, 3);
+        sink.fire(reminder("r1", "Jhon123", "Meeting"));
+        sink.fire(reminder("r2", "Mary456", "Call"));
+
+        for (int i = 0; i < 5; i++) {
+            sink.flush(NOW + i * 1000);
+        }
+
+        assertEquals(1, closing.rounds.size());
+        assertEquals(2, count("sent"), 0);
+        assertEquals(0, count("retried"), 0);
+        assertEquals(0, sink.getQueued());
+    }
+
+    @Test
+    public void allMessagesAreSentAgainWhenTheConnectionFails() {
+        // JavaMailSenderImpl lists all messages as failed when it cannot connect
+        FailingMailSender connecting = new FailingMailSender(1, messages -> {
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (SimpleMailMessage message : messages) {
+                failed.put(message, new IllegalStateException("refused"));
+            }
+            return new MailSendException("Mail server connection failed", new IllegalStateException("refused"),
+                    failed);
+        });
+        MailReminderSink sink = sink(connecting, 100, 50, 3);
+        sink.fire(reminder("r1", "Jhon123", "Meeting"));
+        sink.fire(reminder("r2", "Mary456", "Call"));
+
+        sink.flush(NOW);
+        assertEquals(2, count("retried"), 0);
+        assertEquals(2, sink.getQueued());
+
+        sink.flush(NOW + 1000);
+        assertEquals(2, connecting.rounds.size());
+        assertEquals(2, connecting.rounds.get(1).size());
+        assertEquals(2, count("sent"), 0);
+        assertEquals(0, sink.getQueued());
+    }
+
+    @Test
+    public void allMessagesAreSentAgainWhenTheAuthenticationFails() {
+        FailingMailSender authenticating = new FailingMailSender(1,
+                messages -> new MailAuthenticationException("rejected"));
+        MailReminderSink sink = sink(authenticating, 100, 50, 3);
+        sink.fire(reminder("r1", "Jhon123", "Meeting"));
+
+        sink.flush(NOW);
+        assertEquals(1, count("retried"), 0);
+
+        sink.flush(NOW + 1000);
+        assertEquals(1, count("sent"), 0);
+        assertEquals(0, sink.getQueued());
+    }
+
+    private MailReminderSink sink(MailSender sender, int queueCapacity, double rate, int maxAttempts) {
+        return new MailReminderSink(sender, meterRegistry, "keepnote@localhost", "%s@localhost", queueCapacity, 0,
+                1000, 50, rate, maxAttempts, 100, 1000);
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get(MailReminderSink.MAILS).tag("outcome", outcome).counter().count();
+    }
+
+    private static Reminder reminder(String id, String owner, String name) {
+        Reminder reminder = new Reminder();
+        reminder.setReminderId(id);
+        reminder.setReminderCreatedBy(owner);
+        reminder.setReminderName(name);
+        reminder.setReminderType("email");
+        reminder.setReminderDescription(name + " description");
+        reminder.setReminderDueDate(new Date(NOW));
+        return reminder;
+    }
+
+    /* Fails the messages to one address, or a whole round with the given exception, the first times they are sent. */
+    private static final class FailingMailSender implements MailSender {
+
+        private final List<List<String>> rounds = new ArrayList<>();
+        private final String address;
+        private final Function<SimpleMailMessage[], MailException> roundFailure;
+        private int failures;
+
+        private FailingMailSender(int failures, String address) {
+            this.failures = failures;
+            this.address = address;
+            this.roundFailure = null;
+        }
+
+        private FailingMailSender(int failures, Function<SimpleMailMessage[], MailException> roundFailure) {
+            this.failures = failures;
+            this.address = null;
+            this.roundFailure = roundFailure;
+        }
+
+        public void send(SimpleMailMessage message) throws MailException {
+            send(new SimpleMailMessage[] { message });
+        }
+
+        public void send(SimpleMailMessage... messages) throws MailException {
+            List<String> addresses = new ArrayList<>();
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (SimpleMailMessage message : messages) {
+                addresses.add(message.getTo()[0]);
+                if (failures > 0 && message.getTo()[0].equals(address)) {
+                    failed.put(message, new IllegalStateException("rejected"));
+                }
+            }
+            rounds.add(addresses);
+            if (roundFailure != null && failures > 0) {
+                failures--;
+                throw roundFailure.apply(messages);
+            }
+            if (!failed.isEmpty()) {
+                failures--;
+                throw new MailSendException(failed);
+            }
+        }
+    }
+
+}
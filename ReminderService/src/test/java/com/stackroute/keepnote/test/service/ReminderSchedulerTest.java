@@ -0,0 +1,117 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.stackroute.keepnote.model.Reminder;
+import com.stackroute.keepnote.service.ReminderLeases;
+import com.stackroute.keepnote.service.ReminderScheduler;
+import com.stackroute.keepnote.service.ReminderSink;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ReminderSchedulerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ReminderLeases leases;
+
+    @Mock
+    private ReminderSink sink;
+
+    private MeterRegistry meterRegistry;
+    private ReminderScheduler scheduler;
+    private Reminder reminder;
+    private long now;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        now = System.currentTimeMillis();
+        scheduler = new ReminderScheduler(mongoTemplate, leases, Collections.singletonList(sink), meterRegistry,
+                1000, 10, 600, 100);
+        reminder = new Reminder();
+        reminder.setReminderId("r1");
+        reminder.setReminderCreatedBy("Jhon123");
+        reminder.setReminderDueDate(new Date(now + 5000));
+        when(leases.renew(any(Long.class))).thenReturn(new TreeSet<>(Arrays.asList(0, 1)));
+        when(mongoTemplate.find(any(Query.class), eq(Reminder.class))).thenReturn(Collections.singletonList(reminder));
+    }
+
+    @Test
+    public void dueReminderIsClaimedAndFired() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Reminder.class))).thenReturn(reminder);
+
+        scheduler.load(now);
+        scheduler.load(now);
+        assertEquals(1, scheduler.getScheduled());
+
+        scheduler.tick(now + 4000);
+        verify(sink, never()).fire(any());
+
+        scheduler.tick(now + 6000);
+        verify(sink).fire(reminder);
+        assertEquals(0, scheduler.getScheduled());
+        assertEquals(1, meterRegistry.get(ReminderScheduler.FIRED).tag("outcome", "fired").counter().count(), 0);
+    }
+
+    @Test
+    public void reminderClaimedElsewhereIsSkipped() {
+        scheduler.load(now);
+
+        scheduler.tick(now + 6000);
+
+        verify(sink, never()).fire(any());
+        assertEquals(1, meterRegistry.get(ReminderScheduler.FIRED).tag("outcome", "skipped").counter().count(), 0);
+    }
+
+    @Test
+    public void nothingIsLoadedWithoutPartitions() {
+        when(leases.renew(any(Long.class))).thenReturn(new TreeSet<>());
+
+        scheduler.load(now);
+
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Reminder.class));
+        assertEquals(0, scheduler.getScheduled());
+    }
+
+    @Test
+    public void sinkErrorDoesNotStopOtherSinks() {
+        ReminderSink failing = reminder -> {
+            throw new IllegalStateException();
+        };
+        scheduler = new ReminderScheduler(mongoTemplate, leases, Arrays.asList(failing, sink), meterRegistry,
+                1000, 10, 600, 100);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Reminder.class))).thenReturn(reminder);
+
+        scheduler.load(now);
+        scheduler.tick(now + 6000);
+
+        verify(sink).fire(reminder);
+    }
+
+}
@@ -11,12 +11,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import org.springframework.data.util.CloseableIterator;
+
 import com.stackroute.keepnote.exception.ReminderNotCreatedException;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
 import com.stackroute.keepnote.model.Reminder;
 import com.stackroute.keepnote.repository.ReminderRepository;
+import com.stackroute.keepnote.service.ReminderLeases;
 import com.stackroute.keepnote.service.ReminderServiceImpl;
 
 import junit.framework.Assert;
@@ -91,6 +97,36 @@ public class ReminderServiceImplTest {
 
     }
 
+    @Test
+    public void updateReminderDueDateRearmsReminder() throws ReminderNotFoundException
+    {
+        reminder.setReminderDueDate(new Date(1000));
+        reminder.setReminderFiredDate(new Date(1000));
+        when(reminderRepository.findById(reminder.getReminderId())).thenReturn(options);
+        when(reminderRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Reminder update = new Reminder();
+        update.setReminderName("Call");
+        update.setReminderDescription("Call at 6:00Pm");
+        update.setReminderType("Call type");
+        update.setReminderDueDate(new Date(2000));
+        Reminder fetchedreminder = reminderService.updateReminder(update, reminder.getReminderId());
+
+        Assert.assertEquals("Call", fetchedreminder.getReminderName());
+        Assert.assertEquals("Call at 6:00Pm", fetchedreminder.getReminderDescription());
+        Assert.assertEquals(new Date(2000), fetchedreminder.getReminderDueDate());
+        Assert.assertNull(fetchedreminder.getReminderFiredDate());
+        Assert.assertEquals("John123", fetchedreminder.getReminderCreatedBy());
+        Assert.assertEquals(ReminderLeases.partitionOf("John123", 16), fetchedreminder.getReminderPartition());
+    }
+
+    @Test(expected = ReminderNotFoundException.class)
+    public void updateReminderFailure() throws ReminderNotFoundException
+    {
+        when(reminderRepository.findById(reminder.getReminderId())).thenReturn(Optional.empty());
+        reminderService.updateReminder(reminder, reminder.getReminderId());
+    }
+
     @Test
     public void getReminderByIdSuccess() throws ReminderNotFoundException
     {
@@ -110,6 +146,26 @@ public class ReminderServiceImplTest {
 
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getReminderPageByUserId()
+    {
+        CloseableIterator<Reminder> page = mock(CloseableIterator.class);
+        Date after = new Date();
+        when(reminderRepository.streamReminderSummaries("Jhon123", after, "r1", 20)).thenReturn(page);
+        Assert.assertSame(page, reminderService.getReminderPageByUserId("Jhon123", after, "r1", 20));
+        verify(reminderRepository, never()).findAll();
+    }
+
+    @Test
+    public void createReminderSetsCreationDate() throws ReminderNotCreatedException
+    {
+        reminder.setReminderCreationDate(null);
+        when(reminderRepository.save(any())).thenReturn(reminder);
+        reminderService.createReminder(reminder);
+        Assert.assertNotNull(reminder.getReminderCreationDate());
+    }
+
 
 
 
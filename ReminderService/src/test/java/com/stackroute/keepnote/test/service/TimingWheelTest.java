@@ -0,0 +1,76 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.stackroute.keepnote.service.TimingWheel;
+
+public class TimingWheelTest {
+
+    private static final long START = 1_000_000;
+
+    @Test
+    public void itemsExpireAtTheirTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 3, START);
+        wheel.add("b", START + 25);
+        wheel.add("a", START + 10);
+
+        assertEquals(Collections.emptyList(), wheel.advance(START + 9));
+        assertEquals(Arrays.asList("a"), wheel.advance(START + 19));
+        assertEquals(Collections.emptyList(), wheel.advance(START + 19));
+        assertEquals(Arrays.asList("b"), wheel.advance(START + 20));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void itemsOfHigherLevelsCascade() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 4, 3, START);
+        Random random = new Random(42);
+        List<Integer> dues = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int due = random.nextInt(63) + 1;
+            dues.add(due);
+            assertTrue(wheel.add(due, START + due));
+        }
+        assertEquals(500, wheel.size());
+
+        for (int tick = 1; tick <= 63; tick++) {
+            for (int due : wheel.advance(START + tick)) {
+                assertEquals(tick, due);
+                dues.remove(Integer.valueOf(due));
+            }
+        }
+        assertTrue(dues.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void overdueItemsExpireOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 2, START);
+        wheel.advance(START + 100);
+        wheel.add("late", START);
+
+        assertEquals(Arrays.asList("late"), wheel.advance(START + 110));
+    }
+
+    @Test
+    public void itemsBeyondTheRangeAreNotAdded() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 2, START);
+
+        assertEquals(150, wheel.getRangeMillis());
+        assertTrue(wheel.add("last", START + 150));
+        assertFalse(wheel.add("beyond", START + 160));
+        assertEquals(1, wheel.size());
+        assertEquals(Arrays.asList("last"), wheel.advance(START + 1000));
+    }
+
+}
@@ -1,13 +1,49 @@
 package com.stackroute.keepnote;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.stackroute.keepnote.repository.SigningKeyRepository;
+import com.stackroute.keepnote.security.JwtKeySet;
+import com.stackroute.keepnote.security.LoginRateLimiter;
+import com.stackroute.keepnote.security.TokenBucketSketch;
 
 
 @SpringBootApplication
+@EnableScheduling
 public class UserAuthenticationServiceApplication {
 
+    /*
+     * The key pairs the tokens are signed with, shared by all instances through
+     * the SigningKey table and rotated every keepnote.jwt.keys.rotation-interval
+     * seconds.
+     */
+    @Bean
+    public JwtKeySet jwtKeySet(SigningKeyRepository signingKeyRepository,
+            @Value("${keepnote.jwt.keys.rotation-interval:86400}") long rotationInterval,
+            @Value("${keepnote.jwt.keys.retention:864000}") long retention,
+            @Value("${keepnote.jwt.keys.refresh-interval:60}") long refreshInterval) {
+        return new JwtKeySet(signingKeyRepository, rotationInterval, retention, refreshInterval);
+    }
 
+    /*
+     * The login throttle, with keepnote.login.rate-limit.user.* for the logins of
+     * one userId and keepnote.login.rate-limit.client.* for the logins from one
+     * address. Each sketch takes width * depth * 16 bytes.
+     */
+    @Bean
+    public LoginRateLimiter loginRateLimiter(@Value("${keepnote.login.rate-limit.width:16384}") int width,
+            @Value("${keepnote.login.rate-limit.depth:4}") int depth,
+            @Value("${keepnote.login.rate-limit.user.capacity:10}") double userCapacity,
+            @Value("${keepnote.login.rate-limit.user.refill-per-second:0.1}") double userRefill,
+            @Value("${keepnote.login.rate-limit.client.capacity:50}") double clientCapacity,
+            @Value("${keepnote.login.rate-limit.client.refill-per-second:1}") double clientRefill) {
+        return new LoginRateLimiter(new TokenBucketSketch(width, depth, userCapacity, userRefill),
+                new TokenBucketSketch(width, depth, clientCapacity, clientRefill));
+    }
 
 
     public static void main(String[] args) {
@@ -1,22 +1,45 @@
 package com.stackroute.keepnote.controller;
 
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.stackroute.keepnote.exception.InvalidRefreshTokenException;
+import com.stackroute.keepnote.exception.PasswordHashingRejectedException;
 import com.stackroute.keepnote.exception.UserAlreadyExistsException;
 import com.stackroute.keepnote.exception.UserNotFoundException;
 import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.security.JwtKeySet;
+import com.stackroute.keepnote.security.LoginRateLimiter;
+import com.stackroute.keepnote.service.TokenService;
 import com.stackroute.keepnote.service.UserAuthenticationService;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 
 /*
  * As in this assignment, we are working on creating RESTful web service, hence annotate
@@ -29,6 +52,21 @@ import io.jsonwebtoken.SignatureAlgorithm;
 @RestController
 public class UserAuthenticationController {
 
+	/* The claim of the token which holds the role of the user. */
+	public static final String ROLE = "rol";
+
+	/*
+	 * The role of every registered user, whatever the request holds. Admins are
+	 * made by changing the userRole of the user in the database.
+	 */
+	public static final String USER_ROLE = "user";
+
+	/* The header the refresh token is returned and sent back in. */
+	public static final String REFRESH_TOKEN = "Refresh-Token";
+
+	private static final String BEARER = "Bearer ";
+	private static final SecureRandom RANDOM = new SecureRandom();
+
 	/*
 	 * Autowiring should be implemented for the UserAuthenticationService. (Use
 	 * Constructor-based autowiring) Please note that we should not create an
@@ -37,8 +75,27 @@ public class UserAuthenticationController {
 	@Autowired
 	private UserAuthenticationService authicationService;
 
-	public UserAuthenticationController(UserAuthenticationService authicationService) {
+	private JwtKeySet keySet;
+
+	private LoginRateLimiter rateLimiter;
+
+	private TokenService tokenService;
+
+	/* Seconds an access token is valid; it is renewed with the refresh token. */
+	@Value("${keepnote.jwt.access-token-validity:900}")
+	private long accessTokenValidity = 900;
+
+	/* Users registered by one bulk registration at most. */
+	@Value("${keepnote.registration.bulk-max-size:1000}")
+	private int bulkMaxSize = 1000;
+
+	@Autowired
+	public UserAuthenticationController(UserAuthenticationService authicationService, JwtKeySet keySet,
+			LoginRateLimiter rateLimiter, TokenService tokenService) {
 		this.authicationService = authicationService;
+		this.keySet = keySet;
+		this.rateLimiter = rateLimiter;
+		this.tokenService = tokenService;
 	}
 
 	/*
@@ -47,7 +104,10 @@ public class UserAuthenticationController {
 	 * database. This handler method should return any one of the status
 	 * messages basis on different situations: 1. 201(CREATED) - If the user
 	 * created successfully. 2. 409(CONFLICT) - If the userId conflicts with any
-	 * existing user
+	 * existing user 3. 400(BAD REQUEST) - If the user has no password
+	 * 
+	 * The password, which saveUser has replaced with its hash, is not sent back.
+	 * The user is registered with the role USER_ROLE.
 	 * 
 	 * This handler method should map to the URL "/api/v1/auth/register" using
 	 * HTTP POST method
@@ -56,33 +116,96 @@ public class UserAuthenticationController {
 	@PostMapping(value = "/api/v1/auth/register")
 	public ResponseEntity<User> registerUser(@RequestBody User user) {
 
+		if (!hasPassword(user)) {
+			return new ResponseEntity<User>(HttpStatus.BAD_REQUEST);
+		}
+		user.setUserRole(USER_ROLE);
 		try {
 			this.authicationService.saveUser(user);
 		} catch (UserAlreadyExistsException e) {
 			// TODO Auto-generated catch block
 			return new ResponseEntity<User>(HttpStatus.CONFLICT);
 			// e.printStackTrace();
+		} catch (PasswordHashingRejectedException e) {
+			return new ResponseEntity<User>(retryLater(), HttpStatus.SERVICE_UNAVAILABLE);
 		}
+		user.setUserPassword(null);
 		return new ResponseEntity<User>(user, HttpStatus.CREATED);
 	}
 
+	/*
+	 * Define a handler method which registers the users of a provisioning job, read
+	 * as a list from the request body. This handler method should return any one
+	 * of the status messages basis on different situations: 1. 201(CREATED) - with
+	 * the userIds which were registered and those which were skipped as they were
+	 * registered already ("registered" and "conflicts") 2. 409(CONFLICT) - If a
+	 * userId was registered by another request meanwhile; then none is registered
+	 * 3. 413(PAYLOAD TOO LARGE) - If there are more than
+	 * keepnote.registration.bulk-max-size users 4. 400(BAD REQUEST) - If a user
+	 * has no password; then none is registered
+	 * 
+	 * The users are registered with the role USER_ROLE.
+	 * 
+	 * This handler method should map to the URL "/api/v1/auth/register/bulk" using
+	 * HTTP POST method
+	 */
+	@PostMapping(value = "/api/v1/auth/register/bulk")
+	public ResponseEntity<Map<String, List<String>>> registerUsers(@RequestBody List<User> users) {
+		if (users.size() > this.bulkMaxSize) {
+			return new ResponseEntity<Map<String, List<String>>>(HttpStatus.PAYLOAD_TOO_LARGE);
+		}
+		for (User user : users) {
+			if (!hasPassword(user)) {
+				return new ResponseEntity<Map<String, List<String>>>(HttpStatus.BAD_REQUEST);
+			}
+			user.setUserRole(USER_ROLE);
+		}
+		List<String> conflicts;
+		try {
+			conflicts = this.authicationService.saveUsers(users);
+		} catch (UserAlreadyExistsException e) {
+			return new ResponseEntity<Map<String, List<String>>>(HttpStatus.CONFLICT);
+		} catch (PasswordHashingRejectedException e) {
+			return new ResponseEntity<Map<String, List<String>>>(retryLater(), HttpStatus.SERVICE_UNAVAILABLE);
+		}
+		Set<String> skipped = new HashSet<>(conflicts);
+		List<String> registered = new ArrayList<>();
+		for (User user : users) {
+			if (!skipped.contains(user.getUserId())) {
+				registered.add(user.getUserId());
+			}
+		}
+		Map<String, List<String>> result = new LinkedHashMap<>();
+		result.put("registered", registered);
+		result.put("conflicts", conflicts);
+		return new ResponseEntity<Map<String, List<String>>>(result, HttpStatus.CREATED);
+	}
+
 	/*
 	 * Define a handler method which will authenticate a user by reading the
 	 * Serialized user object from request body containing the username and
 	 * password. The username and password should be validated before proceeding
-	 * ahead with JWT token generation. The user credentials will be validated
+	 * ahead with JWT token generation. Along with the access token, a refresh token
+	 * is returned in the Refresh-Token header. The user credentials will be validated
 	 * against the database entries. The error should be return if validation is
 	 * not successful. If credentials are validated successfully, then JWT token
 	 * will be generated. The token should be returned back to the caller along
 	 * with the API response. This handler method should return any one of the
 	 * status messages basis on different situations: 1. 200(OK) - If login is
-	 * successful 2. 401(UNAUTHORIZED) - If login is not successful
+	 * successful 2. 401(UNAUTHORIZED) - If login is not successful 3. 429(TOO
+	 * MANY REQUESTS) - If the userId or the client tried to log in too often
+	 * (see LoginRateLimiter), before the credentials are checked
 	 * 
 	 * This handler method should map to the URL "/api/v1/auth/login" using HTTP
 	 * POST method
 	 */
 	@PostMapping("/api/v1/auth/login")
-	public ResponseEntity<String> getUser(@RequestBody User user) {
+	public ResponseEntity<String> getUser(@RequestBody User user, HttpServletRequest request) {
+		if (!this.rateLimiter.tryAcquire(user.getUserId(), request.getRemoteAddr())) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(this.rateLimiter.getRetryAfterSeconds()));
+			return new ResponseEntity<String>(headers, HttpStatus.TOO_MANY_REQUESTS);
+		}
 		User returnuser = null;
 		try {
 
@@ -91,8 +214,8 @@ public class UserAuthenticationController {
 				
 				String token;
 				try {
-					token = this.getToken(user.getUserId(), user.getUserPassword());
-					return new ResponseEntity<String>(token, HttpStatus.OK);
+					token = this.getToken(returnuser);
+					return new ResponseEntity<String>(token, refreshTokenHeader(returnuser), HttpStatus.OK);
 				} catch (Exception e) {
 					// TODO Auto-generated catch block
 					e.printStackTrace();
@@ -106,20 +229,139 @@ public class UserAuthenticationController {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 			return new ResponseEntity<String>(HttpStatus.UNAUTHORIZED);
+		} catch (PasswordHashingRejectedException e) {
+			return new ResponseEntity<String>(retryLater(), HttpStatus.SERVICE_UNAVAILABLE);
 		}
 
 	}
 
-	// Generate JWT token
-	public String getToken(String username, String password) throws Exception {
-		String SECRET = "SecretKeyToGenJWTs";
-		long EXPIRATION_TIME = 864_000_000; // 10 days
-		Claims claims = Jwts.claims().setSubject(username);
-		claims.put("UserId", username + "");
-		claims.put("password", password);
+	/*
+	 * Define a handler method which exchanges the refresh token of the
+	 * Refresh-Token header for a new access token, returned in the body, and a new
+	 * refresh token, returned in the Refresh-Token header. A refresh token can only
+	 * be used once. This handler method should return any one of the status
+	 * messages basis on different situations: 1. 200(OK) - If the refresh token is
+	 * valid 2. 401(UNAUTHORIZED) - If it is unknown, used or expired
+	 * 
+	 * This handler method should map to the URL "/api/v1/auth/refresh" using HTTP
+	 * POST method
+	 */
+	@PostMapping("/api/v1/auth/refresh")
+	public ResponseEntity<String> refreshToken(
+			@RequestHeader(value = REFRESH_TOKEN, required = false) String refreshToken) {
+		try {
+			User user = this.tokenService.redeemRefreshToken(refreshToken);
+			return new ResponseEntity<String>(this.getToken(user), refreshTokenHeader(user), HttpStatus.OK);
+		} catch (InvalidRefreshTokenException e) {
+			return new ResponseEntity<String>(HttpStatus.UNAUTHORIZED);
+		}
+	}
+
+	/*
+	 * Define a handler method which revokes the refresh token of the Refresh-Token
+	 * header and the access token of the Authorization header, so neither can be
+	 * used again. The services reject the access token once they have loaded the
+	 * revocations again. This handler method should return 204(NO CONTENT).
+	 * 
+	 * This handler method should map to the URL "/api/v1/auth/logout" using HTTP
+	 * POST method
+	 */
+	@PostMapping("/api/v1/auth/logout")
+	public ResponseEntity<Void> logout(@RequestHeader(value = REFRESH_TOKEN, required = false) String refreshToken,
+			@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+		Claims accessToken = accessTokenClaims(authorization);
+		this.tokenService.revoke(refreshToken, accessToken == null ? null : accessToken.getId(),
+				accessToken == null ? null : accessToken.getExpiration());
+		return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+	}
+
+	/*
+	 * Define a handler method which returns the ids of the revoked access tokens
+	 * which have not expired yet, as a Bloom filter. The JwtFilter of every service
+	 * loads it regularly and rejects the tokens in it.
+	 * 
+	 * This handler method should map to the URL "/api/v1/auth/revocations" using
+	 * HTTP GET method
+	 */
+	@GetMapping("/api/v1/auth/revocations")
+	public ResponseEntity<Map<String, Object>> getRevocations() {
+		return new ResponseEntity<Map<String, Object>>(this.tokenService.getRevocations(), HttpStatus.OK);
+	}
+
+	/*
+	 * Define a handler method which returns the public keys the tokens are
+	 * verified with, as a JSON Web Key Set. The services load it again when a token
+	 * is signed with a key they do not know yet, e.g. after a key rotation.
+	 * 
+	 * This handler method should map to the URL "/api/v1/auth/jwks" using HTTP GET
+	 * method
+	 */
+	@GetMapping("/api/v1/auth/jwks")
+	public ResponseEntity<Map<String, Object>> getKeySet() {
+		return new ResponseEntity<Map<String, Object>>(this.keySet.jwks(), HttpStatus.OK);
+	}
+
+	/*
+	 * The passwords are hashed on a few threads of their own (see PasswordHasher).
+	 * When they are all busy, logins and registrations are answered with 503 and
+	 * the client is asked to retry a second later.
+	 */
+	private static HttpHeaders retryLater() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, "1");
+		return headers;
+	}
+
+	/* A user is only registered with a password, an empty one cannot be hashed. */
+	private static boolean hasPassword(User user) {
+		return user.getUserPassword() != null && !user.getUserPassword().isEmpty();
+	}
+
+	private HttpHeaders refreshTokenHeader(User user) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(REFRESH_TOKEN, this.tokenService.issueRefreshToken(user.getUserId()));
+		return headers;
+	}
+
+	/* The claims of a valid access token signed by this service, or null. */
+	private Claims accessTokenClaims(String authorization) {
+		if (authorization == null || !authorization.startsWith(BEARER)) {
+			return null;
+		}
+		try {
+			return Jwts.parser().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+				@Override
+				public Key resolveSigningKey(JwsHeader header, Claims claims) {
+					return keySet.publicKey(header.getKeyId());
+				}
+			}).parseClaimsJws(authorization.substring(BEARER.length())).getBody();
+		} catch (JwtException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Generate JWT token, signed by the current key of the key set. The token is
+	 * sent with every request and parsed by the JwtFilter of every service, so it
+	 * only holds what they need: the userId (sub), the role of the user (rol), the
+	 * id of the token (jti), by which it can be revoked, and the times it was
+	 * issued (iat) and expires (exp). The role is left out when the user has none.
+	 * The token is valid for keepnote.jwt.access-token-validity seconds.
+	 */
+	public String getToken(User user) {
+		long now = System.currentTimeMillis();
+		byte[] id = new byte[12];
+		RANDOM.nextBytes(id);
+		Claims claims = Jwts.claims().setSubject(user.getUserId()).setIssuedAt(new Date(now))
+				.setExpiration(new Date(now + TimeUnit.SECONDS.toMillis(this.accessTokenValidity)))
+				.setId(Base64.getUrlEncoder().withoutPadding().encodeToString(id));
+		if (user.getUserRole() != null) {
+			claims.put(ROLE, user.getUserRole());
+		}
 
-		return Jwts.builder().setClaims(claims).setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-				.signWith(SignatureAlgorithm.HS512, SECRET).compact();
+		JwtKeySet.SigningKey key = this.keySet.current();
+		return Jwts.builder().setHeaderParam(JwsHeader.KEY_ID, key.getId()).setClaims(claims)
+				.signWith(JwtKeySet.ALGORITHM, key.getPrivateKey()).compact();
 
 	}
 
@@ -0,0 +1,8 @@
+package com.stackroute.keepnote.exception;
+
+public class InvalidRefreshTokenException extends Exception {
+
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
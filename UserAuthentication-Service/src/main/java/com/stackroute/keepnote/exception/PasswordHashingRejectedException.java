@@ -0,0 +1,12 @@
+package com.stackroute.keepnote.exception;
+
+/*
+ * Thrown when a password cannot be hashed or verified in time because the
+ * password hashing threads are busy, see PasswordHasher.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/*
+ * The class "RefreshToken" is the data model of the RefreshToken table, the
+ * refresh tokens which were issued and not yet used. Only the SHA-256 hash of a
+ * token is stored, so the table cannot be used to log in.
+ */
+@Entity
+@Table(name = "RefreshToken", indexes = @Index(name = "RefreshToken_expiresAt", columnList = "expiresAt"))
+public class RefreshToken {
+
+	@Id
+	@Column(name = "tokenHash")
+	private String tokenHash;
+	@Column(name = "userId")
+	private String userId;
+	@Column(name = "expiresAt")
+	private Date expiresAt;
+
+	public RefreshToken() {
+	}
+
+	public RefreshToken(String tokenHash, String userId, Date expiresAt) {
+		this.tokenHash = tokenHash;
+		this.userId = userId;
+		this.expiresAt = expiresAt;
+	}
+
+	public String getTokenHash() {
+		return tokenHash;
+	}
+
+	public void setTokenHash(String tokenHash) {
+		this.tokenHash = tokenHash;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public Date getExpiresAt() {
+		return expiresAt;
+	}
+
+	public void setExpiresAt(Date expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+
+}
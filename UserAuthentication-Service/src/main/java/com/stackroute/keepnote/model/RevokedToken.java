@@ -0,0 +1,50 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/*
+ * The class "RevokedToken" is the data model of the RevokedToken table, the ids
+ * ("jti") of the access tokens which were revoked before they expired. A row is
+ * kept until its token expires.
+ */
+@Entity
+@Table(name = "RevokedToken", indexes = @Index(name = "RevokedToken_expiresAt", columnList = "expiresAt"))
+public class RevokedToken {
+
+	@Id
+	@Column(name = "tokenId")
+	private String tokenId;
+	@Column(name = "expiresAt")
+	private Date expiresAt;
+
+	public RevokedToken() {
+	}
+
+	public RevokedToken(String tokenId, Date expiresAt) {
+		this.tokenId = tokenId;
+		this.expiresAt = expiresAt;
+	}
+
+	public String getTokenId() {
+		return tokenId;
+	}
+
+	public void setTokenId(String tokenId) {
+		this.tokenId = tokenId;
+	}
+
+	public Date getExpiresAt() {
+		return expiresAt;
+	}
+
+	public void setExpiresAt(Date expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/*
+ * The class "SigningKeyPair" is the data model of the SigningKey table, the key
+ * pairs the tokens are signed with (see JwtKeySet). The keys are stored encoded
+ * in Base64, the private key as PKCS#8 and the public key as X.509. Whoever can
+ * read the table can issue tokens, so it must be as protected as the User table.
+ */
+@Entity
+@Table(name = "SigningKey")
+public class SigningKeyPair {
+
+	@Id
+	@Column(name = "keyId")
+	private String keyId;
+	@Column(name = "privateKey", length = 1024)
+	private String privateKey;
+	@Column(name = "publicKey", length = 1024)
+	private String publicKey;
+	@Column(name = "createdAt")
+	private Date createdAt;
+
+	public SigningKeyPair() {
+	}
+
+	public SigningKeyPair(String keyId, String privateKey, String publicKey, Date createdAt) {
+		this.keyId = keyId;
+		this.privateKey = privateKey;
+		this.publicKey = publicKey;
+		this.createdAt = createdAt;
+	}
+
+	public String getKeyId() {
+		return keyId;
+	}
+
+	public void setKeyId(String keyId) {
+		this.keyId = keyId;
+	}
+
+	public String getPrivateKey() {
+		return privateKey;
+	}
+
+	public void setPrivateKey(String privateKey) {
+		this.privateKey = privateKey;
+	}
+
+	public String getPublicKey() {
+		return publicKey;
+	}
+
+	public void setPublicKey(String publicKey) {
+		this.publicKey = publicKey;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+}
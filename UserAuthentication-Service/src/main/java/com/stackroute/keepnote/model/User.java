@@ -5,7 +5,14 @@ import java.util.Date;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /*
  * The class "User" will be acting as the data model for the User Table in the database. 
@@ -13,10 +20,14 @@ import javax.persistence.Table;
  * Hibernate will scan all package for any Java objects annotated with the @Entity annotation. 
  * If it finds any, then it will begin the process of looking through that particular 
  * Java object to recreate it as a table in your database.
+ *
+ * A User which was not loaded from the database is new (see Persistable), so
+ * saving it inserts it right away: there is no SELECT before, and a userId
+ * which is already registered fails on the primary key.
  */
 @Entity
 @Table(name = "User")
-public class User {
+public class User implements Persistable<String> {
 
     /*
 	 * This class should have five fields (userId,firstName,lastName,
@@ -40,6 +51,8 @@ public class User {
 	private String userRole;
 	@Column(name = "userAddedDate")
 	private Date userAddedDate;
+	@Transient
+	private boolean isNew = true;
 	
     public String getUserId() {
     	return this.userId;
@@ -96,7 +109,22 @@ public class User {
         
     }
 
-    
+    @Override
+    @JsonIgnore
+    public String getId() {
+        return this.userId;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return this.isNew;
+    }
 
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
 
 }
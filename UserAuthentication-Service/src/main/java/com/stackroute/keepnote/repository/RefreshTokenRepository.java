@@ -0,0 +1,34 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.Date;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stackroute.keepnote.model.RefreshToken;
+
+/*
+* This class is implementing the JpaRepository interface for RefreshToken, by the
+* hash of the token.
+* */
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+	/*
+	* This method deletes the refresh tokens which expired before the given time.
+	*/
+	@Transactional
+	long deleteByExpiresAtBefore(Date time);
+
+	/*
+	* This method deletes the refresh token of the given hash with one DELETE and
+	* returns the rows deleted, 0 when another request deleted it already.
+	*/
+	@Modifying
+	@Transactional
+	@Query("delete from RefreshToken t where t.tokenHash = ?1")
+	int deleteByTokenHash(String tokenHash);
+}
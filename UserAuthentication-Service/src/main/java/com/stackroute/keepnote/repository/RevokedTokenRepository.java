@@ -0,0 +1,28 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stackroute.keepnote.model.RevokedToken;
+
+/*
+* This class is implementing the JpaRepository interface for RevokedToken.
+* */
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+	/*
+	* This method returns the revoked tokens which have not expired at the given time.
+	*/
+	List<RevokedToken> findByExpiresAtAfter(Date time);
+
+	/*
+	* This method deletes the revoked tokens which expired before the given time.
+	*/
+	@Transactional
+	long deleteByExpiresAtBefore(Date time);
+}
@@ -0,0 +1,27 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stackroute.keepnote.model.SigningKeyPair;
+
+/*
+* This class is implementing the JpaRepository interface for SigningKeyPair.
+* */
+@Repository
+public interface SigningKeyRepository extends JpaRepository<SigningKeyPair, String> {
+
+	/*
+	* This method returns all key pairs, the most recently created first.
+	*/
+	List<SigningKeyPair> findAllByOrderByCreatedAtDesc();
+
+	/*
+	* This method deletes the key pair with the given id, if it still exists.
+	*/
+	@Transactional
+	long deleteByKeyId(String keyId);
+}
@@ -1,7 +1,10 @@
 package com.stackroute.keepnote.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.stackroute.keepnote.model.User;
 
@@ -22,8 +25,20 @@ public interface UserAutheticationRepository extends JpaRepository<User, String>
 	* */
 	
 	/*
-	* This method will validate a user from database by username and password. 
-    */
-    
-    User findByUserIdAndUserPassword(String userId, String userPassword);
+	* The password is not queried: only its hash is stored, which PasswordHasher
+	* checks (see UserAuthenticationServiceImpl).
+	*/
+
+	/*
+	* This method inserts new users in one transaction. Hibernate sends the inserts
+	* in JDBC batches of hibernate.jdbc.batch_size when they are flushed. When a
+	* userId is already registered, the flush fails with
+	* DataIntegrityViolationException and none of the users is inserted.
+	*/
+	@Transactional
+	default List<User> insertAll(List<User> users) {
+		List<User> inserted = saveAll(users);
+		flush();
+		return inserted;
+	}
 }
@@ -0,0 +1,272 @@
+package com.stackroute.keepnote.security;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.stackroute.keepnote.model.SigningKeyPair;
+import com.stackroute.keepnote.repository.SigningKeyRepository;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/*
+ * This class holds the key pairs the tokens are signed with. Tokens are signed
+ * with ES256 by the current pair, and carry its key id in their "kid" header, so
+ * the services verify them with the public key alone and no secret is shared.
+ *
+ * The pairs are stored in the SigningKey table, so they survive a restart and
+ * all instances of the service sign with and publish the same pairs. Every
+ * keepnote.jwt.keys.refresh-interval seconds an instance loads them again, and
+ * generates a new pair when the newest one is older than
+ * keepnote.jwt.keys.rotation-interval seconds. Instances rotating at the same
+ * time just add a pair each. A new pair is only used for signing once it is
+ * older than the refresh interval, when all instances publish it.
+ *
+ * A replaced pair is no longer used for signing, but its public key stays in the
+ * key set for keepnote.jwt.keys.retention seconds, which has to be at least the
+ * validity of the tokens, so the tokens signed with it can still be verified.
+ * Then it is deleted.
+ *
+ * The key set is published as a JSON Web Key Set (see jwks()), and the services
+ * load it again when they see a key id they do not know yet, so a rotation needs
+ * no redeploy.
+ */
+public class JwtKeySet {
+
+	public static final SignatureAlgorithm ALGORITHM = SignatureAlgorithm.ES256;
+
+	private static final Logger logger = LoggerFactory.getLogger(JwtKeySet.class);
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	/* null when the pairs are only kept in memory */
+	private final SigningKeyRepository repository;
+	private final long rotationMillis;
+	private final long retentionMillis;
+	private final long publishDelayMillis;
+	/* The published pairs, the most recently created first. */
+	private volatile List<SigningKey> keys = Collections.emptyList();
+	private volatile Map<String, Object> jwks;
+
+	/*
+	 * The key set is only kept in memory and a new pair is used at once. It is
+	 * rotated by calling rotate(), e.g. in the tests.
+	 */
+	public JwtKeySet(long retentionSeconds) {
+		this.repository = null;
+		this.rotationMillis = 0;
+		this.retentionMillis = TimeUnit.SECONDS.toMillis(retentionSeconds);
+		this.publishDelayMillis = 0;
+		rotate();
+	}
+
+	public JwtKeySet(SigningKeyRepository repository, long rotationSeconds, long retentionSeconds,
+			long refreshSeconds) {
+		this.repository = repository;
+		this.rotationMillis = TimeUnit.SECONDS.toMillis(rotationSeconds);
+		this.retentionMillis = TimeUnit.SECONDS.toMillis(retentionSeconds);
+		this.publishDelayMillis = TimeUnit.SECONDS.toMillis(refreshSeconds);
+		refresh();
+	}
+
+	/*
+	 * This method returns the pair new tokens are signed with, the newest one which
+	 * all instances publish already, or the oldest one if there is none yet.
+	 */
+	public SigningKey current() {
+		List<SigningKey> keys = this.keys;
+		long published = System.currentTimeMillis() - this.publishDelayMillis;
+		for (SigningKey key : keys) {
+			if (key.created <= published) {
+				return key;
+			}
+		}
+		return keys.get(keys.size() - 1);
+	}
+
+	/*
+	 * This method returns the public keys of the current and the retained pairs as a
+	 * JSON Web Key Set.
+	 */
+	public Map<String, Object> jwks() {
+		return this.jwks;
+	}
+
+	/* This method returns the public key of the current or a retained pair, or null. */
+	public PublicKey publicKey(String keyId) {
+		for (SigningKey key : this.keys) {
+			if (key.id.equals(keyId)) {
+				return key.publicKey;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * This method loads the stored pairs again, so the pairs generated by the
+	 * other instances are published, and rotates them when the newest one is older
+	 * than the rotation interval.
+	 */
+	@Scheduled(initialDelayString = "#{${keepnote.jwt.keys.refresh-interval:60} * 1000}",
+			fixedDelayString = "#{${keepnote.jwt.keys.refresh-interval:60} * 1000}")
+	public synchronized void refresh() {
+		if (this.repository == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<SigningKey> keys = load();
+		if (keys.isEmpty() || now - keys.get(0).created >= this.rotationMillis) {
+			rotate();
+		} else {
+			publish(keys, now);
+		}
+	}
+
+	/*
+	 * This method adds a new pair, which replaces the current one, and drops the
+	 * pairs which were replaced more than retention seconds ago.
+	 */
+	public synchronized void rotate() {
+		long now = System.currentTimeMillis();
+		SigningKey generated = generate(now);
+		List<SigningKey> keys = new ArrayList<>();
+		if (this.repository != null) {
+			this.repository.save(generated.toStored());
+			keys.addAll(load());
+		} else {
+			keys.add(generated);
+			keys.addAll(this.keys);
+		}
+		publish(keys, now);
+		logger.info("signing key {} generated, {} keys published", generated.id, this.keys.size());
+	}
+
+	private List<SigningKey> load() {
+		List<SigningKey> keys = new ArrayList<>();
+		for (SigningKeyPair stored : this.repository.findAllByOrderByCreatedAtDesc()) {
+			keys.add(SigningKey.fromStored(stored));
+		}
+		return keys;
+	}
+
+	/* The keys are ordered by creation, the most recent first. */
+	private void publish(List<SigningKey> keys, long now) {
+		List<SigningKey> retained = new ArrayList<>();
+		List<Map<String, Object>> jwks = new ArrayList<>();
+		// a pair was in use until the next one was generated and published
+		long replaced = now;
+		for (SigningKey key : keys) {
+			if (retained.isEmpty() || now - replaced < this.retentionMillis + this.publishDelayMillis) {
+				retained.add(key);
+				jwks.add(key.jwk);
+			} else if (this.repository != null) {
+				this.repository.deleteByKeyId(key.id);
+			}
+			replaced = key.created;
+		}
+		this.keys = Collections.unmodifiableList(retained);
+		this.jwks = Collections.singletonMap("keys", Collections.unmodifiableList(jwks));
+	}
+
+	private static SigningKey generate(long created) {
+		try {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+			generator.initialize(new ECGenParameterSpec("secp256r1"), RANDOM);
+			byte[] id = new byte[12];
+			RANDOM.nextBytes(id);
+			return new SigningKey(Base64.getUrlEncoder().withoutPadding().encodeToString(id),
+					generator.generateKeyPair(), created);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("No EC key pair can be generated", e);
+		}
+	}
+
+	public static final class SigningKey {
+
+		private final String id;
+		private final PrivateKey privateKey;
+		private final PublicKey publicKey;
+		private final Map<String, Object> jwk;
+		private final long created;
+
+		private SigningKey(String id, KeyPair pair, long created) {
+			this.id = id;
+			this.privateKey = pair.getPrivate();
+			this.publicKey = pair.getPublic();
+			this.created = created;
+			ECPublicKey publicKey = (ECPublicKey) pair.getPublic();
+			Map<String, Object> jwk = new LinkedHashMap<>();
+			jwk.put("kty", "EC");
+			jwk.put("crv", "P-256");
+			jwk.put("use", "sig");
+			jwk.put("alg", ALGORITHM.getValue());
+			jwk.put("kid", id);
+			jwk.put("x", coordinate(publicKey.getW().getAffineX()));
+			jwk.put("y", coordinate(publicKey.getW().getAffineY()));
+			this.jwk = Collections.unmodifiableMap(jwk);
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public PrivateKey getPrivateKey() {
+			return privateKey;
+		}
+
+		public PublicKey getPublicKey() {
+			return publicKey;
+		}
+
+		private SigningKeyPair toStored() {
+			Base64.Encoder encoder = Base64.getEncoder();
+			return new SigningKeyPair(this.id, encoder.encodeToString(this.privateKey.getEncoded()),
+					encoder.encodeToString(this.publicKey.getEncoded()), new Date(this.created));
+		}
+
+		private static SigningKey fromStored(SigningKeyPair stored) {
+			try {
+				KeyFactory factory = KeyFactory.getInstance("EC");
+				Base64.Decoder decoder = Base64.getDecoder();
+				PublicKey publicKey = factory
+						.generatePublic(new X509EncodedKeySpec(decoder.decode(stored.getPublicKey())));
+				PrivateKey privateKey = factory
+						.generatePrivate(new PKCS8EncodedKeySpec(decoder.decode(stored.getPrivateKey())));
+				return new SigningKey(stored.getKeyId(), new KeyPair(publicKey, privateKey),
+						stored.getCreatedAt().getTime());
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException("The stored key pair " + stored.getKeyId() + " cannot be read", e);
+			}
+		}
+
+		/* A coordinate of P-256 is encoded as exactly 32 bytes, unsigned. */
+		private static String coordinate(BigInteger value) {
+			byte[] bytes = value.toByteArray();
+			byte[] coordinate = new byte[32];
+			int length = Math.min(bytes.length, 32);
+			System.arraycopy(bytes, bytes.length - length, coordinate, 32 - length, length);
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(coordinate);
+		}
+	}
+
+}
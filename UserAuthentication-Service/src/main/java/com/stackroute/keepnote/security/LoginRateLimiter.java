@@ -0,0 +1,38 @@
+package com.stackroute.keepnote.security;
+
+/*
+ * This class throttles the logins before the password of the user is loaded and
+ * checked, so a burst of guesses is answered cheaply and does not slow down the
+ * logins of the other users.
+ *
+ * Every login takes a token for its userId and one for the address of the client,
+ * each from a TokenBucketSketch of fixed size. The bucket of a userId stops a
+ * brute-force attack on one account, from however many addresses it comes. The
+ * bucket of an address stops credential stuffing, which tries few passwords on
+ * many accounts. A login is allowed when both buckets had a token.
+ *
+ * The token of the address is taken first, and the token of the userId only when
+ * the address was allowed, so a throttled client cannot lock other clients out
+ * of an account by retrying it.
+ */
+public class LoginRateLimiter {
+
+	private final TokenBucketSketch users;
+	private final TokenBucketSketch clients;
+
+	public LoginRateLimiter(TokenBucketSketch users, TokenBucketSketch clients) {
+		this.users = users;
+		this.clients = clients;
+	}
+
+	public boolean tryAcquire(String userId, String clientAddress) {
+		return this.clients.tryAcquire(String.valueOf(clientAddress))
+				&& this.users.tryAcquire(String.valueOf(userId));
+	}
+
+	/* The seconds a client whose login was denied should wait before it tries again. */
+	public long getRetryAfterSeconds() {
+		return Math.max(this.users.getRetryAfterSeconds(), this.clients.getRetryAfterSeconds());
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.stackroute.keepnote.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import com.stackroute.keepnote.exception.PasswordHashingRejectedException;
+
+/*
+ * This class hashes the passwords of the users with bcrypt and verifies them.
+ *
+ * The cost of bcrypt is keepnote.password.bcrypt-cost, the log2 of its rounds:
+ * every step doubles the time of a hash (10 takes tens of milliseconds). A stored
+ * hash of another cost, or a password which is still stored in plain text, is
+ * reported by needsRehash(), so it can be replaced on the next login.
+ *
+ * Hashing is CPU-bound, so it does not run on the calling (Tomcat) thread but on
+ * keepnote.password.threads threads (the number of cores by default). At most
+ * keepnote.password.queue-size calls wait for a thread, and a caller waits at most
+ * keepnote.password.timeout milliseconds. Beyond that PasswordHashingRejectedException
+ * is thrown right away, so a storm of logins ties up only a few request threads
+ * and the other requests are still served.
+ */
+@Component
+public class PasswordHasher {
+
+	private static final Pattern BCRYPT = Pattern.compile("\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}");
+
+	private final int cost;
+	private final long timeoutMillis;
+	private final BCryptPasswordEncoder encoder;
+	private final ThreadPoolExecutor executor;
+	private final String unknownUserHash;
+
+	@Autowired
+	public PasswordHasher(@Value("${keepnote.password.bcrypt-cost:10}") int cost,
+			@Value("${keepnote.password.threads:0}") int threads,
+			@Value("${keepnote.password.queue-size:64}") int queueSize,
+			@Value("${keepnote.password.timeout:5000}") long timeoutMillis) {
+		this.cost = cost;
+		this.timeoutMillis = timeoutMillis;
+		this.encoder = new BCryptPasswordEncoder(cost);
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		AtomicInteger count = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), runnable -> {
+					Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		this.unknownUserHash = this.encoder.encode("unknown user");
+	}
+
+	public String hash(String password) {
+		return execute(() -> this.encoder.encode(password));
+	}
+
+	/*
+	 * This method hashes many passwords, e.g. of a bulk registration, on all the
+	 * hashing threads at once. No more are queued at a time than there are threads,
+	 * so the queue stays open for the logins.
+	 */
+	public List<String> hashAll(List<String> passwords) {
+		int window = this.executor.getMaximumPoolSize();
+		List<String> hashes = new ArrayList<>(passwords.size());
+		for (int start = 0; start < passwords.size(); start += window) {
+			List<Future<String>> futures = new ArrayList<>();
+			for (String password : passwords.subList(start, Math.min(start + window, passwords.size()))) {
+				futures.add(submit(() -> this.encoder.encode(password)));
+			}
+			for (Future<String> future : futures) {
+				hashes.add(await(future));
+			}
+		}
+		return hashes;
+	}
+
+	/*
+	 * This method checks password against the stored hash, or the stored plain text
+	 * password of a user who did not log in since the passwords are hashed. When
+	 * there is no user (stored is null), a hash is checked anyway, so an unknown
+	 * userId takes as long as a wrong password.
+	 */
+	public boolean matches(String password, String stored) {
+		if (password == null) {
+			return false;
+		}
+		if (stored == null) {
+			execute(() -> this.encoder.matches(password, this.unknownUserHash));
+			return false;
+		}
+		if (!isHash(stored)) {
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+					stored.getBytes(StandardCharsets.UTF_8));
+		}
+		return execute(() -> this.encoder.matches(password, stored));
+	}
+
+	/* A stored password needs a new hash when it is plain text or of another cost. */
+	public boolean needsRehash(String stored) {
+		if (!isHash(stored)) {
+			return true;
+		}
+		int costStart = stored.indexOf('$', 1) + 1;
+		return Integer.parseInt(stored.substring(costStart, costStart + 2)) != this.cost;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	private static boolean isHash(String stored) {
+		return stored != null && BCRYPT.matcher(stored).matches();
+	}
+
+	private <T> T execute(Callable<T> task) {
+		return await(submit(task));
+	}
+
+	private <T> Future<T> submit(Callable<T> task) {
+		try {
+			return this.executor.submit(task);
+		} catch (RejectedExecutionException e) {
+			throw new PasswordHashingRejectedException("All password hashing threads are busy");
+		}
+	}
+
+	private <T> T await(Future<T> future) {
+		try {
+			return future.get(this.timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new PasswordHashingRejectedException("The password was not hashed in time");
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new PasswordHashingRejectedException("Interrupted while the password was hashed");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+}
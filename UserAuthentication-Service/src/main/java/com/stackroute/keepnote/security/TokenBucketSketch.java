@@ -0,0 +1,149 @@
+package com.stackroute.keepnote.security;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * This class limits the rate of the calls per key with token buckets, in a fixed
+ * amount of memory however many keys are seen.
+ *
+ * Like a count-min sketch, it holds depth rows of width buckets, and a key uses
+ * one bucket per row, picked by a hash of the key. Each bucket holds capacity
+ * tokens and gets refillPerSecond tokens back every second. The tokens left for
+ * a key are those of its fullest bucket, as the other buckets were also drained
+ * by the keys colliding with it there, and a call is allowed when that bucket
+ * has a token. A denied call takes nothing. An allowed call is counted with a
+ * conservative update: every bucket of the key is drained only as far as the
+ * fullest one, so a bucket shared with other keys is not drained twice.
+ *
+ * Keys sharing a bucket share its tokens, so a collision can only make the limit
+ * stricter, and a key is only limited wrongly when it collides with drained keys
+ * in every row. The hash is seeded randomly per instance, so colliding keys
+ * cannot be chosen ahead.
+ *
+ * The buckets are guarded by a fixed set of locks, each for a stripe of buckets.
+ * A call holds the locks of the stripes of its buckets, taken in ascending
+ * order, so calls for different keys seldom wait for each other.
+ */
+public class TokenBucketSketch {
+
+	private static final int STRIPES = 256;
+
+	private final int width;
+	private final int depth;
+	private final double capacity;
+	private final double refillPerNano;
+	private final long seed;
+	/* Tokens taken from each bucket, 0 for a full bucket. */
+	private final double[] taken;
+	private final long[] refilledAt;
+	private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+	public TokenBucketSketch(int width, int depth, double capacity, double refillPerSecond) {
+		this(width, depth, capacity, refillPerSecond, new SecureRandom());
+	}
+
+	TokenBucketSketch(int width, int depth, double capacity, double refillPerSecond, Random random) {
+		if (width < 1 || depth < 1 || capacity < 1 || refillPerSecond <= 0) {
+			throw new IllegalArgumentException("width, depth and capacity have to be at least 1 and the refill positive");
+		}
+		this.width = width;
+		this.depth = depth;
+		this.capacity = capacity;
+		this.refillPerNano = refillPerSecond / 1_000_000_000d;
+		this.seed = random.nextLong();
+		this.taken = new double[width * depth];
+		this.refilledAt = new long[width * depth];
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			this.locks[stripe] = new ReentrantLock();
+		}
+	}
+
+	public boolean tryAcquire(String key) {
+		return tryAcquire(key, System.nanoTime());
+	}
+
+	/* Takes a token for key at nowNanos (a System.nanoTime() value). */
+	public boolean tryAcquire(String key, long nowNanos) {
+		int[] buckets = buckets(key);
+		int[] stripes = stripes(buckets);
+		for (int stripe : stripes) {
+			this.locks[stripe].lock();
+		}
+		try {
+			double taken = this.capacity;
+			for (int bucket : buckets) {
+				taken = Math.min(taken, refill(bucket, nowNanos));
+			}
+			if (taken + 1 > this.capacity) {
+				return false;
+			}
+			for (int bucket : buckets) {
+				this.taken[bucket] = Math.max(this.taken[bucket], taken + 1);
+			}
+			return true;
+		} finally {
+			for (int stripe : stripes) {
+				this.locks[stripe].unlock();
+			}
+		}
+	}
+
+	/* The bucket of key in each row. */
+	public int[] buckets(String key) {
+		long hash = hash(key);
+		int first = (int) hash;
+		int step = (int) (hash >>> 32) | 1;
+		int[] buckets = new int[this.depth];
+		for (int row = 0; row < this.depth; row++) {
+			buckets[row] = row * this.width + Math.floorMod(first + row * step, this.width);
+		}
+		return buckets;
+	}
+
+	/* The seconds until a key whose calls were denied gets a token again. */
+	public long getRetryAfterSeconds() {
+		return (long) Math.ceil(1 / (this.refillPerNano * 1_000_000_000d));
+	}
+
+	/* Gives the tokens back which were refilled since the last call and returns the tokens taken from bucket. */
+	private double refill(int bucket, long nowNanos) {
+		double taken = this.taken[bucket];
+		if (taken > 0) {
+			taken = Math.max(0, taken - (nowNanos - this.refilledAt[bucket]) * this.refillPerNano);
+		}
+		this.taken[bucket] = taken;
+		this.refilledAt[bucket] = nowNanos;
+		return taken;
+	}
+
+	/* The distinct stripes of the buckets in ascending order, the order their locks are taken in. */
+	private static int[] stripes(int[] buckets) {
+		int[] stripes = new int[buckets.length];
+		for (int row = 0; row < buckets.length; row++) {
+			stripes[row] = buckets[row] % STRIPES;
+		}
+		Arrays.sort(stripes);
+		int distinct = 0;
+		for (int row = 0; row < stripes.length; row++) {
+			if (row == 0 || stripes[row] != stripes[row - 1]) {
+				stripes[distinct++] = stripes[row];
+			}
+		}
+		return Arrays.copyOf(stripes, distinct);
+	}
+
+	/* A seeded 64 bit FNV-1a hash of key, mixed with the finalizer of MurmurHash3. */
+	private long hash(String key) {
+		long hash = this.seed ^ 0xcbf29ce484222325L;
+		for (int index = 0; index < key.length(); index++) {
+			hash = (hash ^ key.charAt(index)) * 0x100000001b3L;
+		}
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+}
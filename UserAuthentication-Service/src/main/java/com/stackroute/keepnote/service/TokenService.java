@@ -0,0 +1,36 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Date;
+import java.util.Map;
+
+import com.stackroute.keepnote.exception.InvalidRefreshTokenException;
+import com.stackroute.keepnote.model.User;
+
+public interface TokenService {
+
+	/*
+	 * This method issues a new refresh token for the user, which can be exchanged
+	 * once for a new access token.
+	 */
+	String issueRefreshToken(String userId);
+
+	/*
+	 * This method takes back a refresh token, which cannot be used again, and
+	 * returns the user it was issued for. Of concurrent redeems of the same token
+	 * only the one which deletes it succeeds.
+	 */
+	User redeemRefreshToken(String refreshToken) throws InvalidRefreshTokenException;
+
+	/*
+	 * This method revokes a refresh token and an access token, given by its id and
+	 * expiry. Either may be null. A refresh token which is not known (any more) is
+	 * ignored.
+	 */
+	void revoke(String refreshToken, String accessTokenId, Date accessTokenExpiresAt);
+
+	/*
+	 * This method returns the ids of the revoked access tokens which have not
+	 * expired yet, as a Bloom filter (see TokenBloomFilter).
+	 */
+	Map<String, Object> getRevocations();
+}
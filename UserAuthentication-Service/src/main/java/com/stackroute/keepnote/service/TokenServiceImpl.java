@@ -0,0 +1,142 @@
+package com.stackroute.keepnote.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stackroute.keepnote.exception.InvalidRefreshTokenException;
+import com.stackroute.keepnote.jwtfilter.TokenBloomFilter;
+import com.stackroute.keepnote.model.RefreshToken;
+import com.stackroute.keepnote.model.RevokedToken;
+import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.repository.RefreshTokenRepository;
+import com.stackroute.keepnote.repository.RevokedTokenRepository;
+import com.stackroute.keepnote.repository.UserAutheticationRepository;
+
+/*
+ * This class issues the refresh tokens and keeps the revoked access tokens.
+ *
+ * A refresh token is 256 random bits, of which only the SHA-256 hash is stored.
+ * It is valid for keepnote.jwt.refresh-token-validity seconds and can be used
+ * once: redeeming it deletes it, and a new one is issued with the new access
+ * token.
+ *
+ * The revoked access tokens are published to the services as a Bloom filter of
+ * their ids. It is rebuilt from the database every
+ * keepnote.jwt.revocations.rebuild-interval seconds, so revocations made by
+ * another instance are included, and right after every revocation made here.
+ * Rows of expired tokens are deleted then, so the filter only grows with the
+ * tokens revoked within the validity of an access token.
+ */
+@Service
+public class TokenServiceImpl implements TokenService {
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	@Autowired
+	private RefreshTokenRepository refreshTokenRepository;
+
+	@Autowired
+	private RevokedTokenRepository revokedTokenRepository;
+
+	@Autowired
+	private UserAutheticationRepository userAutheticationRepository;
+
+	@Value("${keepnote.jwt.refresh-token-validity:864000}")
+	private long refreshTokenValidity = 864000;
+
+	@Value("${keepnote.jwt.revocations.false-positive-rate:0.000001}")
+	private double falsePositiveRate = 0.000001;
+
+	private volatile Map<String, Object> revocations;
+
+	@Override
+	public String issueRefreshToken(String userId) {
+		byte[] token = new byte[32];
+		RANDOM.nextBytes(token);
+		String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+		Date expiresAt = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(this.refreshTokenValidity));
+		this.refreshTokenRepository.save(new RefreshToken(hash(refreshToken), userId, expiresAt));
+		return refreshToken;
+	}
+
+	@Override
+	@Transactional
+	public User redeemRefreshToken(String refreshToken) throws InvalidRefreshTokenException {
+		RefreshToken stored = refreshToken == null ? null
+				: this.refreshTokenRepository.findById(hash(refreshToken)).orElse(null);
+		if (stored == null) {
+			throw new InvalidRefreshTokenException("The refresh token is not known");
+		}
+		if (this.refreshTokenRepository.deleteByTokenHash(stored.getTokenHash()) == 0) {
+			throw new InvalidRefreshTokenException("The refresh token was redeemed already");
+		}
+		if (stored.getExpiresAt().getTime() <= System.currentTimeMillis()) {
+			throw new InvalidRefreshTokenException("The refresh token has expired");
+		}
+		User user = this.userAutheticationRepository.findById(stored.getUserId()).orElse(null);
+		if (user == null) {
+			throw new InvalidRefreshTokenException("The user of the refresh token is not found");
+		}
+		return user;
+	}
+
+	@Override
+	public void revoke(String refreshToken, String accessTokenId, Date accessTokenExpiresAt) {
+		// a refresh token which was redeemed or purged already is not found, which
+		// does not keep the access token from being revoked
+		if (refreshToken != null) {
+			this.refreshTokenRepository.deleteByTokenHash(hash(refreshToken));
+		}
+		if (accessTokenId != null && accessTokenExpiresAt != null) {
+			this.revokedTokenRepository.save(new RevokedToken(accessTokenId, accessTokenExpiresAt));
+			rebuildRevocations();
+		}
+	}
+
+	@Override
+	public Map<String, Object> getRevocations() {
+		Map<String, Object> revocations = this.revocations;
+		if (revocations == null) {
+			rebuildRevocations();
+			revocations = this.revocations;
+		}
+		return revocations;
+	}
+
+	@Scheduled(fixedDelayString = "#{${keepnote.jwt.revocations.rebuild-interval:10} * 1000}")
+	public void rebuildRevocations() {
+		Date now = new Date();
+		this.revokedTokenRepository.deleteByExpiresAtBefore(now);
+		this.refreshTokenRepository.deleteByExpiresAtBefore(now);
+		List<RevokedToken> revoked = this.revokedTokenRepository.findByExpiresAtAfter(now);
+		// sized with room to spare, so the size of the published filter seldom changes
+		TokenBloomFilter filter = TokenBloomFilter.create(Math.max(1024, 2 * revoked.size()), this.falsePositiveRate);
+		for (RevokedToken token : revoked) {
+			filter.add(token.getTokenId());
+		}
+		this.revocations = filter.toJson();
+	}
+
+	private static String hash(String refreshToken) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 package com.stackroute.keepnote.service;
 
+import java.util.List;
+
 import com.stackroute.keepnote.exception.UserAlreadyExistsException;
 import com.stackroute.keepnote.exception.UserNotFoundException;
 import com.stackroute.keepnote.model.User;
@@ -14,4 +16,10 @@ public interface UserAuthenticationService {
     public User findByUserIdAndPassword(String userId, String password) throws UserNotFoundException;
 
     boolean saveUser(User user) throws UserAlreadyExistsException;
+
+    /*
+     * This method registers many users at once and returns the userIds which were
+     * already registered, and so were skipped.
+     */
+    List<String> saveUsers(List<User> users) throws UserAlreadyExistsException;
 }
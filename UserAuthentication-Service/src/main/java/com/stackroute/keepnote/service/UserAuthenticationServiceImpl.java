@@ -1,12 +1,19 @@
 package com.stackroute.keepnote.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import com.stackroute.keepnote.exception.UserAlreadyExistsException;
 import com.stackroute.keepnote.exception.UserNotFoundException;
 import com.stackroute.keepnote.model.User;
 import com.stackroute.keepnote.repository.UserAutheticationRepository;
+import com.stackroute.keepnote.security.PasswordHasher;
 
 /*
 * Service classes are used here to implement additional business logic/validation 
@@ -29,34 +36,90 @@ public class UserAuthenticationServiceImpl implements UserAuthenticationService
 	@Autowired
 	private UserAutheticationRepository userAutheticationRepository;
 
+	@Autowired
+	private PasswordHasher passwordHasher;
+
 	/*
 	 * This method should be used to validate a user using userId and password.
 	 * Call the corresponding method of Respository interface.
 	 * 
+	 * The password is checked against the stored hash by PasswordHasher. When the
+	 * stored password is still plain text or hashed with another cost, it is
+	 * replaced by a new hash, so the passwords are upgraded as the users log in.
 	 */
 	@Override
 	public User findByUserIdAndPassword(String userId, String password) throws UserNotFoundException {
 
-		User currentUser = this.userAutheticationRepository.findByUserIdAndUserPassword(userId, password);
-		if (currentUser != null) {
-			return currentUser;
-		} else {
+		User currentUser = this.userAutheticationRepository.findById(userId).orElse(null);
+		String stored = currentUser == null ? null : currentUser.getUserPassword();
+		if (!this.passwordHasher.matches(password, stored)) {
 			throw new UserNotFoundException("User is not found");
 		}
+		if (this.passwordHasher.needsRehash(stored)) {
+			currentUser.setUserPassword(this.passwordHasher.hash(password));
+			this.userAutheticationRepository.save(currentUser);
+		}
+		return currentUser;
 	}
 
 	/*
 	 * This method should be used to save a new user.Call the corresponding
-	 * method of Respository interface.
+	 * method of Respository interface. The password is stored as a hash.
+	 * 
+	 * The user is inserted with a single INSERT (see User): a userId which is
+	 * already registered is detected by the primary key and not overwritten.
 	 */
 
 	@Override
 	public boolean saveUser(User user) throws UserAlreadyExistsException {
-		User returnObject = (User) this.userAutheticationRepository.saveAndFlush(user);
+		user.setUserPassword(this.passwordHasher.hash(user.getUserPassword()));
+		User returnObject;
+		try {
+			returnObject = (User) this.userAutheticationRepository.saveAndFlush(user);
+		} catch (DataIntegrityViolationException e) {
+			throw new UserAlreadyExistsException("User was already found");
+		}
 		if (returnObject != null) {
 			return true;
 		} else {
 			throw new UserAlreadyExistsException("User was already found");
 		}
 	}
+
+	/*
+	 * This method registers the users of a provisioning job. The userIds which are
+	 * registered already, or repeated in users, are looked up with one query and
+	 * skipped; the passwords of the others are hashed on all hashing threads and
+	 * the users are inserted in JDBC batches. When a userId is registered by
+	 * someone else in the meantime, none of the users is inserted.
+	 */
+	@Override
+	public List<String> saveUsers(List<User> users) throws UserAlreadyExistsException {
+		Map<String, User> byUserId = new LinkedHashMap<>();
+		List<String> conflicts = new ArrayList<>();
+		for (User user : users) {
+			if (byUserId.putIfAbsent(user.getUserId(), user) != null) {
+				conflicts.add(user.getUserId());
+			}
+		}
+		for (User existing : this.userAutheticationRepository.findAllById(byUserId.keySet())) {
+			byUserId.remove(existing.getUserId());
+			conflicts.add(existing.getUserId());
+		}
+		List<User> newUsers = new ArrayList<>(byUserId.values());
+		List<String> passwords = new ArrayList<>();
+		for (User user : newUsers) {
+			passwords.add(user.getUserPassword());
+		}
+		List<String> hashes = this.passwordHasher.hashAll(passwords);
+		for (int index = 0; index < newUsers.size(); index++) {
+			newUsers.get(index).setUserPassword(hashes.get(index));
+		}
+		try {
+			this.userAutheticationRepository.insertAll(newUsers);
+		} catch (DataIntegrityViolationException e) {
+			throw new UserAlreadyExistsException("A user was registered while the users were inserted");
+		}
+		return conflicts;
+	}
 }
@@ -3,15 +3,26 @@ package com.stackroute.keepnote.test.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stackroute.keepnote.controller.UserAuthenticationController;
+import com.stackroute.keepnote.jwtfilter.TokenBloomFilter;
+import com.stackroute.keepnote.exception.InvalidRefreshTokenException;
+import com.stackroute.keepnote.exception.PasswordHashingRejectedException;
 import com.stackroute.keepnote.exception.UserAlreadyExistsException;
 import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.repository.SigningKeyRepository;
+import com.stackroute.keepnote.security.JwtKeySet;
+import com.stackroute.keepnote.security.LoginRateLimiter;
+import com.stackroute.keepnote.security.TokenBucketSketch;
+import com.stackroute.keepnote.service.TokenService;
 import com.stackroute.keepnote.service.UserAuthenticationService;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -23,7 +34,15 @@ import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.Jwts;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest
@@ -35,6 +54,19 @@ public class UserAuthenticationControllerTest {
     @MockBean
     private UserAuthenticationService authenticationService;
 
+    @MockBean
+    private TokenService tokenService;
+
+    @MockBean
+    private SigningKeyRepository signingKeyRepository;
+
+    @Spy
+    private JwtKeySet keySet = new JwtKeySet(864000);
+
+    @Spy
+    private LoginRateLimiter rateLimiter = new LoginRateLimiter(new TokenBucketSketch(1024, 4, 10, 0.1),
+            new TokenBucketSketch(1024, 4, 50, 1));
+
     private User user;
 
     @InjectMocks
@@ -54,6 +86,7 @@ public class UserAuthenticationControllerTest {
         user.setUserPassword("123456");
         user.setUserRole("Admin");
         user.setUserAddedDate(new Date());
+        Mockito.when(tokenService.issueRefreshToken(Mockito.anyString())).thenReturn("refresh1");
 
 
     }
@@ -68,6 +101,94 @@ public class UserAuthenticationControllerTest {
     }
 
 
+    @Test
+    public void testRegisterUserWithoutPasswordInResponse() throws Exception {
+
+        Mockito.when(authenticationService.saveUser(Mockito.any(User.class))).thenAnswer(invocation -> {
+            invocation.<User>getArgument(0).setUserPassword("$2a$10$hash");
+            return true;
+        });
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/register").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.userId").value("Jhon123"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.userPassword").doesNotExist());
+    }
+
+    @Test
+    public void testRegisterUsers() throws Exception {
+
+        User newUser = new User();
+        newUser.setUserId("Mary123");
+        newUser.setUserPassword("654321");
+        Mockito.when(authenticationService.saveUsers(Mockito.anyList())).thenReturn(Collections.singletonList("Jhon123"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/register/bulk").contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(Arrays.asList(user, newUser))))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.registered[0]").value("Mary123"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.conflicts[0]").value("Jhon123"));
+    }
+
+    @Test
+    public void testRegisterUserWithoutPassword() throws Exception {
+
+        user.setUserPassword(null);
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/register").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        user.setUserPassword("");
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/register").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        Mockito.verify(authenticationService, Mockito.never()).saveUser(Mockito.any(User.class));
+    }
+
+    @Test
+    public void testRegisterUsersWithoutPassword() throws Exception {
+
+        User newUser = new User();
+        newUser.setUserId("Mary123");
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/register/bulk").contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(Arrays.asList(user, newUser))))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        Mockito.verify(authenticationService, Mockito.never()).saveUsers(Mockito.anyList());
+    }
+
+    @Test
+    public void testRegisterUserAsAdminGetsUserRole() throws Exception {
+
+        ArgumentCaptor<User> saved = ArgumentCaptor.forClass(User.class);
+        Mockito.when(authenticationService.saveUser(saved.capture())).thenReturn(true);
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/register").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.userRole").value("user"));
+        Assert.assertEquals("user", saved.getValue().getUserRole());
+
+        // the token of the self-registered "Admin" carries the role "user", which
+        // the export of all reminders answers with 403 (ReminderControllerTest)
+        Mockito.when(authenticationService.findByUserIdAndPassword("Jhon123", "123456")).thenReturn(saved.getValue());
+        String token = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isOk()).andReturn().getResponse().getContentAsString();
+        Claims claims = Jwts.parser().setSigningKey(keySet.current().getPublicKey()).parseClaimsJws(token).getBody();
+        Assert.assertEquals("user", claims.get("rol", String.class));
+    }
+
+    @Test
+    public void testRegisterUsersAsAdminGetUserRole() throws Exception {
+
+        User newUser = new User();
+        newUser.setUserId("Mary123");
+        newUser.setUserPassword("654321");
+        newUser.setUserRole("Admin");
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> saved = ArgumentCaptor.forClass((Class<List<User>>) (Class<?>) List.class);
+        Mockito.when(authenticationService.saveUsers(saved.capture())).thenReturn(Collections.emptyList());
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/register/bulk").contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(Arrays.asList(user, newUser))))
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+        Assert.assertEquals(2, saved.getValue().size());
+        for (User registered : saved.getValue()) {
+            Assert.assertEquals("user", registered.getUserRole());
+        }
+    }
+
     @Test
     public void testLoginUser() throws Exception {
 
@@ -82,6 +203,136 @@ public class UserAuthenticationControllerTest {
                 .andExpect(MockMvcResultMatchers.status().isOk()).andDo(MockMvcResultHandlers.print());
     }
 
+    @Test
+    public void testLoginTokenSignedWithCurrentKey() throws Exception {
+
+        Mockito.when(authenticationService.findByUserIdAndPassword("Jhon123", "123456")).thenReturn(user);
+        String token = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isOk()).andReturn().getResponse().getContentAsString();
+
+        Jws<Claims> claims = Jwts.parser().setSigningKey(keySet.current().getPublicKey()).parseClaimsJws(token);
+        Assert.assertEquals(keySet.current().getId(), claims.getHeader().getKeyId());
+        Assert.assertEquals("ES256", claims.getHeader().getAlgorithm());
+        Assert.assertEquals("Jhon123", claims.getBody().getSubject());
+    }
+
+    @Test
+    public void testLoginTokenHasOnlyCompactClaims() throws Exception {
+
+        Mockito.when(authenticationService.findByUserIdAndPassword("Jhon123", "123456")).thenReturn(user);
+        String token = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isOk()).andReturn().getResponse().getContentAsString();
+
+        Claims claims = Jwts.parser().setSigningKey(keySet.current().getPublicKey()).parseClaimsJws(token).getBody();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("sub", "iat", "exp", "jti", UserAuthenticationController.ROLE)), claims.keySet());
+        Assert.assertEquals("Admin", claims.get(UserAuthenticationController.ROLE));
+    }
+
+    @Test
+    public void testLoginReturnsShortLivedTokenAndRefreshToken() throws Exception {
+
+        Mockito.when(authenticationService.findByUserIdAndPassword("Jhon123", "123456")).thenReturn(user);
+        Mockito.when(tokenService.issueRefreshToken("Jhon123")).thenReturn("refresh1");
+        String token = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(UserAuthenticationController.REFRESH_TOKEN, "refresh1"))
+                .andReturn().getResponse().getContentAsString();
+
+        Claims claims = Jwts.parser().setSigningKey(keySet.current().getPublicKey()).parseClaimsJws(token).getBody();
+        Assert.assertEquals(900_000, claims.getExpiration().getTime() - claims.getIssuedAt().getTime());
+    }
+
+    @Test
+    public void testRefreshToken() throws Exception {
+
+        Mockito.when(tokenService.redeemRefreshToken("refresh1")).thenReturn(user);
+        Mockito.when(tokenService.issueRefreshToken("Jhon123")).thenReturn("refresh2");
+        String token = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/refresh").header(UserAuthenticationController.REFRESH_TOKEN, "refresh1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(UserAuthenticationController.REFRESH_TOKEN, "refresh2"))
+                .andReturn().getResponse().getContentAsString();
+
+        Claims claims = Jwts.parser().setSigningKey(keySet.current().getPublicKey()).parseClaimsJws(token).getBody();
+        Assert.assertEquals("Jhon123", claims.getSubject());
+    }
+
+    @Test
+    public void testRefreshTokenInvalid() throws Exception {
+
+        Mockito.when(tokenService.redeemRefreshToken("refresh1")).thenThrow(new InvalidRefreshTokenException("The refresh token is not known"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/refresh").header(UserAuthenticationController.REFRESH_TOKEN, "refresh1"))
+                .andExpect(MockMvcResultMatchers.status().isUnauthorized());
+    }
+
+    @Test
+    public void testLogoutRevokesTokens() throws Exception {
+
+        String token = authenticationController.getToken(user);
+        Claims claims = Jwts.parser().setSigningKey(keySet.current().getPublicKey()).parseClaimsJws(token).getBody();
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/logout").header(UserAuthenticationController.REFRESH_TOKEN, "refresh1")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(MockMvcResultMatchers.status().isNoContent());
+
+        Mockito.verify(tokenService).revoke("refresh1", claims.getId(), claims.getExpiration());
+    }
+
+    @Test
+    public void testLogoutIgnoresForgedAccessToken() throws Exception {
+
+        String token = new UserAuthenticationController(authenticationService, new JwtKeySet(864000), rateLimiter, tokenService)
+                .getToken(user);
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/logout").header(UserAuthenticationController.REFRESH_TOKEN, "refresh1")
+                .header("Authorization", "Bearer " + token))
+                .andExpect(MockMvcResultMatchers.status().isNoContent());
+
+        Mockito.verify(tokenService).revoke("refresh1", null, null);
+    }
+
+    @Test
+    public void testGetRevocations() throws Exception {
+
+        Mockito.when(tokenService.getRevocations()).thenReturn(TokenBloomFilter.create(1024, 0.000001).toJson());
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/auth/revocations"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.hashes").isNumber())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.bits").isString());
+    }
+
+    @Test
+    public void testLoginWhenPasswordHashingBusy() throws Exception {
+
+        Mockito.when(authenticationService.findByUserIdAndPassword("Jhon123", "123456"))
+                .thenThrow(new PasswordHashingRejectedException("All password hashing threads are busy"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isServiceUnavailable())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "1"));
+    }
+
+    @Test
+    public void testLoginThrottledPerUser() throws Exception {
+
+        Mockito.when(authenticationService.findByUserIdAndPassword("Jhon123", "123456")).thenReturn(user);
+        for (int login = 0; login < 10; login++) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+        }
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(jsonToString(user)))
+                .andExpect(MockMvcResultMatchers.status().isTooManyRequests())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "10"));
+        Mockito.verify(authenticationService, Mockito.times(10)).findByUserIdAndPassword("Jhon123", "123456");
+    }
+
+    @Test
+    public void testGetKeySet() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/auth/jwks"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.keys[0].kid").value(keySet.current().getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.keys[0].kty").value("EC"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.keys[0].crv").value("P-256"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.keys[0].d").doesNotExist());
+    }
+
     // Parsing String format data into JSON format
     private static String jsonToString(final Object obj) throws JsonProcessingException {
         String result;
@@ -0,0 +1,130 @@
+package com.stackroute.keepnote.test.security;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.stackroute.keepnote.model.SigningKeyPair;
+import com.stackroute.keepnote.repository.SigningKeyRepository;
+import com.stackroute.keepnote.security.JwtKeySet;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JwtKeySetTest {
+
+    @Test
+    public void testRotateKeepsReplacedKey() {
+
+        JwtKeySet keySet = new JwtKeySet(864000);
+        String first = keySet.current().getId();
+
+        keySet.rotate();
+
+        Assert.assertNotEquals(first, keySet.current().getId());
+        List<Map<String, Object>> keys = keys(keySet);
+        Assert.assertEquals(2, keys.size());
+        Assert.assertEquals(keySet.current().getId(), keys.get(0).get("kid"));
+        Assert.assertEquals(first, keys.get(1).get("kid"));
+    }
+
+    @Test
+    public void testRotateDropsKeysAfterRetention() throws InterruptedException {
+
+        JwtKeySet keySet = new JwtKeySet(1);
+        String first = keySet.current().getId();
+        keySet.rotate();
+        String second = keySet.current().getId();
+        Assert.assertEquals(2, keys(keySet).size());
+
+        Thread.sleep(1100);
+        keySet.rotate();
+
+        // the first key was replaced more than a second ago, the second just now
+        List<Map<String, Object>> keys = keys(keySet);
+        Assert.assertEquals(2, keys.size());
+        Assert.assertEquals(keySet.current().getId(), keys.get(0).get("kid"));
+        Assert.assertEquals(second, keys.get(1).get("kid"));
+        Assert.assertTrue(keys.stream().noneMatch(key -> first.equals(key.get("kid"))));
+    }
+
+    @Test
+    public void testPublishedKeyHasNoPrivatePart() {
+
+        Map<String, Object> key = keys(new JwtKeySet(864000)).get(0);
+
+        Assert.assertEquals("EC", key.get("kty"));
+        Assert.assertEquals("ES256", key.get("alg"));
+        Assert.assertEquals(43, ((String) key.get("x")).length());
+        Assert.assertEquals(43, ((String) key.get("y")).length());
+        Assert.assertFalse(key.containsKey("d"));
+    }
+
+    @Test
+    public void testInstancesShareStoredKeys() throws InterruptedException {
+
+        List<SigningKeyPair> stored = new ArrayList<>();
+        JwtKeySet first = new JwtKeySet(repository(stored), 86400, 864000, 0);
+        Assert.assertEquals(1, stored.size());
+
+        // a second instance, or the first one after a restart, signs with the stored pair
+        JwtKeySet second = new JwtKeySet(repository(stored), 86400, 864000, 0);
+        Assert.assertEquals(1, stored.size());
+        Assert.assertEquals(first.current().getId(), second.current().getId());
+        Assert.assertEquals(first.current().getPrivateKey(), second.current().getPrivateKey());
+        Assert.assertEquals(first.current().getPublicKey(), second.publicKey(first.current().getId()));
+
+        Thread.sleep(10);
+        second.rotate();
+        first.refresh();
+        Assert.assertEquals(2, stored.size());
+        Assert.assertEquals(second.current().getId(), first.current().getId());
+        Assert.assertEquals(2, keys(first).size());
+    }
+
+    @Test
+    public void testNewKeySignsOncePublished() {
+
+        List<SigningKeyPair> stored = new ArrayList<>();
+        JwtKeySet keySet = new JwtKeySet(repository(stored), 86400, 864000, 60);
+        String first = keySet.current().getId();
+
+        keySet.rotate();
+
+        // the new key is published, but the other instances may not have loaded it yet
+        Assert.assertEquals(2, keys(keySet).size());
+        Assert.assertEquals(first, keySet.current().getId());
+
+        stored.get(0).setCreatedAt(new Date(System.currentTimeMillis() - 120000));
+        stored.get(1).setCreatedAt(new Date(System.currentTimeMillis() - 61000));
+        keySet.refresh();
+        Assert.assertEquals(stored.get(1).getKeyId(), keySet.current().getId());
+    }
+
+    private static SigningKeyRepository repository(List<SigningKeyPair> stored) {
+        SigningKeyRepository repository = mock(SigningKeyRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            stored.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(repository.findAllByOrderByCreatedAtDesc()).thenAnswer(invocation -> stored.stream()
+                .sorted(Comparator.comparing(SigningKeyPair::getCreatedAt).reversed())
+                .collect(Collectors.toList()));
+        when(repository.deleteByKeyId(anyString()))
+                .thenAnswer(invocation -> stored.removeIf(key -> key.getKeyId().equals(invocation.getArgument(0))) ? 1L : 0L);
+        return repository;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> keys(JwtKeySet keySet) {
+        return (List<Map<String, Object>>) keySet.jwks().get("keys");
+    }
+}
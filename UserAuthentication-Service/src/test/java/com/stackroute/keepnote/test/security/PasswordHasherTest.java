@@ -0,0 +1,75 @@
+package com.stackroute.keepnote.test.security;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.stackroute.keepnote.exception.PasswordHashingRejectedException;
+import com.stackroute.keepnote.security.PasswordHasher;
+
+public class PasswordHasherTest {
+
+    private PasswordHasher passwordHasher;
+
+    @After
+    public void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    public void testHashMatches() {
+
+        passwordHasher = new PasswordHasher(4, 1, 10, 5000);
+        String hash = passwordHasher.hash("123456");
+
+        Assert.assertTrue(hash.startsWith("$2a$04$"));
+        Assert.assertTrue(passwordHasher.matches("123456", hash));
+        Assert.assertFalse(passwordHasher.matches("654321", hash));
+        Assert.assertFalse(passwordHasher.matches("123456", null));
+    }
+
+    @Test
+    public void testPlainTextAndOtherCostNeedRehash() {
+
+        passwordHasher = new PasswordHasher(5, 1, 10, 5000);
+
+        Assert.assertTrue(passwordHasher.matches("123456", "123456"));
+        Assert.assertTrue(passwordHasher.needsRehash("123456"));
+        Assert.assertTrue(passwordHasher.needsRehash(new PasswordHasher(4, 1, 10, 5000).hash("123456")));
+        Assert.assertFalse(passwordHasher.needsRehash(passwordHasher.hash("123456")));
+    }
+
+    @Test(expected = PasswordHashingRejectedException.class)
+    public void testRejectedWhenNotHashedInTime() {
+
+        passwordHasher = new PasswordHasher(14, 1, 10, 1);
+        passwordHasher.hash("123456");
+    }
+
+    @Test
+    public void testRejectedWhenAllThreadsBusy() throws InterruptedException {
+
+        passwordHasher = new PasswordHasher(14, 1, 1, 60000);
+        // one hash runs and one waits, which fills the thread and the queue
+        for (int i = 0; i < 2; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    passwordHasher.hash("123456");
+                } catch (PasswordHashingRejectedException e) {
+                    // the hasher is shut down by tearDown
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread.sleep(200);
+
+        long started = System.nanoTime();
+        try {
+            passwordHasher.hash("123456");
+            Assert.fail("a hash has to be rejected when all threads are busy");
+        } catch (PasswordHashingRejectedException e) {
+            Assert.assertTrue(System.nanoTime() - started < 100_000_000);
+        }
+    }
+}
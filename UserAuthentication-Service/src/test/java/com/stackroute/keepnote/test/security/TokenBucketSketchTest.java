@@ -0,0 +1,135 @@
+package com.stackroute.keepnote.test.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.stackroute.keepnote.security.LoginRateLimiter;
+import com.stackroute.keepnote.security.TokenBucketSketch;
+
+public class TokenBucketSketchTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testBurstThenRefill() {
+
+        TokenBucketSketch sketch = new TokenBucketSketch(1024, 4, 3, 0.5);
+
+        for (int call = 0; call < 3; call++) {
+            Assert.assertTrue(sketch.tryAcquire("Jhon123", 0));
+        }
+        Assert.assertFalse(sketch.tryAcquire("Jhon123", 0));
+        Assert.assertFalse(sketch.tryAcquire("Jhon123", SECOND));
+        Assert.assertTrue(sketch.tryAcquire("Jhon123", 3 * SECOND));
+        Assert.assertFalse(sketch.tryAcquire("Jhon123", 3 * SECOND));
+        Assert.assertEquals(2, sketch.getRetryAfterSeconds());
+    }
+
+    @Test
+    public void testKeysLimitedSeparately() {
+
+        TokenBucketSketch sketch = new TokenBucketSketch(1024, 4, 1, 0.5);
+
+        Assert.assertTrue(sketch.tryAcquire("Jhon123", 0));
+        Assert.assertFalse(sketch.tryAcquire("Jhon123", 0));
+        Assert.assertTrue(sketch.tryAcquire("Mary123", 0));
+    }
+
+    @Test
+    public void testKeysCollidingInSomeRowsNotLimited() {
+
+        TokenBucketSketch sketch = new TokenBucketSketch(4, 2, 2, 0.5);
+        int[] attacker = sketch.buckets("attacker");
+        String firstRow = null;
+        String secondRow = null;
+        String everyRow = null;
+        for (int key = 0; firstRow == null || secondRow == null || everyRow == null; key++) {
+            int[] buckets = sketch.buckets("user" + key);
+            boolean first = buckets[0] == attacker[0];
+            boolean second = buckets[1] == attacker[1];
+            if (first && !second && firstRow == null) {
+                firstRow = "user" + key;
+            } else if (!first && second && secondRow == null) {
+                secondRow = "user" + key;
+            } else if (first && second && everyRow == null) {
+                everyRow = "user" + key;
+            }
+        }
+
+        for (int call = 0; call < 10; call++) {
+            sketch.tryAcquire("attacker", 0);
+        }
+
+        Assert.assertTrue(sketch.tryAcquire(firstRow, 0));
+        Assert.assertTrue(sketch.tryAcquire(secondRow, 0));
+        Assert.assertFalse(sketch.tryAcquire(everyRow, 0));
+    }
+
+    @Test
+    public void testDeniedCallsTakeNoTokens() {
+
+        TokenBucketSketch sketch = new TokenBucketSketch(1, 2, 2, 0.5);
+
+        Assert.assertTrue(sketch.tryAcquire("Jhon123", 0));
+        Assert.assertTrue(sketch.tryAcquire("Jhon123", 0));
+        for (int call = 0; call < 10; call++) {
+            Assert.assertFalse(sketch.tryAcquire("Jhon123", 0));
+        }
+        Assert.assertTrue(sketch.tryAcquire("Jhon123", 2 * SECOND));
+    }
+
+    @Test
+    public void testCapacityNotExceededByConcurrentCalls() throws Exception {
+
+        TokenBucketSketch sketch = new TokenBucketSketch(1024, 4, 100, 0.5);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> calls = new ArrayList<>();
+            for (int call = 0; call < 1000; call++) {
+                calls.add(() -> sketch.tryAcquire("Jhon123", 0));
+            }
+            int allowed = 0;
+            for (Future<Boolean> result : executor.invokeAll(calls)) {
+                allowed += result.get() ? 1 : 0;
+            }
+            Assert.assertEquals(100, allowed);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLoginLimitedPerClient() {
+
+        LoginRateLimiter limiter = new LoginRateLimiter(new TokenBucketSketch(1024, 4, 10, 0.1),
+                new TokenBucketSketch(1024, 4, 3, 1));
+
+        for (int user = 0; user < 3; user++) {
+            Assert.assertTrue(limiter.tryAcquire("user" + user, "10.0.0.1"));
+        }
+        Assert.assertFalse(limiter.tryAcquire("user3", "10.0.0.1"));
+        Assert.assertTrue(limiter.tryAcquire("user3", "10.0.0.2"));
+        Assert.assertEquals(10, limiter.getRetryAfterSeconds());
+    }
+
+    @Test
+    public void testThrottledClientDoesNotLockUserOut() {
+
+        LoginRateLimiter limiter = new LoginRateLimiter(new TokenBucketSketch(1024, 4, 3, 0.1),
+                new TokenBucketSketch(1024, 4, 1, 0.1));
+
+        Assert.assertTrue(limiter.tryAcquire("Jhon123", "10.0.0.1"));
+        for (int call = 0; call < 10; call++) {
+            Assert.assertFalse(limiter.tryAcquire("Jhon123", "10.0.0.1"));
+        }
+        Assert.assertTrue(limiter.tryAcquire("Jhon123", "10.0.0.2"));
+        Assert.assertTrue(limiter.tryAcquire("Jhon123", "10.0.0.3"));
+    }
+}
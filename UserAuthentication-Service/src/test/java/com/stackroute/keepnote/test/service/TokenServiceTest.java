@@ -0,0 +1,147 @@
+package com.stackroute.keepnote.test.service;
+
+import com.stackroute.keepnote.exception.InvalidRefreshTokenException;
+import com.stackroute.keepnote.jwtfilter.TokenBloomFilter;
+import com.stackroute.keepnote.model.RefreshToken;
+import com.stackroute.keepnote.model.RevokedToken;
+import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.repository.RefreshTokenRepository;
+import com.stackroute.keepnote.repository.RevokedTokenRepository;
+import com.stackroute.keepnote.repository.UserAutheticationRepository;
+import com.stackroute.keepnote.service.TokenServiceImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+public class TokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private UserAutheticationRepository userAutheticationRepository;
+
+    @InjectMocks
+    private TokenServiceImpl tokenService;
+
+    private User user;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        user = new User();
+        user.setUserId("Jhon123");
+        user.setUserRole("Admin");
+        Mockito.when(userAutheticationRepository.findById("Jhon123")).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    public void testRefreshTokenStoredAsHash() {
+
+        String refreshToken = tokenService.issueRefreshToken("Jhon123");
+
+        RefreshToken stored = savedRefreshToken();
+        Assert.assertEquals(43, refreshToken.length());
+        Assert.assertNotEquals(refreshToken, stored.getTokenHash());
+        Assert.assertEquals("Jhon123", stored.getUserId());
+        Assert.assertTrue(stored.getExpiresAt().after(new Date()));
+    }
+
+    @Test
+    public void testRedeemRefreshToken() throws InvalidRefreshTokenException {
+
+        String refreshToken = tokenService.issueRefreshToken("Jhon123");
+        RefreshToken stored = savedRefreshToken();
+        Mockito.when(refreshTokenRepository.findById(stored.getTokenHash())).thenReturn(Optional.of(stored));
+        Mockito.when(refreshTokenRepository.deleteByTokenHash(stored.getTokenHash())).thenReturn(1);
+
+        Assert.assertEquals("Jhon123", tokenService.redeemRefreshToken(refreshToken).getUserId());
+        Mockito.verify(refreshTokenRepository).deleteByTokenHash(stored.getTokenHash());
+    }
+
+    @Test(expected = InvalidRefreshTokenException.class)
+    public void testRedeemRefreshTokenRedeemedConcurrently() throws InvalidRefreshTokenException {
+
+        String refreshToken = tokenService.issueRefreshToken("Jhon123");
+        RefreshToken stored = savedRefreshToken();
+        Mockito.when(refreshTokenRepository.findById(stored.getTokenHash())).thenReturn(Optional.of(stored));
+        Mockito.when(refreshTokenRepository.deleteByTokenHash(stored.getTokenHash())).thenReturn(0);
+
+        tokenService.redeemRefreshToken(refreshToken);
+    }
+
+    @Test(expected = InvalidRefreshTokenException.class)
+    public void testRedeemUnknownRefreshToken() throws InvalidRefreshTokenException {
+
+        Mockito.when(refreshTokenRepository.findById(Mockito.anyString())).thenReturn(Optional.empty());
+        tokenService.redeemRefreshToken("refresh1");
+    }
+
+    @Test(expected = InvalidRefreshTokenException.class)
+    public void testRedeemExpiredRefreshToken() throws InvalidRefreshTokenException {
+
+        String refreshToken = tokenService.issueRefreshToken("Jhon123");
+        RefreshToken stored = savedRefreshToken();
+        stored.setExpiresAt(new Date(System.currentTimeMillis() - 1000));
+        Mockito.when(refreshTokenRepository.findById(stored.getTokenHash())).thenReturn(Optional.of(stored));
+        Mockito.when(refreshTokenRepository.deleteByTokenHash(stored.getTokenHash())).thenReturn(1);
+
+        tokenService.redeemRefreshToken(refreshToken);
+    }
+
+    @Test
+    public void testRevokedTokenPublished() {
+
+        Date expiresAt = new Date(System.currentTimeMillis() + 900_000);
+        Mockito.when(revokedTokenRepository.findByExpiresAtAfter(Mockito.any(Date.class)))
+                .thenReturn(Collections.singletonList(new RevokedToken("jti1", expiresAt)));
+
+        Mockito.when(refreshTokenRepository.deleteByTokenHash(Mockito.anyString())).thenReturn(1);
+
+        tokenService.revoke("refresh1", "jti1", expiresAt);
+
+        Mockito.verify(refreshTokenRepository).deleteByTokenHash(Mockito.anyString());
+        Mockito.verify(revokedTokenRepository).save(Mockito.any(RevokedToken.class));
+        TokenBloomFilter revocations = TokenBloomFilter.parse(tokenService.getRevocations());
+        Assert.assertTrue(revocations.mightContain("jti1"));
+        Assert.assertFalse(revocations.mightContain("jti2"));
+    }
+
+    @Test
+    public void testRevokeWithUsedRefreshToken() throws InvalidRefreshTokenException {
+
+        String refreshToken = tokenService.issueRefreshToken("Jhon123");
+        RefreshToken stored = savedRefreshToken();
+        Mockito.when(refreshTokenRepository.findById(stored.getTokenHash())).thenReturn(Optional.of(stored));
+        Mockito.when(refreshTokenRepository.deleteByTokenHash(stored.getTokenHash())).thenReturn(1, 0);
+        tokenService.redeemRefreshToken(refreshToken);
+
+        Date expiresAt = new Date(System.currentTimeMillis() + 900_000);
+        Mockito.when(revokedTokenRepository.findByExpiresAtAfter(Mockito.any(Date.class)))
+                .thenReturn(Collections.singletonList(new RevokedToken("jti1", expiresAt)));
+        tokenService.revoke(refreshToken, "jti1", expiresAt);
+
+        Mockito.verify(refreshTokenRepository, Mockito.times(2)).deleteByTokenHash(stored.getTokenHash());
+        Mockito.verify(revokedTokenRepository).save(Mockito.any(RevokedToken.class));
+        Assert.assertTrue(TokenBloomFilter.parse(tokenService.getRevocations()).mightContain("jti1"));
+    }
+
+    private RefreshToken savedRefreshToken() {
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        Mockito.verify(refreshTokenRepository).save(saved.capture());
+        return saved.getValue();
+    }
+
+}
@@ -4,6 +4,7 @@ import com.stackroute.keepnote.exception.UserAlreadyExistsException;
 import com.stackroute.keepnote.exception.UserNotFoundException;
 import com.stackroute.keepnote.model.User;
 import com.stackroute.keepnote.repository.UserAutheticationRepository;
+import com.stackroute.keepnote.security.PasswordHasher;
 import com.stackroute.keepnote.service.UserAuthenticationServiceImpl;
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,8 +13,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 public class UserAuthenticationServiceTest {
@@ -21,6 +27,9 @@ public class UserAuthenticationServiceTest {
     @Mock
     private UserAutheticationRepository autheticationRepository;
 
+    @Spy
+    private PasswordHasher passwordHasher = new PasswordHasher(4, 1, 10, 5000);
+
     private User user;
     @InjectMocks
     private UserAuthenticationServiceImpl authenticationService;
@@ -61,10 +70,69 @@ public class UserAuthenticationServiceTest {
 
     }
 
+    @Test(expected = UserAlreadyExistsException.class)
+    public void testSaveUserDetectsDuplicateByConstraint() throws UserAlreadyExistsException {
+
+        Mockito.when(autheticationRepository.saveAndFlush(user)).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+        authenticationService.saveUser(user);
+    }
+
+    @Test
+    public void testSaveUsersSkipsRegisteredUsers() throws UserAlreadyExistsException {
+
+        User newUser = new User();
+        newUser.setUserId("Mary123");
+        newUser.setUserPassword("654321");
+        Mockito.when(autheticationRepository.findAllById(Mockito.anyIterable())).thenReturn(Collections.singletonList(user));
+
+        List<String> conflicts = authenticationService.saveUsers(Arrays.asList(user, newUser, newUser));
+
+        Assert.assertEquals(Arrays.asList("Mary123", "Jhon123"), conflicts);
+        Mockito.verify(autheticationRepository).insertAll(Collections.singletonList(newUser));
+        Assert.assertTrue(passwordHasher.matches("654321", newUser.getUserPassword()));
+        Assert.assertEquals("123456", user.getUserPassword());
+    }
+
     @Test
     public void testFindByUserIdAndPassword() throws UserNotFoundException {
-        Mockito.when(autheticationRepository.findByUserIdAndUserPassword("Jhon123", "123456")).thenReturn(user);
+        Mockito.when(autheticationRepository.findById("Jhon123")).thenReturn(optional);
+        User fetchedUser = authenticationService.findByUserIdAndPassword("Jhon123", "123456");
+        Assert.assertEquals("Jhon123", fetchedUser.getUserId());
+    }
+
+    @Test
+    public void testFindByUserIdAndPasswordUpgradesPlainTextPassword() throws UserNotFoundException {
+        Mockito.when(autheticationRepository.findById("Jhon123")).thenReturn(optional);
+        authenticationService.findByUserIdAndPassword("Jhon123", "123456");
+
+        Mockito.verify(autheticationRepository).save(user);
+        Assert.assertTrue(user.getUserPassword().startsWith("$2a$04$"));
+        Assert.assertFalse(passwordHasher.needsRehash(user.getUserPassword()));
+
+        // the next login checks the hash and leaves it as it is
         User fetchedUser = authenticationService.findByUserIdAndPassword("Jhon123", "123456");
         Assert.assertEquals("Jhon123", fetchedUser.getUserId());
+        Mockito.verify(autheticationRepository, Mockito.times(1)).save(user);
+    }
+
+    @Test(expected = UserNotFoundException.class)
+    public void testFindByUserIdAndWrongPassword() throws UserNotFoundException {
+        user.setUserPassword(passwordHasher.hash("123456"));
+        Mockito.when(autheticationRepository.findById("Jhon123")).thenReturn(optional);
+        authenticationService.findByUserIdAndPassword("Jhon123", "654321");
+    }
+
+    @Test(expected = UserNotFoundException.class)
+    public void testFindByUnknownUserId() throws UserNotFoundException {
+        Mockito.when(autheticationRepository.findById("Jhon124")).thenReturn(Optional.empty());
+        authenticationService.findByUserIdAndPassword("Jhon124", "123456");
+    }
+
+    @Test
+    public void testSaveUserHashesPassword() throws UserAlreadyExistsException {
+        Mockito.when(autheticationRepository.saveAndFlush(user)).thenReturn(user);
+        Assert.assertTrue(authenticationService.saveUser(user));
+        Assert.assertTrue(passwordHasher.matches("123456", user.getUserPassword()));
+        Assert.assertNotEquals("123456", user.getUserPassword());
     }
 }
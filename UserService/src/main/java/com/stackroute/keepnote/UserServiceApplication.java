@@ -1,13 +1,7 @@
 package com.stackroute.keepnote;
 
-import javax.servlet.Filter;
-
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.boot.web.servlet.FilterRegistrationBean;
-import org.springframework.context.annotation.Bean;
-
-import com.stackroute.keepnote.jwtfilter.JwtFilter;
 
 /*
  * The @SpringBootApplication annotation is equivalent to using @Configuration, @EnableAutoConfiguration 
@@ -21,20 +15,10 @@ public class UserServiceApplication {
 	
 	
 	/*
-	 * Define the bean for Filter registration. Create a new FilterRegistrationBean
-	 * object and use setFilter() method to set new instance of JwtFilter object.
-	 * Also specifies the Url patterns for registration bean.
+	 * The JwtFilter is registered by JwtFilterAutoConfiguration of keepnote-security,
+	 * see keepnote.jwt in application.yml.
 	 */
-	@Bean
-	public FilterRegistrationBean jwtFilter() {
-		FilterRegistrationBean<Filter> bean = new FilterRegistrationBean<Filter>();
-		bean.setFilter(new JwtFilter("SecretKeyToGenJWTs"));
-		return bean;
-	}
 
-	
-	
-	
 	/*
 	 * 
 	 * You need to run SpringApplication.run, because this method start whole spring
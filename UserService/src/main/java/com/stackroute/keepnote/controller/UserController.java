@@ -5,6 +5,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -98,6 +99,24 @@ public class UserController {
 
 	}
 
+	/*
+	 * This handler method changes only the fields of a specific user which are
+	 * present in the request body (userName, userPassword, userMobile); the
+	 * other fields are kept. It returns 1. 200(OK) with the updated user. 2.
+	 * 404(NOT FOUND) - If the user with specified userId is not found.
+	 *
+	 * This handler method maps to the URL "/api/v1/user/{id}" using HTTP PATCH
+	 * method.
+	 */
+	@PatchMapping("/api/v1/user/{id}")
+	public ResponseEntity<User> patchUser(@PathVariable String id, @RequestBody User user) {
+		try {
+			return new ResponseEntity<User>(userService.patchUser(id, user), HttpStatus.OK);
+		} catch (UserNotFoundException e) {
+			return new ResponseEntity<User>(HttpStatus.NOT_FOUND);
+		}
+	}
+
 	/*
 	 * Define a handler method which will delete a user from a database. This
 	 * handler method should return any one of the status messages basis on
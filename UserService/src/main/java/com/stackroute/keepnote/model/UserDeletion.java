@@ -0,0 +1,62 @@
+package com.stackroute.keepnote.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/*
+ * This class is the outbox event of a deleted user. It is written by
+ * UserServiceImpl.deleteUser to the "user_deletion" collection, which the Note,
+ * Category and Reminder services read to purge the data of the user.
+ *
+ * pending holds the names of the services which have not purged the user yet;
+ * each of them pulls its name once it is done, and the last one removes the
+ * event.
+ */
+@Document(collection = UserDeletion.COLLECTION)
+public class UserDeletion {
+
+	public static final String COLLECTION = "user_deletion";
+
+	@Id
+	private String userId;
+	private Date deletedAt;
+	private List<String> pending;
+
+	public UserDeletion() {
+	}
+
+	public UserDeletion(String userId, Date deletedAt, List<String> pending) {
+		this.userId = userId;
+		this.deletedAt = deletedAt;
+		this.pending = new ArrayList<>(pending);
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public Date getDeletedAt() {
+		return deletedAt;
+	}
+
+	public void setDeletedAt(Date deletedAt) {
+		this.deletedAt = deletedAt;
+	}
+
+	public List<String> getPending() {
+		return pending;
+	}
+
+	public void setPending(List<String> pending) {
+		this.pending = pending;
+	}
+
+}
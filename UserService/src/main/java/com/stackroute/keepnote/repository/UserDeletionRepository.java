@@ -0,0 +1,14 @@
+package com.stackroute.keepnote.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.stackroute.keepnote.model.UserDeletion;
+
+/*
+ * This interface gives access to the outbox of deleted users, see UserDeletion.
+ */
+@Repository
+public interface UserDeletionRepository extends MongoRepository<UserDeletion, String> {
+
+}
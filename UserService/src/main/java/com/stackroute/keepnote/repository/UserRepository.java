@@ -8,8 +8,9 @@ import com.stackroute.keepnote.model.User;
 /*
 * This class is implementing the MongoRepository interface for User.
 * Annotate this class with @Repository annotation
+* Partial updates are provided by UserRepositoryCustom.
 * */
 @Repository
-public interface UserRepository extends MongoRepository<User, String> {
+public interface UserRepository extends MongoRepository<User, String>, UserRepositoryCustom {
 
 }
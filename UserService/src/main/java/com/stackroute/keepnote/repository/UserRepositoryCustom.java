@@ -0,0 +1,20 @@
+package com.stackroute.keepnote.repository;
+
+import com.stackroute.keepnote.model.User;
+
+/*
+ * This interface declares the user operations which are not provided by
+ * MongoRepository. They are implemented with MongoTemplate in
+ * UserRepositoryImpl.
+ */
+public interface UserRepositoryCustom {
+
+	/*
+	 * This method should set the userName, userPassword and userMobile of the
+	 * user with the given userId to the values of changes which are not null, in
+	 * a single update without reading the user first. The other fields are kept.
+	 * It should return the updated user, or null if no such user exists.
+	 */
+	User patchUser(String userId, User changes);
+
+}
@@ -0,0 +1,54 @@
+package com.stackroute.keepnote.repository;
+
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.stackroute.keepnote.model.User;
+
+/*
+ * This class implements UserRepositoryCustom through MongoTemplate. Spring Data
+ * picks it up as the custom fragment of UserRepository because of the "Impl"
+ * postfix.
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+	private final MongoTemplate mongoTemplate;
+
+	@Autowired
+	public UserRepositoryImpl(MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	/*
+	 * The supplied fields are sent as one $set through findAndModify, which
+	 * returns the document as it is after the update. Like a full update, a change
+	 * stamps userAddedDate with the system date. When no field is supplied there is
+	 * nothing to set, and the user is only read.
+	 */
+	public User patchUser(String userId, User changes) {
+		Query query = new Query(Criteria.where("_id").is(userId));
+		Update update = new Update();
+		if (changes.getUserName() != null) {
+			update.set("userName", changes.getUserName());
+		}
+		if (changes.getUserPassword() != null) {
+			update.set("userPassword", changes.getUserPassword());
+		}
+		if (changes.getUserMobile() != null) {
+			update.set("userMobile", changes.getUserMobile());
+		}
+		if (update.getUpdateObject().isEmpty()) {
+			return this.mongoTemplate.findOne(query, User.class);
+		}
+		update.set("userAddedDate", new Date());
+		return this.mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+				User.class);
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.stackroute.keepnote.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stackroute.keepnote.model.User;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/*
+ * This class keeps recently read users in memory, keyed by userId.
+ *
+ * The cache holds at most keepnote.user.cache.maximum-size users, and a user is
+ * read from the database again keepnote.user.cache.ttl seconds after it was
+ * cached. UserServiceImpl invalidates a user on every write, so the cache of this
+ * instance never serves a stale user; the ttl bounds how long a user written
+ * through another instance of the service is served stale.
+ *
+ * The cached users are shared by all callers and must not be modified. The hit,
+ * miss and eviction counters are published as "users" cache metrics.
+ */
+@Component
+public class UserCache implements MeterBinder {
+
+	private final Cache<String, User> cache;
+
+	@Autowired
+	public UserCache(@Value("${keepnote.user.cache.maximum-size:10000}") long maximumSize,
+			@Value("${keepnote.user.cache.ttl:60}") long ttl) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(ttl, TimeUnit.SECONDS)
+				.recordStats()
+				.build();
+	}
+
+	/*
+	 * This method returns the cached user, or loads it with the given loader. A
+	 * user which does not exist (null) is not cached.
+	 */
+	public User get(String userId, Function<String, User> loader) {
+		return this.cache.get(userId, loader);
+	}
+
+	public void invalidate(String userId) {
+		this.cache.invalidate(userId);
+	}
+
+	public Cache<String, User> getCache() {
+		return this.cache;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, this.cache, "users");
+	}
+
+}
@@ -15,6 +15,8 @@ public interface UserService {
 
 	    User updateUser(String userId,User user) throws UserNotFoundException;
 
+	    User patchUser(String userId, User user) throws UserNotFoundException;
+
 	    boolean deleteUser(String userId) throws UserNotFoundException;
 
 
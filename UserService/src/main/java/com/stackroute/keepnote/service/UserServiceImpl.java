@@ -1,14 +1,17 @@
 package com.stackroute.keepnote.service;
 
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.stackroute.keepnote.exceptions.UserAlreadyExistsException;
 import com.stackroute.keepnote.exceptions.UserNotFoundException;
 import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.model.UserDeletion;
+import com.stackroute.keepnote.repository.UserDeletionRepository;
 import com.stackroute.keepnote.repository.UserRepository;
 
 /*
@@ -30,13 +33,38 @@ public class UserServiceImpl implements UserService {
 	 */
 	@Autowired
 	private UserRepository userRepository;
+
+	/*
+	 * Users read by getUserById are kept in UserCache. Every write below
+	 * invalidates the user after the database has been updated.
+	 */
+	@Autowired
+	private UserCache userCache;
+
+	/*
+	 * A deleted user is recorded in the UserDeletion outbox for the services
+	 * named in keepnote.user.deletions.consumers, which purge its data.
+	 */
+	@Autowired
+	private UserDeletionRepository userDeletionRepository;
+
+	@Value("${keepnote.user.deletions.consumers:notes,categories,reminders}")
+	private String[] deletionConsumers = { "notes", "categories", "reminders" };
+
 	/*
 	 * This method should be used to save a new user.Call the corresponding
 	 * method of Respository interface.
+	 * 
+	 * A userId whose data is still being purged cannot be registered again, as
+	 * the purge would remove the data of the new user.
 	 */
 
 	public User registerUser(User user) throws UserAlreadyExistsException {
+		if (this.userDeletionRepository.existsById(user.getUserId())) {
+			throw new UserAlreadyExistsException("User is still being deleted");
+		}
 		User currentUser = this.userRepository.save(user);
+		this.userCache.invalidate(user.getUserId());
 		if (currentUser != null) {
 			return currentUser;
 		} else {
@@ -47,6 +75,9 @@ public class UserServiceImpl implements UserService {
 	/*
 	 * This method should be used to update a existing user.Call the
 	 * corresponding method of Respository interface.
+	 * 
+	 * The user found by getUserById may be shared through UserCache, so it is not
+	 * modified; the updated user is saved as a new object.
 	 */
 
 	public User updateUser(String userId,User user) throws UserNotFoundException {
@@ -54,34 +85,62 @@ public class UserServiceImpl implements UserService {
 		User currentUser = this.getUserById(userId);
 		if (currentUser != null) {
 			try{
-				currentUser.setUserName(user.getUserName());
-				currentUser.setUserPassword(user.getUserPassword());
-				currentUser.setUserMobile(user.getUserMobile());
-				currentUser.setUserAddedDate(new Date());
-				currentUser=this.userRepository.save(currentUser);
+				currentUser = this.userRepository.save(new User(currentUser.getUserId(), user.getUserName(),
+						user.getUserPassword(), user.getUserMobile(), new Date()));
 			return currentUser;
 			}catch(Exception e){
 				throw e;
+			} finally {
+				this.userCache.invalidate(userId);
 			}
 		} else {
 			throw new UserNotFoundException("User was not found");
 		}
 	}
 
+	/*
+	 * This method should be used to change only the fields of an existing user
+	 * which are given (not null) in user. The user is not read before; the
+	 * repository sets the fields in one update and returns the updated user.
+	 */
+
+	public User patchUser(String userId, User user) throws UserNotFoundException {
+
+		User currentUser;
+		try {
+			currentUser = this.userRepository.patchUser(userId, user);
+		} finally {
+			this.userCache.invalidate(userId);
+		}
+		if (currentUser == null) {
+			throw new UserNotFoundException("User was not found");
+		}
+		return currentUser;
+	}
+
 	/*
 	 * This method should be used to delete an existing user. Call the
 	 * corresponding method of Respository interface.
+	 * 
+	 * The UserDeletion event is written before the user is removed, so a user
+	 * is never gone without its data being purged; when the user cannot be
+	 * removed, the event is withdrawn again. The purge itself runs later in the
+	 * other services, so the request does not wait for it.
 	 */
 
 	public boolean deleteUser(String userId) throws UserNotFoundException {
 
 		User currentUser = this.getUserById(userId);
 		if (currentUser != null) {
+			this.userDeletionRepository.save(new UserDeletion(userId, new Date(), Arrays.asList(this.deletionConsumers)));
 			try{
 			this.userRepository.delete(currentUser);
 			return true;
 			}catch(Exception e){
+				this.userDeletionRepository.deleteById(userId);
 				throw e;
+			} finally {
+				this.userCache.invalidate(userId);
 			}
 		} else {
 			throw new UserNotFoundException("User was not found");
@@ -92,12 +151,17 @@ public class UserServiceImpl implements UserService {
 	/*
 	 * This method should be used to get a user by userId.Call the corresponding
 	 * method of Respository interface.
+	 * 
+	 * The user is only read from the database when it is not in UserCache.
 	 */
 
 	public User getUserById(String userId) throws UserNotFoundException {
 
-		Optional<User> result = this.userRepository.findById(userId);
-		 return result.orElseThrow(() -> new UserNotFoundException(userId));
+		User user = this.userCache.get(userId, key -> this.userRepository.findById(key).orElse(null));
+		if (user == null) {
+			throw new UserNotFoundException(userId);
+		}
+		return user;
 	}
 
 }
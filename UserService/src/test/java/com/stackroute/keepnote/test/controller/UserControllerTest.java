@@ -5,6 +5,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -102,6 +103,24 @@ public class UserControllerTest {
 
     }
 
+    @Test
+    public void patchUserSuccess() throws Exception {
+        when(userService.patchUser(eq(user.getUserId()), any())).thenReturn(user);
+        mockMvc.perform(patch("/api/v1/user/Jhon123")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"userMobile\":\"9000000000\"}"))
+                .andExpect(status().isOk()).andDo(MockMvcResultHandlers.print());
+
+    }
+
+    @Test
+    public void patchUserFailure() throws Exception {
+        when(userService.patchUser(eq(user.getUserId()), any())).thenThrow(UserNotFoundException.class);
+        mockMvc.perform(patch("/api/v1/user/Jhon123")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"userMobile\":\"9000000000\"}"))
+                .andExpect(status().isNotFound()).andDo(MockMvcResultHandlers.print());
+
+    }
+
     @Test
     public void deleteUserSuccess() throws Exception {
         when(userService.deleteUser("Jhon123")).thenReturn(true);
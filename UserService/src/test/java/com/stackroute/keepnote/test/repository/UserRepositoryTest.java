@@ -76,4 +76,25 @@ public class UserRepositoryTest {
         Assert.assertEquals(user.getUserId(),fetcheduser.getUserId());
 
     }
+
+    @Test
+    public void patchUserTest() {
+        user.setUserAddedDate(new Date(0));
+        userRepository.insert(user);
+        User changes = new User();
+        changes.setUserMobile("9000000000");
+        User patcheduser = userRepository.patchUser("Jhon123", changes);
+        Assert.assertEquals("9000000000", patcheduser.getUserMobile());
+        Assert.assertTrue(patcheduser.getUserAddedDate().after(new Date(0)));
+        Assert.assertEquals("Jhon Simon", patcheduser.getUserName());
+        Assert.assertEquals("123456", userRepository.findById("Jhon123").get().getUserPassword());
+        Assert.assertNull(userRepository.patchUser("Unknown", changes));
+    }
+
+    @Test
+    public void patchUserWithoutChangesKeepsDate() {
+        user.setUserAddedDate(new Date(0));
+        userRepository.insert(user);
+        Assert.assertEquals(new Date(0), userRepository.patchUser("Jhon123", new User()).getUserAddedDate());
+    }
 }
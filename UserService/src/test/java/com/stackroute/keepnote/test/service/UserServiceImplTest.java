@@ -2,22 +2,31 @@ package com.stackroute.keepnote.test.service;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 import com.stackroute.keepnote.exceptions.UserNotFoundException;
+import com.stackroute.keepnote.service.UserCache;
 import com.stackroute.keepnote.service.UserServiceImpl;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import com.stackroute.keepnote.exceptions.UserAlreadyExistsException;
 import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.model.UserDeletion;
+import com.stackroute.keepnote.repository.UserDeletionRepository;
 import com.stackroute.keepnote.repository.UserRepository;
 
 
@@ -27,6 +36,12 @@ public class UserServiceImplTest {
     @Mock
     UserRepository userRepository;
 
+    @Mock
+    UserDeletionRepository userDeletionRepository;
+
+    @Spy
+    UserCache userCache = new UserCache(100, 60);
+
 
     User user;
 
@@ -97,5 +112,117 @@ public class UserServiceImplTest {
 
     }
 
+    @Test
+    public void getUserByIdCached() throws UserNotFoundException {
+
+        when(userRepository.findById(user.getUserId())).thenReturn(options);
+
+        userService.getUserById(user.getUserId());
+        User fetchedUser = userService.getUserById(user.getUserId());
+
+        assertEquals(user, fetchedUser);
+        verify(userRepository, times(1)).findById(user.getUserId());
+        assertEquals(1, userCache.getCache().stats().hitCount());
+    }
+
+    @Test
+    public void getUserByIdNotFoundNotCached() throws UserNotFoundException {
+
+        when(userRepository.findById(user.getUserId())).thenReturn(Optional.empty());
+        try {
+            userService.getUserById(user.getUserId());
+            fail("an unknown user has to be reported");
+        } catch (UserNotFoundException e) {
+            // expected
+        }
+
+        when(userRepository.findById(user.getUserId())).thenReturn(options);
+        assertEquals(user, userService.getUserById(user.getUserId()));
+    }
+
+    @Test
+    public void updateUserInvalidatesCache() throws UserNotFoundException {
+
+        when(userRepository.findById(user.getUserId())).thenReturn(options);
+        when(userRepository.save((User) any())).thenAnswer(invocation -> invocation.getArgument(0));
+        userService.getUserById(user.getUserId());
+
+        User update = new User(user.getUserId(), "johnny", "johnpass", "9876543210", null);
+        User updated = userService.updateUser(user.getUserId(), update);
+
+        assertEquals("9876543210", updated.getUserMobile());
+        assertEquals("1234567789", user.getUserMobile());
+        assertNull(userCache.getCache().getIfPresent(user.getUserId()));
+    }
+
+    @Test
+    public void deleteUserInvalidatesCache() throws UserNotFoundException {
+
+        when(userRepository.findById(user.getUserId())).thenReturn(options);
+        userService.getUserById(user.getUserId());
+
+        userService.deleteUser(user.getUserId());
+
+        assertNull(userCache.getCache().getIfPresent(user.getUserId()));
+    }
+
+    @Test
+    public void patchUser() throws UserNotFoundException {
+
+        when(userRepository.findById(user.getUserId())).thenReturn(options);
+        userService.getUserById(user.getUserId());
+        User changes = new User();
+        changes.setUserMobile("9876543210");
+        User patched = new User(user.getUserId(), user.getUserName(), user.getUserPassword(), "9876543210",
+                user.getUserAddedDate());
+        when(userRepository.patchUser(user.getUserId(), changes)).thenReturn(patched);
+
+        assertEquals("9876543210", userService.patchUser(user.getUserId(), changes).getUserMobile());
+        verify(userRepository, times(0)).save((User) any());
+        assertNull(userCache.getCache().getIfPresent(user.getUserId()));
+    }
+
+    @Test(expected = UserNotFoundException.class)
+    public void patchUserNotFound() throws UserNotFoundException {
+
+        when(userRepository.patchUser(any(), any())).thenReturn(null);
+        userService.patchUser(user.getUserId(), new User());
+    }
+
+    @Test
+    public void deleteUserRecordsDeletion() throws UserNotFoundException {
+
+        when(userRepository.findById(user.getUserId())).thenReturn(options);
+        ArgumentCaptor<UserDeletion> deletion = ArgumentCaptor.forClass(UserDeletion.class);
+
+        assertTrue(userService.deleteUser(user.getUserId()));
+
+        verify(userDeletionRepository).save(deletion.capture());
+        assertEquals(user.getUserId(), deletion.getValue().getUserId());
+        assertEquals(Arrays.asList("notes", "categories", "reminders"), deletion.getValue().getPending());
+        verify(userRepository).delete(user);
+    }
+
+    @Test
+    public void deleteUserWithdrawsDeletionOnError() throws UserNotFoundException {
+
+        when(userRepository.findById(user.getUserId())).thenReturn(options);
+        doThrow(new IllegalStateException()).when(userRepository).delete(user);
+        try {
+            userService.deleteUser(user.getUserId());
+            fail("the error of the repository has to be passed on");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        verify(userDeletionRepository).deleteById(user.getUserId());
+    }
+
+    @Test(expected = UserAlreadyExistsException.class)
+    public void registerUserWhileDeletionPending() throws UserAlreadyExistsException {
+
+        when(userDeletionRepository.existsById(user.getUserId())).thenReturn(true);
+        userService.registerUser(user);
+    }
 
-}
\ No newline at end of file
+}
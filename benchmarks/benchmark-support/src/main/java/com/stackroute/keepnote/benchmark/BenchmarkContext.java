@@ -0,0 +1,69 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.mongodb.MongoClientURI;
+import com.mongodb.ServerAddress;
+
+/*
+ * This class starts the application of the service under benchmark, so the
+ * benchmarks call the real service beans with the real repositories and caches, as
+ * configured in the application.yml of the service. The web server listens on a
+ * free port, since Swagger needs the web context, but is not used.
+ *
+ * MongoDB is started embedded on a free port (flapdoodle), unless the system property
+ * keepnote.benchmark.mongodb.uri points to a running MongoDB, e.g.
+ * -Dkeepnote.benchmark.mongodb.uri=mongodb://localhost:27017/benchmark. A benchmark
+ * against a real server gives the more meaningful numbers; the embedded one needs no
+ * setup and is good for comparing two versions of the code.
+ */
+public final class BenchmarkContext {
+
+	public static final String MONGODB_URI = "keepnote.benchmark.mongodb.uri";
+
+	private static final String EMBEDDED_MONGO_AUTO_CONFIGURATION = "org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration";
+
+	private BenchmarkContext() {
+	}
+
+	/*
+	 * This method starts the given Spring Boot application. The properties
+	 * ("name=value") override the configuration of the service, e.g. to disable a
+	 * cache for a benchmark.
+	 */
+	public static ConfigurableApplicationContext start(Class<?> application, String... properties) {
+		Map<String, Object> all = new LinkedHashMap<>();
+		all.put("logging.level.root", "WARN");
+		all.put("spring.main.banner-mode", "off");
+		all.put("server.port", "0");
+		String uri = System.getProperty(MONGODB_URI);
+		if (uri != null && !uri.isEmpty()) {
+			/* application.yml sets host and port, which Spring Boot does not allow together with a uri */
+			MongoClientURI mongoUri = new MongoClientURI(uri);
+			ServerAddress server = new ServerAddress(mongoUri.getHosts().get(0));
+			all.put("spring.data.mongodb.host", server.getHost());
+			all.put("spring.data.mongodb.port", String.valueOf(server.getPort()));
+			if (mongoUri.getDatabase() != null) {
+				all.put("spring.data.mongodb.database", mongoUri.getDatabase());
+			}
+			all.put("spring.autoconfigure.exclude", EMBEDDED_MONGO_AUTO_CONFIGURATION);
+		} else {
+			all.put("spring.data.mongodb.port", "0");
+		}
+		for (String property : properties) {
+			int separator = property.indexOf('=');
+			all.put(property.substring(0, separator), property.substring(separator + 1));
+		}
+		/* the first property source, which takes precedence over application.yml */
+		StandardEnvironment environment = new StandardEnvironment();
+		environment.getPropertySources().addFirst(new MapPropertySource("benchmark", all));
+		return new SpringApplicationBuilder(application).environment(environment).run();
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.stackroute.keepnote.CategoryServiceApplication;
+import com.stackroute.keepnote.exception.CategoryDoesNoteExistsException;
+import com.stackroute.keepnote.exception.CategoryNotCreatedException;
+import com.stackroute.keepnote.exception.CategoryNotFoundException;
+import com.stackroute.keepnote.model.Category;
+import com.stackroute.keepnote.repository.CategoryRepository;
+import com.stackroute.keepnote.service.CategoryService;
+
+/*
+ * This class measures CategoryServiceImpl against MongoDB. The collection holds
+ * the categories of `users` users with categoriesPerUser categories each, and the
+ * benchmarks work on the categories of one of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CategoryServiceBenchmark {
+
+	private static final String USER = "user0";
+
+	@Param({ "10", "100", "1000" })
+	public int categoriesPerUser;
+
+	@Param({ "100" })
+	public int users;
+
+	private ConfigurableApplicationContext context;
+	private CategoryService categoryService;
+	private CategoryRepository categoryRepository;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start(CategoryServiceApplication.class);
+		this.categoryService = this.context.getBean(CategoryService.class);
+		this.categoryRepository = this.context.getBean(CategoryRepository.class);
+		this.categoryRepository.deleteAll();
+		for (int user = 0; user < this.users; user++) {
+			List<Category> categories = new ArrayList<>();
+			for (int category = 0; category < this.categoriesPerUser; category++) {
+				categories.add(category("user" + user, category));
+			}
+			this.categoryRepository.insert(categories);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.categoryRepository.deleteAll();
+		this.context.close();
+	}
+
+	@Benchmark
+	public boolean createAndDeleteCategory() throws CategoryNotCreatedException, CategoryDoesNoteExistsException {
+		Category category = this.categoryService.createCategory(category(USER, -1));
+		return this.categoryService.deleteCategory(category.getId());
+	}
+
+	@Benchmark
+	public Category updateCategory() {
+		Category category = category(USER, randomCategory());
+		category.setCategoryDescription("updated");
+		return this.categoryService.updateCategory(category, category.getId());
+	}
+
+	@Benchmark
+	public Category getCategoryById() throws CategoryNotFoundException {
+		return this.categoryService.getCategoryById(categoryId(USER, randomCategory()));
+	}
+
+	@Benchmark
+	public List<Category> getAllCategoryByUserId() {
+		return this.categoryService.getAllCategoryByUserId(USER);
+	}
+
+	private int randomCategory() {
+		return ThreadLocalRandom.current().nextInt(this.categoriesPerUser);
+	}
+
+	/* A negative number gets a fresh id, so the category is created rather than replaced. */
+	private static Category category(String userId, int category) {
+		String categoryId = category < 0 ? null : categoryId(userId, category);
+		return new Category(categoryId, "category " + category, "description of category " + category, new Date(),
+				userId);
+	}
+
+	private static String categoryId(String userId, int category) {
+		return userId + "-" + category;
+	}
+
+}
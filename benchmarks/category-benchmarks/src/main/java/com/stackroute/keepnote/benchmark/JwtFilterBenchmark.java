@@ -0,0 +1,133 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.stackroute.keepnote.jwtfilter.JwtClaimsCache;
+import com.stackroute.keepnote.jwtfilter.JwtFilter;
+import com.stackroute.keepnote.jwtfilter.JwtKeyResolver;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+/*
+ * This class measures the throughput of JwtFilter with and without the cache of
+ * verified claims. The requests carry one of `tokens` distinct tokens, signed
+ * with the shared secret (HS512) or with a key pair of the key set of
+ * UserAuthenticationService (ES256, verified through JwtKeyResolver), and are
+ * passed to a chain which does nothing, so only the filter is measured.
+ *
+ * The tokens hold the compact claims UserAuthenticationController issues (sub,
+ * iat, exp and rol), or the claims it issued before (sub, exp, UserId and
+ * password).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+	private static final String SECRET = "SecretKeyToGenJWTs";
+	private static final String KEY_ID = "key1";
+	private static final FilterChain CHAIN = (request, response) -> {
+	};
+
+	@Param({ "1", "1000" })
+	public int tokens;
+
+	@Param({ "HS512", "ES256" })
+	public String algorithm;
+
+	@Param({ "compact", "legacy" })
+	public String claims;
+
+	private JwtFilter uncached;
+	private JwtFilter cached;
+	private MockHttpServletRequest[] requests;
+
+	@Setup(Level.Trial)
+	public void setUp() throws GeneralSecurityException {
+		JwtBuilder signer;
+		if ("ES256".equals(this.algorithm)) {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+			generator.initialize(new ECGenParameterSpec("secp256r1"));
+			KeyPair keyPair = generator.generateKeyPair();
+			Map<String, PublicKey> keys = Collections.singletonMap(KEY_ID, keyPair.getPublic());
+			JwtKeyResolver resolver = new JwtKeyResolver(() -> keys, 60);
+			this.uncached = new JwtFilter(resolver, null);
+			this.cached = new JwtFilter(resolver, new JwtClaimsCache(100000, 600));
+			signer = Jwts.builder().setHeaderParam(JwsHeader.KEY_ID, KEY_ID)
+					.signWith(SignatureAlgorithm.ES256, keyPair.getPrivate());
+		} else {
+			this.uncached = new JwtFilter(SECRET);
+			this.cached = new JwtFilter(SECRET, new JwtClaimsCache(100000, 600));
+			signer = Jwts.builder().signWith(SignatureAlgorithm.HS512, SECRET);
+		}
+		this.requests = new MockHttpServletRequest[this.tokens];
+		for (int token = 0; token < this.tokens; token++) {
+			this.requests[token] = new MockHttpServletRequest();
+			this.requests[token].addHeader(JwtFilter.AUTHORIZATION, "Bearer " + token(signer, "user" + token));
+		}
+	}
+
+	@Benchmark
+	public MockHttpServletRequest uncachedFilter() throws IOException, ServletException {
+		return filter(this.uncached);
+	}
+
+	@Benchmark
+	public MockHttpServletRequest cachedFilter() throws IOException, ServletException {
+		return filter(this.cached);
+	}
+
+	private MockHttpServletRequest filter(JwtFilter filter) throws IOException, ServletException {
+		MockHttpServletRequest request = this.requests[ThreadLocalRandom.current().nextInt(this.tokens)];
+		filter.doFilter(request, new MockHttpServletResponse(), CHAIN);
+		return request;
+	}
+
+	private String token(JwtBuilder signer, String userId) {
+		long now = System.currentTimeMillis();
+		Claims claims = Jwts.claims().setSubject(userId).setExpiration(new Date(now + TimeUnit.DAYS.toMillis(10)));
+		if ("legacy".equals(this.claims)) {
+			claims.put("UserId", userId);
+			claims.put("password", "password of " + userId);
+		} else {
+			claims.setIssuedAt(new Date(now)).put("rol", "Admin");
+		}
+		return signer.setClaims(claims).compact();
+	}
+
+}
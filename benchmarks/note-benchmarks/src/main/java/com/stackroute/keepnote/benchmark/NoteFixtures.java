@@ -0,0 +1,49 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.util.Date;
+import java.util.Random;
+
+import com.stackroute.keepnote.model.Note;
+
+/*
+ * This class generates the notes of the benchmarks. Titles and contents are drawn
+ * from a fixed vocabulary with a seeded Random, so every run indexes and searches
+ * the same text and the results of two runs can be compared.
+ */
+final class NoteFixtures {
+
+	static final int VOCABULARY_SIZE = 5000;
+	static final int TITLE_WORDS = 5;
+	static final int CONTENT_WORDS = 60;
+
+	private NoteFixtures() {
+	}
+
+	/* Words "w0".."w4999"; every search term of the benchmarks is one of them. */
+	static String word(int index) {
+		return "w" + index;
+	}
+
+	static Note note(String userId, int noteId, Random random) {
+		Note note = new Note();
+		note.setNoteId(noteId);
+		note.setNoteTitle(text(TITLE_WORDS, random));
+		note.setNoteContent(text(CONTENT_WORDS, random));
+		note.setNoteStatus("active");
+		note.setNoteCreationDate(new Date());
+		note.setNoteCreatedBy(userId);
+		return note;
+	}
+
+	private static String text(int words, Random random) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				text.append(' ');
+			}
+			text.append(word(random.nextInt(VOCABULARY_SIZE)));
+		}
+		return text.toString();
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.service.NoteIndex;
+
+/*
+ * This class measures the search latency of NoteIndex over a large on-disk index,
+ * without MongoDB. The notes are spread evenly over the given number of users,
+ * and every search is one of a user's searches, so it only ranks that user's
+ * notes while the index holds all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class NoteIndexBenchmark {
+
+	private static final int RESULT_SIZE = 20;
+
+	@Param({ "1000000" })
+	public int notes;
+
+	@Param({ "1000" })
+	public int users;
+
+	private Path directory;
+	private NoteIndex noteIndex;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("note-index-benchmark");
+		this.noteIndex = new NoteIndex(FSDirectory.open(this.directory));
+		this.noteIndex.rebuild(new Iterator<Note>() {
+
+			private final Random random = new Random(notes);
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.next < notes;
+			}
+
+			@Override
+			public Note next() {
+				int note = this.next++;
+				return NoteFixtures.note(user(note % users), 1 + note / users, this.random);
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.noteIndex.close();
+		try (Stream<Path> files = Files.walk(this.directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public List<Note> searchWord() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return this.noteIndex.search(user(random.nextInt(this.users)),
+				NoteFixtures.word(random.nextInt(NoteFixtures.VOCABULARY_SIZE)), RESULT_SIZE);
+	}
+
+	@Benchmark
+	public List<Note> searchTwoWords() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return this.noteIndex.search(user(random.nextInt(this.users)),
+				NoteFixtures.word(random.nextInt(NoteFixtures.VOCABULARY_SIZE)) + " "
+						+ NoteFixtures.word(random.nextInt(NoteFixtures.VOCABULARY_SIZE)), RESULT_SIZE);
+	}
+
+	/* "w12*" matches w12 and w120..w129, w1200..w1299 */
+	@Benchmark
+	public List<Note> searchPrefix() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return this.noteIndex.search(user(random.nextInt(this.users)),
+				NoteFixtures.word(10 + random.nextInt(90)) + "*", RESULT_SIZE);
+	}
+
+	private static String user(int user) {
+		return "user" + user;
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.util.CloseableIterator;
+
+import com.stackroute.keepnote.NoteServiceApplication;
+import com.stackroute.keepnote.exception.NoteNotFoundExeption;
+import com.stackroute.keepnote.exception.NoteVersionConflictException;
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.service.NoteCache;
+import com.stackroute.keepnote.service.NoteService;
+
+/*
+ * This class measures NoteServiceImpl against MongoDB for users with a growing
+ * number of notes (notesPerUser), in both storage layouts. A cost which grows
+ * with notesPerUser means that an operation reads or writes more than the one
+ * note it is about.
+ *
+ * getNoteByNoteId evicts the note from the note cache first, so it measures the
+ * database read; getCachedNoteByNoteId reads the notes through the warm cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoteServiceBenchmark {
+
+	private static final String USER = "benchmark-user";
+	private static final int SEED_BATCH_SIZE = 500;
+	private static final int PAGE_SIZE = 20;
+
+	@Param({ "10", "1000", "10000" })
+	public int notesPerUser;
+
+	@Param({ "embedded", "document" })
+	public String storage;
+
+	private ConfigurableApplicationContext context;
+	private NoteService noteService;
+	private NoteCache noteCache;
+
+	@Setup(Level.Trial)
+	public void setUp() throws NoteNotFoundExeption {
+		this.context = BenchmarkContext.start(NoteServiceApplication.class,
+				"keepnote.note.storage=" + this.storage,
+				"keepnote.note.search.directory=");
+		this.noteService = this.context.getBean(NoteService.class);
+		this.noteCache = this.context.getBean(NoteCache.class);
+		try {
+			this.noteService.deleteAllNotes(USER);
+		} catch (NoteNotFoundExeption e) {
+			// nothing left over from a previous run
+		}
+		Random random = new Random(this.notesPerUser);
+		List<Note> batch = new ArrayList<>();
+		for (int noteId = 1; noteId <= this.notesPerUser; noteId++) {
+			batch.add(NoteFixtures.note(USER, noteId, random));
+			if (batch.size() == SEED_BATCH_SIZE || noteId == this.notesPerUser) {
+				this.noteService.createNotes(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws NoteNotFoundExeption {
+		this.noteService.deleteAllNotes(USER);
+		this.context.close();
+	}
+
+	@Benchmark
+	public boolean createAndDeleteNote() {
+		Note note = NoteFixtures.note(USER, 0, ThreadLocalRandom.current());
+		this.noteService.createNote(note);
+		return this.noteService.deleteNote(USER, note.getNoteId());
+	}
+
+	@Benchmark
+	public Note updateNote() throws NoteNotFoundExeption, NoteVersionConflictException {
+		Note update = new Note();
+		update.setNoteStatus("updated");
+		return this.noteService.updateNote(update, randomNoteId(), USER);
+	}
+
+	@Benchmark
+	public Note getNoteByNoteId() throws NoteNotFoundExeption {
+		int noteId = randomNoteId();
+		this.noteCache.invalidate(USER, noteId);
+		return this.noteService.getNoteByNoteId(USER, noteId);
+	}
+
+	@Benchmark
+	public Note getCachedNoteByNoteId() throws NoteNotFoundExeption {
+		return this.noteService.getNoteByNoteId(USER, randomNoteId());
+	}
+
+	@Benchmark
+	public void getFirstNotePage(Blackhole blackhole) {
+		try (CloseableIterator<Note> page = this.noteService.getNotePageByUserId(USER, 0, PAGE_SIZE)) {
+			page.forEachRemaining(blackhole::consume);
+		}
+	}
+
+	@Benchmark
+	public List<Note> searchNotes() {
+		int word = ThreadLocalRandom.current().nextInt(NoteFixtures.VOCABULARY_SIZE);
+		return this.noteService.searchNotes(USER, NoteFixtures.word(word), PAGE_SIZE);
+	}
+
+	private int randomNoteId() {
+		return 1 + ThreadLocalRandom.current().nextInt(this.notesPerUser);
+	}
+
+}
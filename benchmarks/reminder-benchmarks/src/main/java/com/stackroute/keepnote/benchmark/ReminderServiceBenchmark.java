@@ -0,0 +1,130 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.util.CloseableIterator;
+
+import com.stackroute.keepnote.ReminderServiceApplication;
+import com.stackroute.keepnote.exception.ReminderNotCreatedException;
+import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.model.Reminder;
+import com.stackroute.keepnote.repository.ReminderRepository;
+import com.stackroute.keepnote.service.ReminderService;
+
+/*
+ * This class measures ReminderServiceImpl against MongoDB. The collection holds
+ * `reminders` reminders, spread over remindersPerUser reminders per user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReminderServiceBenchmark {
+
+	@Param({ "100", "10000" })
+	public int reminders;
+
+	@Param({ "10" })
+	public int remindersPerUser;
+
+	private ConfigurableApplicationContext context;
+	private ReminderService reminderService;
+	private ReminderRepository reminderRepository;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start(ReminderServiceApplication.class);
+		this.reminderService = this.context.getBean(ReminderService.class);
+		this.reminderRepository = this.context.getBean(ReminderRepository.class);
+		this.reminderRepository.deleteAll();
+		List<Reminder> all = new ArrayList<>();
+		for (int reminder = 0; reminder < this.reminders; reminder++) {
+			all.add(reminder(reminder));
+		}
+		this.reminderRepository.insert(all);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.reminderRepository.deleteAll();
+		this.context.close();
+	}
+
+	@Benchmark
+	public boolean createAndDeleteReminder() throws ReminderNotCreatedException, ReminderNotFoundException {
+		Reminder reminder = reminder(this.reminders);
+		reminder.setReminderId(null);
+		return this.reminderService.deleteReminder(this.reminderService.createReminder(reminder).getReminderId());
+	}
+
+	@Benchmark
+	public Reminder updateReminder() throws ReminderNotFoundException {
+		Reminder reminder = reminder(randomReminder());
+		reminder.setReminderDescription("updated");
+		return this.reminderService.updateReminder(reminder, reminder.getReminderId());
+	}
+
+	@Benchmark
+	public Reminder getReminderById() throws ReminderNotFoundException {
+		return this.reminderService.getReminderById(reminderId(randomReminder()));
+	}
+
+	@Benchmark
+	public List<Reminder> getAllReminders() {
+		return this.reminderService.getAllReminders();
+	}
+
+	/* The first page of the reminders of one user, as listed by the controller. */
+	@Benchmark
+	public int getReminderPageByUserId() {
+		int count = 0;
+		try (CloseableIterator<Reminder> page = this.reminderService.getReminderPageByUserId(
+				"user" + randomReminder() / this.remindersPerUser, null, null, 20)) {
+			while (page.hasNext()) {
+				page.next();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int randomReminder() {
+		return ThreadLocalRandom.current().nextInt(this.reminders);
+	}
+
+	private Reminder reminder(int reminder) {
+		Reminder result = new Reminder();
+		result.setReminderId(reminderId(reminder));
+		result.setReminderName("reminder " + reminder);
+		result.setReminderDescription("description of reminder " + reminder);
+		result.setReminderType("email");
+		result.setReminderCreatedBy("user" + reminder / this.remindersPerUser);
+		result.setReminderCreationDate(new Date());
+		return result;
+	}
+
+	private static String reminderId(int reminder) {
+		return "reminder-" + reminder;
+	}
+
+}
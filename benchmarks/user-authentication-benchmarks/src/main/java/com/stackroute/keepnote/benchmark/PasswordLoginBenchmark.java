@@ -0,0 +1,73 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.stackroute.keepnote.exception.UserNotFoundException;
+import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.service.UserAuthenticationService;
+
+/*
+ * This class measures the logins per second of UserAuthenticationServiceImpl
+ * for a bcrypt cost, with one benchmark thread per core, so the cost can be
+ * picked from the login rate the hardware has to sustain: logins per second
+ * and core is the score divided by the threads JMH reports in the run header.
+ *
+ * Logins which the password hashing pool rejects (PasswordHashingRejectedException)
+ * fail the benchmark, so keepnote.password.queue-size is raised above the
+ * number of benchmark threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(Threads.MAX)
+@Fork(1)
+public class PasswordLoginBenchmark {
+
+	private static final int USERS = 1000;
+
+	@Param({ "8", "10", "12" })
+	public int bcryptCost;
+
+	private ConfigurableApplicationContext context;
+	private UserAuthenticationService userAuthenticationService;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = UserAuthenticationServiceBenchmark.start(
+				"keepnote.password.bcrypt-cost=" + this.bcryptCost,
+				"keepnote.password.queue-size=1024");
+		this.userAuthenticationService = this.context.getBean(UserAuthenticationService.class);
+		UserAuthenticationServiceBenchmark.seed(this.context, USERS);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public User login() throws UserNotFoundException {
+		return this.userAuthenticationService.findByUserIdAndPassword(
+				"user" + ThreadLocalRandom.current().nextInt(USERS), UserAuthenticationServiceBenchmark.PASSWORD);
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.stackroute.keepnote.UserAuthenticationServiceApplication;
+import com.stackroute.keepnote.exception.UserAlreadyExistsException;
+import com.stackroute.keepnote.exception.UserNotFoundException;
+import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.repository.UserAutheticationRepository;
+import com.stackroute.keepnote.security.PasswordHasher;
+import com.stackroute.keepnote.service.UserAuthenticationService;
+
+/*
+ * This class measures UserAuthenticationServiceImpl against an in-memory H2
+ * database standing in for MySQL, with `users` registered users. The schema is
+ * created by Hibernate from the User entity, as with ddl-auto on MySQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserAuthenticationServiceBenchmark {
+
+	static final String PASSWORD = "password";
+	private static final int BULK_SIZE = 100;
+
+	@Param({ "1000", "10000" })
+	public int users;
+
+	private final AtomicLong registered = new AtomicLong();
+
+	private ConfigurableApplicationContext context;
+	private UserAuthenticationService userAuthenticationService;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = start();
+		this.userAuthenticationService = this.context.getBean(UserAuthenticationService.class);
+		seed(this.context, this.users);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public User findByUserIdAndPassword() throws UserNotFoundException {
+		return this.userAuthenticationService.findByUserIdAndPassword(
+				"user" + ThreadLocalRandom.current().nextInt(this.users), PASSWORD);
+	}
+
+	@Benchmark
+	public boolean saveUser() throws UserAlreadyExistsException {
+		return this.userAuthenticationService.saveUser(user("new" + this.registered.incrementAndGet()));
+	}
+
+	/* A bulk registration of BULK_SIZE new users, inserted in JDBC batches. */
+	@Benchmark
+	public List<String> saveUsers() throws UserAlreadyExistsException {
+		List<User> users = new ArrayList<>();
+		for (int user = 0; user < BULK_SIZE; user++) {
+			users.add(user("bulk" + this.registered.incrementAndGet()));
+		}
+		return this.userAuthenticationService.saveUsers(users);
+	}
+
+	/* Starts the service on H2 with the given extra properties. */
+	static ConfigurableApplicationContext start(String... properties) {
+		List<String> all = new ArrayList<>(Arrays.asList(
+				"spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+				"spring.datasource.driver-class-name=org.h2.Driver",
+				"spring.datasource.username=sa",
+				"spring.datasource.password=",
+				"spring.jpa.hibernate.ddl-auto=create-drop",
+				"spring.jpa.show-sql=false",
+				"spring.autoconfigure.exclude="
+						+ "org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration,"
+						+ "org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration,"
+						+ "org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration"));
+		all.addAll(Arrays.asList(properties));
+		return BenchmarkContext.start(UserAuthenticationServiceApplication.class, all.toArray(new String[0]));
+	}
+
+	/*
+	 * Registers user0 to user{users - 1}. The password is hashed once and stored
+	 * for all of them, as hashing it per user would take minutes at 10000 users.
+	 */
+	static void seed(ConfigurableApplicationContext context, int users) {
+		String hash = context.getBean(PasswordHasher.class).hash(PASSWORD);
+		List<User> all = new ArrayList<>();
+		for (int user = 0; user < users; user++) {
+			User registered = user("user" + user);
+			registered.setUserPassword(hash);
+			all.add(registered);
+		}
+		context.getBean(UserAutheticationRepository.class).saveAll(all);
+	}
+
+	static User user(String userId) {
+		User user = new User();
+		user.setUserId(userId);
+		user.setFirstName("first name of " + userId);
+		user.setLastName("last name of " + userId);
+		user.setUserPassword(PASSWORD);
+		user.setUserRole("user");
+		user.setUserAddedDate(new Date());
+		return user;
+	}
+
+}
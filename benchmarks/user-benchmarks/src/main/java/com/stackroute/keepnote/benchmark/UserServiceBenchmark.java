@@ -0,0 +1,98 @@
+package com.stackroute.keepnote.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.stackroute.keepnote.UserServiceApplication;
+import com.stackroute.keepnote.exceptions.UserAlreadyExistsException;
+import com.stackroute.keepnote.exceptions.UserNotFoundException;
+import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.repository.UserRepository;
+import com.stackroute.keepnote.service.UserService;
+
+/*
+ * This class measures UserServiceImpl against MongoDB with `users` registered
+ * users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int users;
+
+	private final AtomicLong registered = new AtomicLong();
+
+	private ConfigurableApplicationContext context;
+	private UserService userService;
+	private UserRepository userRepository;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start(UserServiceApplication.class);
+		this.userService = this.context.getBean(UserService.class);
+		this.userRepository = this.context.getBean(UserRepository.class);
+		this.userRepository.deleteAll();
+		List<User> all = new ArrayList<>();
+		for (int user = 0; user < this.users; user++) {
+			all.add(user("user" + user));
+		}
+		this.userRepository.insert(all);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.userRepository.deleteAll();
+		this.context.close();
+	}
+
+	@Benchmark
+	public boolean registerAndDeleteUser() throws UserAlreadyExistsException, UserNotFoundException {
+		User user = this.userService.registerUser(user("new" + this.registered.incrementAndGet()));
+		return this.userService.deleteUser(user.getUserId());
+	}
+
+	@Benchmark
+	public User updateUser() throws UserNotFoundException {
+		User user = user(randomUserId());
+		user.setUserMobile("0000000000");
+		return this.userService.updateUser(user.getUserId(), user);
+	}
+
+	@Benchmark
+	public User getUserById() throws UserNotFoundException {
+		return this.userService.getUserById(randomUserId());
+	}
+
+	private String randomUserId() {
+		return "user" + ThreadLocalRandom.current().nextInt(this.users);
+	}
+
+	private static User user(String userId) {
+		return new User(userId, "name of " + userId, "password", "9999999999", new Date());
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.stackroute.keepnote.aspectj;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * This aspect writes one access log line per call of a controller handler and
+ * records its latency. It is shared by the services, whose component scan of
+ * com.stackroute.keepnote picks it up, and applies to their controllers in
+ * com.stackroute.keepnote.controller.
+ *
+ * The line is a parameterised message of key=value pairs, e.g.
+ * "handler=NoteController.getNote outcome=success status=200 durationMicros=850",
+ * so it is only formatted when the logger is enabled and can be parsed by log
+ * tools. It is written by the ASYNC appenders of logback.xml, which hand the
+ * event to a bounded queue and return; the file and console are written by a
+ * background thread, and events are dropped rather than blocking the request
+ * when the queue is full.
+ *
+ * Response bodies are only logged for a sample of the calls
+ * (keepnote.logging.body-sample-rate, 0 to 1) at DEBUG level, and cut after
+ * keepnote.logging.body-max-length characters, so a large list is not
+ * turned into a string on every request.
+ *
+ * The latency of every handler is recorded as the timer
+ * "keepnote.controller.requests" with the tags handler and outcome, with a
+ * percentile histogram (see /actuator/metrics). The outcome is error when the
+ * handler throws or answers with a status of 400 or above, as the controllers
+ * answer most failures with a ResponseEntity, and success otherwise.
+ */
+@Aspect
+@Component
+public class LoggingAspect {
+
+	public static final String TIMER = "keepnote.controller.requests";
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final MeterRegistry meterRegistry;
+	private final double bodySampleRate;
+	private final int bodyMaxLength;
+	private final ConcurrentMap<Method, Handler> handlers = new ConcurrentHashMap<>();
+
+	@Autowired
+	public LoggingAspect(MeterRegistry meterRegistry,
+			@Value("${keepnote.logging.body-sample-rate:0.01}") double bodySampleRate,
+			@Value("${keepnote.logging.body-max-length:1000}") int bodyMaxLength) {
+		this.meterRegistry = meterRegistry;
+		this.bodySampleRate = bodySampleRate;
+		this.bodyMaxLength = bodyMaxLength;
+	}
+
+	@Around("execution(* com.stackroute.keepnote.controller..*(..))")
+	public Object logHandler(ProceedingJoinPoint joinPoint) throws Throwable {
+		Handler handler = handler(joinPoint);
+		long started = System.nanoTime();
+		Object result;
+		try {
+			result = joinPoint.proceed();
+		} catch (Throwable error) {
+			long duration = System.nanoTime() - started;
+			handler.error.record(duration, TimeUnit.NANOSECONDS);
+			logger.warn("handler={} outcome=error error={} durationMicros={}", handler.name,
+					error.getClass().getSimpleName(), TimeUnit.NANOSECONDS.toMicros(duration));
+			throw error;
+		}
+		long duration = System.nanoTime() - started;
+		Object status = status(result);
+		boolean failed = status instanceof Integer && (Integer) status >= 400;
+		(failed ? handler.error : handler.success).record(duration, TimeUnit.NANOSECONDS);
+		if (logger.isInfoEnabled()) {
+			logger.info("handler={} outcome={} status={} durationMicros={}", handler.name,
+					failed ? "error" : "success", status, TimeUnit.NANOSECONDS.toMicros(duration));
+		}
+		if (logger.isDebugEnabled() && sampled()) {
+			logger.debug("handler={} body={}", handler.name, abbreviate(body(result)));
+		}
+		return result;
+	}
+
+	/* The name and timers of a handler are created on its first call. */
+	private Handler handler(ProceedingJoinPoint joinPoint) {
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		return this.handlers.computeIfAbsent(method,
+				key -> new Handler(key.getDeclaringClass().getSimpleName() + "." + key.getName()));
+	}
+
+	private boolean sampled() {
+		return this.bodySampleRate > 0 && ThreadLocalRandom.current().nextDouble() < this.bodySampleRate;
+	}
+
+	private String abbreviate(Object body) {
+		String text = String.valueOf(body);
+		if (text.length() <= this.bodyMaxLength) {
+			return text;
+		}
+		return text.substring(0, this.bodyMaxLength) + "...(" + text.length() + " chars)";
+	}
+
+	private static Object status(Object result) {
+		if (result instanceof ResponseEntity) {
+			return ((ResponseEntity<?>) result).getStatusCodeValue();
+		}
+		return "-";
+	}
+
+	private static Object body(Object result) {
+		if (result instanceof ResponseEntity) {
+			return ((ResponseEntity<?>) result).getBody();
+		}
+		return result;
+	}
+
+	private final class Handler {
+
+		private final String name;
+		private final Timer success;
+		private final Timer error;
+
+		private Handler(String name) {
+			this.name = name;
+			this.success = timer(name, "success");
+			this.error = timer(name, "error");
+		}
+
+		private Timer timer(String handler, String outcome) {
+			return Timer.builder(TIMER)
+					.description("Latency of the controller handlers")
+					.tag("handler", handler)
+					.tag("outcome", outcome)
+					.publishPercentileHistogram()
+					.register(meterRegistry);
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.stackroute.keepnote.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/*
+ * A controller of the tests of LoggingAspect, in the package its pointcut
+ * applies to: item 1 is found, item 2 fails and every other item is not found.
+ */
+public class ItemController {
+
+	public ResponseEntity<String> getItem(int itemId) {
+		if (itemId == 2) {
+			throw new IllegalStateException("item 2 fails");
+		}
+		if (itemId != 1) {
+			return new ResponseEntity<String>(HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<String>("Testing the logging aspect with item 1", HttpStatus.OK);
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.stackroute.keepnote.test.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpStatus;
+
+import com.stackroute.keepnote.aspectj.LoggingAspect;
+import com.stackroute.keepnote.controller.ItemController;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LoggingAspectTest {
+
+	private MeterRegistry meterRegistry;
+	private Logger logger;
+	private Level level;
+	private ListAppender<ILoggingEvent> events;
+
+	@Before
+	public void setUp() throws Exception {
+		meterRegistry = new SimpleMeterRegistry();
+		logger = (Logger) LoggerFactory.getLogger(LoggingAspect.class);
+		level = logger.getLevel();
+		logger.setLevel(Level.DEBUG);
+		events = new ListAppender<>();
+		events.start();
+		logger.addAppender(events);
+	}
+
+	@After
+	public void tearDown() {
+		logger.detachAppender(events);
+		logger.setLevel(level);
+	}
+
+	@Test
+	public void logAndTimeHandlerSuccess() throws Exception {
+		ItemController controller = controller(1.0);
+
+		assertEquals(HttpStatus.OK, controller.getItem(1).getStatusCode());
+
+		assertEquals(1, timer("success").count());
+		assertEquals(0, timer("error").count());
+		List<String> messages = messages();
+		assertEquals(2, messages.size());
+		assertTrue(messages.get(0).startsWith("handler=ItemController.getItem outcome=success status=200 durationMicros="));
+		assertTrue(messages.get(1).startsWith("handler=ItemController.getItem body="));
+		assertTrue(messages.get(1).endsWith("chars)"));
+	}
+
+	@Test
+	public void logAndTimeHandlerError() throws Exception {
+		ItemController controller = controller(1.0);
+
+		try {
+			controller.getItem(2);
+			fail("the error of the handler has to be passed on");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		assertEquals(0, timer("success").count());
+		assertEquals(1, timer("error").count());
+		assertEquals(Level.WARN, events.list.get(0).getLevel());
+		assertTrue(messages().get(0).startsWith("handler=ItemController.getItem outcome=error error=IllegalStateException"));
+	}
+
+	@Test
+	public void logAndTimeHandlerAnsweringError() throws Exception {
+		ItemController controller = controller(1.0);
+
+		assertEquals(HttpStatus.NOT_FOUND, controller.getItem(3).getStatusCode());
+
+		assertEquals(0, timer("success").count());
+		assertEquals(1, timer("error").count());
+		assertTrue(messages().get(0).startsWith("handler=ItemController.getItem outcome=error status=404 durationMicros="));
+	}
+
+	@Test
+	public void bodyNotLoggedWhenNotSampled() throws Exception {
+		ItemController controller = controller(0);
+
+		controller.getItem(1);
+		controller.getItem(1);
+
+		assertEquals(2, timer("success").count());
+		assertEquals(2, messages().size());
+		assertTrue(messages().stream().noneMatch(message -> message.contains("body=")));
+	}
+
+	private ItemController controller(double bodySampleRate) {
+		AspectJProxyFactory factory = new AspectJProxyFactory(new ItemController());
+		factory.setProxyTargetClass(true);
+		factory.addAspect(new LoggingAspect(meterRegistry, bodySampleRate, 20));
+		return factory.getProxy();
+	}
+
+	private Timer timer(String outcome) {
+		return meterRegistry.get(LoggingAspect.TIMER).tag("handler", "ItemController.getItem").tag("outcome", outcome)
+				.timer();
+	}
+
+	private List<String> messages() {
+		return events.list.stream().map(ILoggingEvent::getFormattedMessage).collect(Collectors.toList());
+	}
+
+}
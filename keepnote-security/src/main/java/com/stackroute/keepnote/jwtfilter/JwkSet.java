@@ -0,0 +1,81 @@
+package com.stackroute.keepnote.jwtfilter;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.web.client.RestTemplate;
+
+/*
+ * This class reads the JSON Web Key Set published by UserAuthentication-Service
+ * at /api/v1/auth/jwks, {"keys": [{"kty": "EC", "crv": "P-256", "kid": ..., "x": ...,
+ * "y": ...}]}, into the public keys by key id. Keys of other types or curves are
+ * skipped.
+ */
+public final class JwkSet {
+
+	private static final ECParameterSpec P_256 = p256();
+
+	private JwkSet() {
+	}
+
+	/* The returned supplier fetches the key set from uri on every call. */
+	public static Supplier<Map<String, PublicKey>> fetch(RestTemplate restTemplate, String uri) {
+		return () -> parse(restTemplate.getForObject(uri, Map.class));
+	}
+
+	public static Map<String, PublicKey> parse(Map<?, ?> jwks) {
+		Map<String, PublicKey> keys = new HashMap<>();
+		Object list = jwks == null ? null : jwks.get("keys");
+		if (list instanceof List) {
+			for (Object jwk : (List<?>) list) {
+				if (jwk instanceof Map && isP256((Map<?, ?>) jwk)) {
+					Map<?, ?> key = (Map<?, ?>) jwk;
+					keys.put((String) key.get("kid"), publicKey((String) key.get("x"), (String) key.get("y")));
+				}
+			}
+		}
+		return Collections.unmodifiableMap(keys);
+	}
+
+	private static boolean isP256(Map<?, ?> jwk) {
+		return "EC".equals(jwk.get("kty")) && "P-256".equals(jwk.get("crv")) && jwk.get("kid") instanceof String
+				&& jwk.get("x") instanceof String && jwk.get("y") instanceof String;
+	}
+
+	private static PublicKey publicKey(String x, String y) {
+		ECPoint point = new ECPoint(coordinate(x), coordinate(y));
+		try {
+			return KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, P_256));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalArgumentException("Not a P-256 public key", e);
+		}
+	}
+
+	private static BigInteger coordinate(String value) {
+		return new BigInteger(1, Base64.getUrlDecoder().decode(value));
+	}
+
+	private static ECParameterSpec p256() {
+		try {
+			AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+			parameters.init(new ECGenParameterSpec("secp256r1"));
+			return parameters.getParameterSpec(ECParameterSpec.class);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.stackroute.keepnote.jwtfilter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/*
+ * This class keeps the claims of recently verified tokens, so a client sending
+ * the same token again is not verified again. The token is sent with every
+ * request and is valid for days, so most requests hit the cache.
+ *
+ * The cache is keyed by the SHA-256 digest of the token rather than the token
+ * itself, which keeps the entries small and the tokens out of the heap. Only
+ * tokens whose signature was verified are added, and an entry expires with the
+ * "exp" claim of its token, or after keepnote.jwt.cache.maximum-ttl seconds,
+ * whichever comes first. At most keepnote.jwt.cache.maximum-size tokens are kept.
+ *
+ * Besides the "jwt" cache metrics, the time spent on verifications is published
+ * as the "keepnote.jwt.verification" counters, and the time saved by the hits as
+ * "keepnote.jwt.verification.saved" (the hits times the mean verification time).
+ *
+ * The cached claims are shared by all requests with the same token and must not
+ * be modified.
+ */
+public class JwtClaimsCache implements MeterBinder {
+
+	private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	private final Cache<ByteBuffer, Claims> cache;
+	private final LongAdder verifications = new LongAdder();
+	private final LongAdder verificationNanos = new LongAdder();
+	private final DoubleAdder savedNanos = new DoubleAdder();
+
+	public JwtClaimsCache(long maximumSize, long maximumTtlSeconds) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfter(new UntilExpiration(TimeUnit.SECONDS.toNanos(maximumTtlSeconds)))
+				.recordStats()
+				.build();
+	}
+
+	/*
+	 * This method returns the claims of the given token. When the token is not
+	 * cached, it is verified with the given verifier, which throws when the token is
+	 * not valid; an invalid token is never cached.
+	 */
+	public Claims get(String token, Function<String, Claims> verifier) {
+		ByteBuffer key = digest(token);
+		Claims claims = this.cache.getIfPresent(key);
+		if (claims != null) {
+			saved();
+			return claims;
+		}
+		return this.cache.get(key, digest -> verify(token, verifier));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, this.cache, "jwt");
+		FunctionCounter.builder("keepnote.jwt.verification", this.verifications, LongAdder::sum)
+				.description("Token signatures verified")
+				.register(registry);
+		FunctionCounter.builder("keepnote.jwt.verification.time", this.verificationNanos, LongAdder::sum)
+				.description("Time spent on verifying token signatures")
+				.baseUnit("nanoseconds")
+				.register(registry);
+		FunctionCounter.builder("keepnote.jwt.verification.saved", this.savedNanos, DoubleAdder::sum)
+				.description("Verification time saved by cached tokens")
+				.baseUnit("nanoseconds")
+				.register(registry);
+	}
+
+	public long verifications() {
+		return this.verifications.sum();
+	}
+
+	private Claims verify(String token, Function<String, Claims> verifier) {
+		long started = System.nanoTime();
+		Claims claims = verifier.apply(token);
+		this.verificationNanos.add(System.nanoTime() - started);
+		this.verifications.increment();
+		return claims;
+	}
+
+	/* A hit saves one verification, which is assumed to take the mean time. */
+	private void saved() {
+		long count = this.verifications.sum();
+		if (count > 0) {
+			this.savedNanos.add((double) this.verificationNanos.sum() / count);
+		}
+	}
+
+	private static ByteBuffer digest(String token) {
+		return ByteBuffer.wrap(SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	/* An entry lives until the expiration of its token, at most maximumTtl. */
+	private static final class UntilExpiration implements Expiry<ByteBuffer, Claims> {
+
+		private final long maximumTtlNanos;
+
+		private UntilExpiration(long maximumTtlNanos) {
+			this.maximumTtlNanos = maximumTtlNanos;
+		}
+
+		@Override
+		public long expireAfterCreate(ByteBuffer key, Claims claims, long currentTime) {
+			Date expiration = claims.getExpiration();
+			if (expiration == null) {
+				return this.maximumTtlNanos;
+			}
+			long untilExpiration = TimeUnit.MILLISECONDS.toNanos(expiration.getTime() - System.currentTimeMillis());
+			return Math.max(0, Math.min(untilExpiration, this.maximumTtlNanos));
+		}
+
+		@Override
+		public long expireAfterUpdate(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+
+		@Override
+		public long expireAfterRead(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.stackroute.keepnote.jwtfilter;
+
+import org.springframework.web.filter.GenericFilterBean;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolver;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/* This class implements the custom filter by extending org.springframework.web.filter.GenericFilterBean.
+ * Override the doFilter method with ServletRequest, ServletResponse and FilterChain.
+ * This is used to authorize the API access for the application.
+ *
+ * The filter is shared by all services and registered by JwtFilterAutoConfiguration.
+ */
+
+public class JwtFilter extends GenericFilterBean {
+	public static final String AUTHORIZATION = "Authorization";
+	public static final String WWW_AUTHENTICATE = "WWW-Authenticate";
+	private static final String BEARER = "Bearer ";
+	private static final String MISSING_TOKEN = "Bearer";
+	private static final String INVALID_TOKEN = "Bearer error=\"invalid_token\"";
+
+	private final JwtParser parser;
+	private final JwtClaimsCache claimsCache;
+	private final TokenRevocations revocations;
+
+	public JwtFilter(String secret) {
+		this(secret, null);
+	}
+
+	/*
+	 * The parser is built once for the secret and shared by all requests; it is
+	 * not modified after construction, so it is safe to use from many threads.
+	 *
+	 * The claims of verified tokens are kept in claimsCache, so a token which is
+	 * sent again is not verified again. Without a cache every token is verified.
+	 */
+	public JwtFilter(String secret, JwtClaimsCache claimsCache) {
+		this(Jwts.parser().setSigningKey(secret), claimsCache, null);
+	}
+
+	/*
+	 * The tokens are verified with the key keyResolver picks for them, e.g. the
+	 * public key of their "kid" (see JwtKeyResolver).
+	 */
+	public JwtFilter(SigningKeyResolver keyResolver, JwtClaimsCache claimsCache) {
+		this(keyResolver, claimsCache, null);
+	}
+
+	/*
+	 * Tokens whose id ("jti") is in revocations are rejected, also when their
+	 * claims are cached, as a token can be revoked after it was first verified.
+	 */
+	public JwtFilter(SigningKeyResolver keyResolver, JwtClaimsCache claimsCache, TokenRevocations revocations) {
+		this(Jwts.parser().setSigningKeyResolver(keyResolver), claimsCache, revocations);
+	}
+
+	private JwtFilter(JwtParser parser, JwtClaimsCache claimsCache, TokenRevocations revocations) {
+		this.parser = parser;
+		this.claimsCache = claimsCache;
+		this.revocations = revocations;
+	}
+
+	/*
+	 * Override the doFilter method of GenericFilterBean. Retrieve the
+	 * "authorization" header from the HttpServletRequest object. Retrieve the
+	 * "Bearer" token from "authorization" header. Parse the JWT token and get claims
+	 * from the token using the secret key Set the request attribute with the
+	 * retrieved claims Call FilterChain object's doFilter() method
+	 *
+	 * A request without a well-formed bearer token, or with a token which is not
+	 * valid or revoked, is answered with 401 and a WWW-Authenticate header and not passed on.
+	 * Headers which cannot hold a token are rejected before the parser is called,
+	 * so no exception is created for them.
+	 */
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+
+		HttpServletRequest req = (HttpServletRequest) request;
+
+		// We get the Authorization Header of the incoming request
+		String authHeader = req.getHeader(AUTHORIZATION);
+
+		if (authHeader == null || !authHeader.startsWith(BEARER)) {
+			unauthorized(response, MISSING_TOKEN);
+			return;
+		}
+
+		// and retrieve the token
+		String compactJws = authHeader.substring(BEARER.length());
+
+		if (!isCompactJws(compactJws)) {
+			unauthorized(response, INVALID_TOKEN);
+			return;
+		}
+
+		Claims token;
+		try {
+			token = claims(compactJws);
+		} catch (JwtException | IllegalArgumentException ex) {
+			unauthorized(response, INVALID_TOKEN);
+			return;
+		}
+
+		if (this.revocations != null && this.revocations.isRevoked(token.getId())) {
+			unauthorized(response, INVALID_TOKEN);
+			return;
+		}
+
+		// Here we can extract different properties of the request,
+		// such that the user or the issuedAt and make sure that the token
+		// is still valid and that the user exists in our user db
+
+		request.setAttribute("token", token);
+
+		chain.doFilter(request, response);
+
+	}
+
+	private Claims claims(String compactJws) {
+		if (this.claimsCache == null) {
+			return verify(compactJws);
+		}
+		return this.claimsCache.get(compactJws, this::verify);
+	}
+
+	private Claims verify(String compactJws) {
+		return this.parser.parseClaimsJws(compactJws).getBody();
+	}
+
+	/* A signed token is header.payload.signature, with three non-empty parts. */
+	private static boolean isCompactJws(String compactJws) {
+		int payload = compactJws.indexOf('.');
+		int signature = compactJws.indexOf('.', payload + 1);
+		return payload > 0 && signature > payload + 1 && signature < compactJws.length() - 1
+				&& compactJws.indexOf('.', signature + 1) < 0;
+	}
+
+	private static void unauthorized(ServletResponse response, String challenge) {
+		HttpServletResponse res = (HttpServletResponse) response;
+		res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+		res.setHeader(WWW_AUTHENTICATE, challenge);
+	}
+}
@@ -0,0 +1,110 @@
+package com.stackroute.keepnote.jwtfilter;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+/*
+ * This class registers the JwtFilter in every servlet application which has
+ * keepnote-security on its classpath, so all services authorize their requests
+ * the same way. It is listed in META-INF/spring.factories, also for the MockMvc
+ * tests, which therefore see the filter like the running service does.
+ *
+ * The filter is configured with the keepnote.jwt properties:
+ * keepnote.jwt.jwks-uri, the key set of UserAuthentication-Service; when it is
+ * set, tokens are verified with the public key of their "kid" (see JwtKeyResolver);
+ * keepnote.jwt.jwks-refresh-interval, the seconds between two loads of the key set;
+ * keepnote.jwt.revocations-uri, the revoked tokens of UserAuthentication-Service;
+ * when it is set (with jwks-uri), revoked tokens are rejected (see TokenRevocations);
+ * keepnote.jwt.revocations-refresh-interval, the seconds between two loads of them;
+ * keepnote.jwt.connect-timeout and read-timeout, the milliseconds a load of the
+ * key set or of the revoked tokens waits for UserAuthentication-Service. The key
+ * set of an unknown "kid" is loaded on the request thread, so a hanging service
+ * must not keep the requests waiting;
+ * keepnote.jwt.secret, the key of the HMAC tokens without "kid" issued before the
+ * key set, empty (the default) to reject them; keepnote.jwt.legacy-cutoff, the
+ * instant the key set was rolled out (e.g. 2026-10-18T10:30:00Z), and
+ * keepnote.jwt.legacy-max-lifetime, the seconds such a token was valid, bound the
+ * HMAC tokens which are accepted (see JwtKeyResolver); without a cutoff they are
+ * rejected. Without jwks-uri only these tokens are accepted;
+ * keepnote.jwt.url-patterns, the URLs the filter applies to (all by default);
+ * keepnote.jwt.filter.enabled, false to leave the service unprotected;
+ * keepnote.jwt.cache.maximum-size and maximum-ttl, see JwtClaimsCache.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnProperty(prefix = "keepnote.jwt.filter", name = "enabled", matchIfMissing = true)
+public class JwtFilterAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public JwtClaimsCache jwtClaimsCache(@Value("${keepnote.jwt.cache.maximum-size:100000}") long maximumSize,
+			@Value("${keepnote.jwt.cache.maximum-ttl:600}") long maximumTtl) {
+		return new JwtClaimsCache(maximumSize, maximumTtl);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = "keepnote.jwt", name = "jwks-uri")
+	public JwtKeyResolver jwtKeyResolver(@Value("${keepnote.jwt.jwks-uri}") String jwksUri,
+			@Value("${keepnote.jwt.jwks-refresh-interval:60}") long refreshInterval,
+			@Value("${keepnote.jwt.secret:}") String secret,
+			@Value("${keepnote.jwt.legacy-cutoff:}") String legacyCutoff,
+			@Value("${keepnote.jwt.legacy-max-lifetime:864000}") long legacyMaxLifetime,
+			@Value("${keepnote.jwt.connect-timeout:2000}") int connectTimeout,
+			@Value("${keepnote.jwt.read-timeout:5000}") int readTimeout) {
+		return new JwtKeyResolver(secret, instant(legacyCutoff), legacyMaxLifetime,
+				JwkSet.fetch(restTemplate(connectTimeout, readTimeout), jwksUri), refreshInterval);
+	}
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = "keepnote.jwt", name = "revocations-uri")
+	public TokenRevocations tokenRevocations(@Value("${keepnote.jwt.revocations-uri}") String revocationsUri,
+			@Value("${keepnote.jwt.revocations-refresh-interval:10}") long refreshInterval,
+			@Value("${keepnote.jwt.connect-timeout:2000}") int connectTimeout,
+			@Value("${keepnote.jwt.read-timeout:5000}") int readTimeout) {
+		TokenRevocations revocations = new TokenRevocations(
+				TokenBloomFilter.fetch(restTemplate(connectTimeout, readTimeout), revocationsUri), refreshInterval);
+		revocations.start();
+		return revocations;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(name = "jwtFilter")
+	public FilterRegistrationBean<JwtFilter> jwtFilter(JwtClaimsCache claimsCache,
+			ObjectProvider<JwtKeyResolver> keyResolver, ObjectProvider<TokenRevocations> revocations,
+			@Value("${keepnote.jwt.secret:}") String secret,
+			@Value("${keepnote.jwt.legacy-cutoff:}") String legacyCutoff,
+			@Value("${keepnote.jwt.legacy-max-lifetime:864000}") long legacyMaxLifetime,
+			@Value("${keepnote.jwt.url-patterns:/*}") String[] urlPatterns) {
+		JwtKeyResolver resolver = keyResolver.getIfAvailable(() -> new JwtKeyResolver(secret,
+				instant(legacyCutoff), legacyMaxLifetime, Collections::emptyMap, Long.MAX_VALUE));
+		JwtFilter filter = new JwtFilter(resolver, claimsCache, revocations.getIfAvailable());
+		FilterRegistrationBean<JwtFilter> bean = new FilterRegistrationBean<>(filter);
+		bean.addUrlPatterns(urlPatterns);
+		return bean;
+	}
+
+	private static Date instant(String instant) {
+		return instant.isEmpty() ? null : Date.from(Instant.parse(instant));
+	}
+
+	/* Not a bean, so it does not take the place of a RestTemplate the service defines itself. */
+	private static RestTemplate restTemplate(int connectTimeout, int readTimeout) {
+		return new RestTemplateBuilder().setConnectTimeout(connectTimeout).setReadTimeout(readTimeout).build();
+	}
+
+}
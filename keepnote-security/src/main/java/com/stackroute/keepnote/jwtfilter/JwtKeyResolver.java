@@ -0,0 +1,130 @@
+package com.stackroute.keepnote.jwtfilter;
+
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.impl.TextCodec;
+
+/*
+ * This class picks the key a token is verified with by the "kid" header of the
+ * token. UserAuthentication-Service signs with ES256 and rotates its key pair, and
+ * publishes the public keys of the current and the recently retired pairs as a key
+ * set (see JwkSet).
+ *
+ * The public keys are kept by key id, so the lookup of a known key is a map read.
+ * Only a key id which is not known yet, e.g. after a rotation, makes the resolver
+ * load the key set again, at most once per refreshInterval, so tokens with made up
+ * key ids cannot flood the key set endpoint.
+ *
+ * Tokens without a key id are HMAC tokens signed with the shared secret. They are
+ * only accepted when a secret and the time the key set was rolled out
+ * (legacyCutoff) are given, to let the tokens issued before expire; pass null to
+ * reject them. As the secret was published with the sources, such a token is only
+ * accepted when it was issued before legacyCutoff and at most legacyMaxLifetime
+ * seconds ago, and expires at most legacyMaxLifetime seconds after it was issued.
+ * The tokens issued before the key set have no "iat"; they were issued
+ * legacyMaxLifetime seconds before they expire. So no HMAC token is accepted
+ * any more once legacyMaxLifetime seconds have passed since legacyCutoff.
+ */
+public class JwtKeyResolver extends SigningKeyResolverAdapter {
+
+	private static final Logger logger = LoggerFactory.getLogger(JwtKeyResolver.class);
+
+	private final byte[] secret;
+	private final long legacyCutoff;
+	private final long legacyMaxLifetimeMillis;
+	private final Supplier<Map<String, PublicKey>> keySource;
+	private final long refreshIntervalNanos;
+	private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+	private boolean loaded;
+	private long loadedAt;
+
+	public JwtKeyResolver(Supplier<Map<String, PublicKey>> keySource, long refreshIntervalSeconds) {
+		this(null, null, 0, keySource, refreshIntervalSeconds);
+	}
+
+	public JwtKeyResolver(String secret, Date legacyCutoff, long legacyMaxLifetimeSeconds,
+			Supplier<Map<String, PublicKey>> keySource, long refreshIntervalSeconds) {
+		boolean legacy = secret != null && !secret.isEmpty();
+		if (legacy && legacyCutoff == null) {
+			logger.warn("A secret is given without the cutoff of the tokens issued before the key set, "
+					+ "tokens without key id are rejected");
+			legacy = false;
+		}
+		this.secret = legacy ? TextCodec.BASE64.decode(secret) : null;
+		this.legacyCutoff = legacy ? legacyCutoff.getTime() : 0;
+		this.legacyMaxLifetimeMillis = TimeUnit.SECONDS.toMillis(legacyMaxLifetimeSeconds);
+		this.keySource = keySource;
+		this.refreshIntervalNanos = TimeUnit.SECONDS.toNanos(refreshIntervalSeconds);
+	}
+
+	@Override
+	public Key resolveSigningKey(JwsHeader header, Claims claims) {
+		SignatureAlgorithm algorithm = SignatureAlgorithm.forName(header.getAlgorithm());
+		String keyId = header.getKeyId();
+		if (keyId == null) {
+			if (this.secret == null || !algorithm.isHmac()) {
+				throw new SignatureException("The token has no key id");
+			}
+			if (!issuedBeforeKeySet(claims)) {
+				throw new SignatureException("The token has no key id and was not issued before the key set");
+			}
+			return new SecretKeySpec(this.secret, algorithm.getJcaName());
+		}
+		if (algorithm != SignatureAlgorithm.ES256) {
+			throw new SignatureException("Key " + keyId + " is not used with " + algorithm);
+		}
+		PublicKey key = this.keys.get(keyId);
+		if (key == null) {
+			key = load(keyId);
+		}
+		if (key == null) {
+			throw new SignatureException("Unknown key id " + keyId);
+		}
+		return key;
+	}
+
+	private boolean issuedBeforeKeySet(Claims claims) {
+		Date expiration = claims.getExpiration();
+		if (expiration == null) {
+			return false;
+		}
+		long issuedAt = claims.getIssuedAt() == null ? expiration.getTime() - this.legacyMaxLifetimeMillis
+				: claims.getIssuedAt().getTime();
+		return issuedAt <= this.legacyCutoff
+				&& issuedAt >= System.currentTimeMillis() - this.legacyMaxLifetimeMillis
+				&& expiration.getTime() - issuedAt <= this.legacyMaxLifetimeMillis;
+	}
+
+	private synchronized PublicKey load(String keyId) {
+		PublicKey key = this.keys.get(keyId);
+		long now = System.nanoTime();
+		if (key != null || (this.loaded && now - this.loadedAt < this.refreshIntervalNanos)) {
+			return key;
+		}
+		this.loaded = true;
+		this.loadedAt = now;
+		try {
+			this.keys = this.keySource.get();
+		} catch (RuntimeException e) {
+			logger.warn("The key set could not be loaded, the known keys are kept: {}", e.toString());
+		}
+		return this.keys.get(keyId);
+	}
+
+}
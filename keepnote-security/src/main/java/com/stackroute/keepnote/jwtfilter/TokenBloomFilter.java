@@ -0,0 +1,111 @@
+package com.stackroute.keepnote.jwtfilter;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.web.client.RestTemplate;
+
+/*
+ * This class is a Bloom filter of token ids ("jti"), the form in which
+ * UserAuthentication-Service publishes the revoked access tokens at
+ * /api/v1/auth/revocations: {"hashes": k, "bits": base64url of the bit array}.
+ *
+ * mightContain() never misses an id which was added, and reports an id which was
+ * not added with about the false positive rate the filter was created for. A
+ * token wrongly taken as revoked is answered with 401 and the client gets a new
+ * one with its refresh token, so the rate is kept small rather than zero.
+ *
+ * The ids are added while the filter is built; once it is published it is only
+ * read, from any number of threads.
+ */
+public final class TokenBloomFilter {
+
+	private static final int MAX_HASHES = 30;
+
+	private final long[] bits;
+	private final int hashes;
+
+	private TokenBloomFilter(long[] bits, int hashes) {
+		this.bits = bits;
+		this.hashes = hashes;
+	}
+
+	/* A filter for expectedEntries ids, with at most falsePositiveRate wrongly reported ids. */
+	public static TokenBloomFilter create(int expectedEntries, double falsePositiveRate) {
+		double entries = Math.max(1, expectedEntries);
+		long size = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		int words = (int) Math.max(1, (size + 63) / 64);
+		int hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(words * 64 / entries * Math.log(2))));
+		return new TokenBloomFilter(new long[words], hashes);
+	}
+
+	/* The returned supplier fetches the filter from uri on every call. */
+	public static Supplier<TokenBloomFilter> fetch(RestTemplate restTemplate, String uri) {
+		return () -> parse(restTemplate.getForObject(uri, Map.class));
+	}
+
+	public static TokenBloomFilter parse(Map<?, ?> json) {
+		if (json == null || !(json.get("hashes") instanceof Number) || !(json.get("bits") instanceof String)) {
+			throw new IllegalArgumentException("Not a token filter: " + json);
+		}
+		int hashes = ((Number) json.get("hashes")).intValue();
+		ByteBuffer bytes = ByteBuffer.wrap(Base64.getUrlDecoder().decode((String) json.get("bits")));
+		if (hashes < 1 || hashes > MAX_HASHES || bytes.remaining() == 0 || bytes.remaining() % 8 != 0) {
+			throw new IllegalArgumentException("Not a token filter: " + json);
+		}
+		long[] bits = new long[bytes.remaining() / 8];
+		bytes.asLongBuffer().get(bits);
+		return new TokenBloomFilter(bits, hashes);
+	}
+
+	public Map<String, Object> toJson() {
+		ByteBuffer bytes = ByteBuffer.allocate(this.bits.length * 8);
+		bytes.asLongBuffer().put(this.bits);
+		Map<String, Object> json = new HashMap<>();
+		json.put("hashes", this.hashes);
+		json.put("bits", Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array()));
+		return json;
+	}
+
+	public void add(String id) {
+		long hash = hash(id);
+		for (int index = 0; index < this.hashes; index++) {
+			long bit = bit(hash, index);
+			this.bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	public boolean mightContain(String id) {
+		long hash = hash(id);
+		for (int index = 0; index < this.hashes; index++) {
+			long bit = bit(hash, index);
+			if ((this.bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* The index-th bit of an id, from the two halves of its hash. */
+	private long bit(long hash, int index) {
+		return Math.floorMod((hash >>> 32) + index * (hash | 1), this.bits.length * 64L);
+	}
+
+	/*
+	 * A 64 bit FNV-1a hash of id, mixed with the finalizer of MurmurHash3. It is not
+	 * seeded, as the services have to compute the bits the filter was built with.
+	 */
+	private static long hash(String id) {
+		long hash = 0xcbf29ce484222325L;
+		for (int index = 0; index < id.length(); index++) {
+			hash = (hash ^ id.charAt(index)) * 0x100000001b3L;
+		}
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.stackroute.keepnote.jwtfilter;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * This class holds the latest Bloom filter of the revoked access tokens of
+ * UserAuthentication-Service, so the JwtFilter can reject them with one lookup in
+ * memory per request.
+ *
+ * Once started, it loads the filter again every refreshInterval seconds on a
+ * thread of its own, so no request waits for it; a revoked token is rejected at
+ * most refreshInterval seconds after its revocation. When the filter cannot be
+ * loaded, the last one is kept. Until the first load no token is revoked.
+ */
+public class TokenRevocations implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(TokenRevocations.class);
+
+	private final Supplier<TokenBloomFilter> source;
+	private final long refreshIntervalSeconds;
+	private volatile TokenBloomFilter revoked;
+	private ScheduledExecutorService scheduler;
+
+	public TokenRevocations(Supplier<TokenBloomFilter> source, long refreshIntervalSeconds) {
+		this.source = source;
+		this.refreshIntervalSeconds = refreshIntervalSeconds;
+	}
+
+	/* Tokens without an id ("jti") were issued before the revocations and cannot be revoked. */
+	public boolean isRevoked(String tokenId) {
+		TokenBloomFilter revoked = this.revoked;
+		return tokenId != null && revoked != null && revoked.mightContain(tokenId);
+	}
+
+	public void refresh() {
+		try {
+			this.revoked = this.source.get();
+		} catch (RuntimeException e) {
+			logger.warn("The revoked tokens could not be loaded, the last ones are kept: {}", e.toString());
+		}
+	}
+
+	public synchronized void start() {
+		if (this.scheduler == null) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "token-revocations");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.scheduler.scheduleWithFixedDelay(this::refresh, 0, this.refreshIntervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (this.scheduler != null) {
+			this.scheduler.shutdownNow();
+			this.scheduler = null;
+		}
+	}
+
+}
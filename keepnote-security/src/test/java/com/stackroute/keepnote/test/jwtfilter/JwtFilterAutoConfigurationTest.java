@@ -0,0 +1,90 @@
+package com.stackroute.keepnote.test.jwtfilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.stackroute.keepnote.jwtfilter.JwtClaimsCache;
+import com.stackroute.keepnote.jwtfilter.JwtFilter;
+import com.stackroute.keepnote.jwtfilter.JwtFilterAutoConfiguration;
+import com.stackroute.keepnote.jwtfilter.TokenRevocations;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+public class JwtFilterAutoConfigurationTest {
+
+	private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(JwtFilterAutoConfiguration.class));
+
+	@Test
+	public void filterRegisteredForAllUrls() {
+		contextRunner.run(context -> {
+			FilterRegistrationBean<?> bean = context.getBean("jwtFilter", FilterRegistrationBean.class);
+			assertTrue(bean.getFilter() instanceof JwtFilter);
+			assertEquals(new HashSet<>(Arrays.asList("/*")), bean.getUrlPatterns());
+			assertEquals(1, context.getBeansOfType(JwtClaimsCache.class).size());
+		});
+	}
+
+	@Test
+	public void filterRegisteredForConfiguredUrls() {
+		contextRunner.withPropertyValues("keepnote.jwt.url-patterns=/api/*,/admin/*").run(context -> {
+			FilterRegistrationBean<?> bean = context.getBean("jwtFilter", FilterRegistrationBean.class);
+			assertEquals(new HashSet<>(Arrays.asList("/api/*", "/admin/*")), bean.getUrlPatterns());
+		});
+	}
+
+	@Test
+	public void tokensWithoutKidRejectedWithoutSecret() {
+		String token = Jwts.builder().setSubject("Jhon123")
+				.setExpiration(new Date(System.currentTimeMillis() + 60_000))
+				.signWith(SignatureAlgorithm.HS512, "SecretKeyToGenJWTs").compact();
+		contextRunner.run(context -> {
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			request.addHeader(JwtFilter.AUTHORIZATION, "Bearer " + token);
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			context.getBean("jwtFilter", FilterRegistrationBean.class).getFilter().doFilter(request, response,
+					new MockFilterChain());
+			assertEquals(401, response.getStatus());
+		});
+	}
+
+	@Test
+	public void revocationsLoadedWhenConfigured() {
+		contextRunner.run(context -> assertTrue(context.getBeansOfType(TokenRevocations.class).isEmpty()));
+		contextRunner.withPropertyValues("keepnote.jwt.jwks-uri=http://localhost:1/jwks",
+				"keepnote.jwt.revocations-uri=http://localhost:1/revocations").run(context -> {
+					assertEquals(1, context.getBeansOfType(TokenRevocations.class).size());
+					assertFalse(context.getBean(TokenRevocations.class).isRevoked("jti1"));
+				});
+	}
+
+	@Test
+	public void filterNotRegisteredWhenDisabled() {
+		contextRunner.withPropertyValues("keepnote.jwt.filter.enabled=false").run(context -> {
+			assertFalse(context.containsBean("jwtFilter"));
+			assertTrue(context.getBeansOfType(JwtClaimsCache.class).isEmpty());
+		});
+	}
+
+	@Test
+	public void filterNotRegisteredOutsideWebApplication() {
+		new ApplicationContextRunner().withConfiguration(AutoConfigurations.of(JwtFilterAutoConfiguration.class))
+				.run(context -> assertFalse(context.containsBean("jwtFilter")));
+	}
+
+}
@@ -0,0 +1,211 @@
+package com.stackroute.keepnote.test.jwtfilter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.stackroute.keepnote.jwtfilter.JwkSet;
+import com.stackroute.keepnote.jwtfilter.JwtFilter;
+import com.stackroute.keepnote.jwtfilter.JwtKeyResolver;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+public class JwtKeyResolverTest {
+
+	private static final String SECRET = "SecretKeyToGenJWTs";
+	private static final long LEGACY_LIFETIME = 864_000_000;
+
+	private KeyPair current;
+	private List<Map<String, Object>> published;
+	private AtomicInteger loads;
+
+	@Before
+	public void setUp() throws Exception {
+		current = keyPair();
+		published = new ArrayList<>();
+		published.add(jwk("key1", current));
+		loads = new AtomicInteger();
+	}
+
+	@Test
+	public void tokenVerifiedWithKeyOfItsKid() throws Exception {
+		JwtFilter jwtFilter = new JwtFilter(resolver(SECRET, 60), null);
+
+		for (int i = 0; i < 3; i++) {
+			MockHttpServletRequest request = request(token("key1", current));
+			jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+			assertEquals("Jhon123", ((Claims) request.getAttribute("token")).getSubject());
+		}
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void unknownKidLoadsKeySetOncePerInterval() throws Exception {
+		JwtFilter jwtFilter = new JwtFilter(resolver(SECRET, 60), null);
+		KeyPair other = keyPair();
+
+		for (int i = 0; i < 3; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			jwtFilter.doFilter(request(token("other", other)), response, new MockFilterChain());
+			assertEquals(401, response.getStatus());
+		}
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void rotatedKeyLoaded() throws Exception {
+		JwtFilter jwtFilter = new JwtFilter(resolver(SECRET, 0), null);
+		jwtFilter.doFilter(request(token("key1", current)), new MockHttpServletResponse(), new MockFilterChain());
+
+		KeyPair rotated = keyPair();
+		published.add(0, jwk("key2", rotated));
+		MockHttpServletRequest request = request(token("key2", rotated));
+		jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+		assertEquals("Jhon123", ((Claims) request.getAttribute("token")).getSubject());
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void tokenWithoutKidVerifiedWithSecret() throws Exception {
+		long now = System.currentTimeMillis();
+		String token = legacyToken(null, new Date(now + LEGACY_LIFETIME));
+
+		MockHttpServletRequest request = request(token);
+		new JwtFilter(resolver(SECRET, 60), null).doFilter(request, new MockHttpServletResponse(),
+				new MockFilterChain());
+		assertEquals("Jhon123", ((Claims) request.getAttribute("token")).getSubject());
+
+		assertRejected(token, resolver(null, 60));
+		assertRejected(token, new JwtKeyResolver(SECRET, null, 864000, Collections::emptyMap, 60));
+		assertEquals(0, loads.get());
+	}
+
+	@Test
+	public void tokenWithoutKidIssuedAfterCutoffRejected() throws Exception {
+		long now = System.currentTimeMillis();
+		JwtKeyResolver resolver = new JwtKeyResolver(SECRET, new Date(now - 60_000), 864000, Collections::emptyMap,
+				60);
+
+		assertRejected(legacyToken(null, new Date(now + LEGACY_LIFETIME)), resolver);
+		assertRejected(legacyToken(new Date(now), new Date(now + 60_000)), resolver);
+	}
+
+	@Test
+	public void tokenWithoutKidBeyondLegacyLifetimeRejected() throws Exception {
+		long now = System.currentTimeMillis();
+		JwtKeyResolver resolver = resolver(SECRET, 60);
+
+		// issued longer ago than the legacy tokens were valid
+		assertRejected(legacyToken(new Date(now - LEGACY_LIFETIME - 60_000), new Date(now + 60_000)), resolver);
+		// valid for longer than the legacy tokens were
+		assertRejected(legacyToken(new Date(now - 60_000), new Date(now + LEGACY_LIFETIME)), resolver);
+		// without expiry
+		assertRejected(Jwts.builder().setSubject("Jhon123").setIssuedAt(new Date(now - 60_000))
+				.signWith(SignatureAlgorithm.HS512, SECRET).compact(), resolver);
+	}
+
+	@Test
+	public void kidWithOtherAlgorithmRejected() throws Exception {
+		String token = Jwts.builder().setHeaderParam(JwsHeader.KEY_ID, "key1").setSubject("Jhon123")
+				.signWith(SignatureAlgorithm.HS512, SECRET).compact();
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new JwtFilter(resolver(SECRET, 60), null).doFilter(request(token), response, new MockFilterChain());
+
+		assertEquals(401, response.getStatus());
+	}
+
+	@Test
+	public void keySetParsed() throws Exception {
+		Map<String, PublicKey> keys = JwkSet.parse(Collections.singletonMap("keys",
+				Arrays.asList(jwk("key1", current), Collections.singletonMap("kty", "RSA"))));
+
+		assertEquals(Collections.singleton("key1"), keys.keySet());
+		assertArrayEquals(current.getPublic().getEncoded(), keys.get("key1").getEncoded());
+	}
+
+	private JwtKeyResolver resolver(String secret, long refreshInterval) {
+		return new JwtKeyResolver(secret, new Date(System.currentTimeMillis() + 60_000), 864000, () -> {
+			loads.incrementAndGet();
+			return JwkSet.parse(Collections.singletonMap("keys", published));
+		}, refreshInterval);
+	}
+
+	private static void assertRejected(String token, JwtKeyResolver resolver) throws Exception {
+		MockHttpServletRequest request = request(token);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new JwtFilter(resolver, null).doFilter(request, response, new MockFilterChain());
+		assertEquals(401, response.getStatus());
+		assertNull(request.getAttribute("token"));
+	}
+
+	/* A token like those issued before the key set, which had no "iat". */
+	private static String legacyToken(Date issuedAt, Date expiration) {
+		return Jwts.builder().setSubject("Jhon123").setIssuedAt(issuedAt).setExpiration(expiration)
+				.signWith(SignatureAlgorithm.HS512, SECRET).compact();
+	}
+
+	private static MockHttpServletRequest request(String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(JwtFilter.AUTHORIZATION, "Bearer " + token);
+		return request;
+	}
+
+	private static String token(String keyId, KeyPair keyPair) {
+		return Jwts.builder().setHeaderParam(JwsHeader.KEY_ID, keyId).setSubject("Jhon123")
+				.setExpiration(new Date(System.currentTimeMillis() + 864_000_000))
+				.signWith(SignatureAlgorithm.ES256, keyPair.getPrivate()).compact();
+	}
+
+	private static KeyPair keyPair() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		return generator.generateKeyPair();
+	}
+
+	private static Map<String, Object> jwk(String keyId, KeyPair keyPair) {
+		ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+		Map<String, Object> jwk = new HashMap<>();
+		jwk.put("kty", "EC");
+		jwk.put("crv", "P-256");
+		jwk.put("kid", keyId);
+		jwk.put("x", coordinate(publicKey.getW().getAffineX()));
+		jwk.put("y", coordinate(publicKey.getW().getAffineY()));
+		return jwk;
+	}
+
+	private static String coordinate(BigInteger value) {
+		byte[] bytes = value.toByteArray();
+		byte[] coordinate = new byte[32];
+		int length = Math.min(bytes.length, 32);
+		System.arraycopy(bytes, bytes.length - length, coordinate, 32 - length, length);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(coordinate);
+	}
+
+}
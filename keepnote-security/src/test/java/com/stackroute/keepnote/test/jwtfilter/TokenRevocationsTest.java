@@ -0,0 +1,140 @@
+package com.stackroute.keepnote.test.jwtfilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.stackroute.keepnote.jwtfilter.JwtClaimsCache;
+import com.stackroute.keepnote.jwtfilter.JwtFilter;
+import com.stackroute.keepnote.jwtfilter.JwtKeyResolver;
+import com.stackroute.keepnote.jwtfilter.TokenBloomFilter;
+import com.stackroute.keepnote.jwtfilter.TokenRevocations;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+public class TokenRevocationsTest {
+
+	private KeyPair keyPair;
+	private AtomicReference<TokenBloomFilter> published;
+	private TokenRevocations revocations;
+	private JwtFilter jwtFilter;
+
+	@Before
+	public void setUp() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		keyPair = generator.generateKeyPair();
+		published = new AtomicReference<>(TokenBloomFilter.create(100, 1e-6));
+		revocations = new TokenRevocations(published::get, 10);
+		JwtKeyResolver resolver = new JwtKeyResolver(null,
+				() -> Collections.singletonMap("key1", keyPair.getPublic()), 60);
+		jwtFilter = new JwtFilter(resolver, new JwtClaimsCache(100, 600), revocations);
+	}
+
+	@Test
+	public void filterContainsAddedIds() {
+		TokenBloomFilter filter = TokenBloomFilter.create(1000, 1e-6);
+		for (int id = 0; id < 1000; id++) {
+			filter.add("revoked" + id);
+		}
+
+		int wronglyRevoked = 0;
+		for (int id = 0; id < 1000; id++) {
+			assertTrue(filter.mightContain("revoked" + id));
+			wronglyRevoked += filter.mightContain("valid" + id) ? 1 : 0;
+		}
+		assertEquals(0, wronglyRevoked);
+	}
+
+	@Test
+	public void filterReadFromJson() {
+		TokenBloomFilter filter = TokenBloomFilter.create(10, 1e-6);
+		filter.add("jti1");
+
+		Map<String, Object> json = filter.toJson();
+		TokenBloomFilter parsed = TokenBloomFilter.parse(json);
+		assertTrue(parsed.mightContain("jti1"));
+		assertFalse(parsed.mightContain("jti2"));
+		assertEquals(json, parsed.toJson());
+	}
+
+	@Test
+	public void revokedTokenRejectedAfterRefresh() throws Exception {
+		String token = token("jti1");
+		revocations.refresh();
+		assertAccepted(token);
+
+		TokenBloomFilter revoked = TokenBloomFilter.create(100, 1e-6);
+		revoked.add("jti1");
+		published.set(revoked);
+		assertAccepted(token);
+
+		revocations.refresh();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		jwtFilter.doFilter(request(token), response, chain);
+		assertEquals(401, response.getStatus());
+		assertEquals("Bearer error=\"invalid_token\"", response.getHeader(JwtFilter.WWW_AUTHENTICATE));
+		assertNull(chain.getRequest());
+
+		assertAccepted(token("jti2"));
+	}
+
+	@Test
+	public void lastFilterKeptWhenNotLoaded() {
+		TokenBloomFilter revoked = TokenBloomFilter.create(100, 1e-6);
+		revoked.add("jti1");
+		AtomicBoolean down = new AtomicBoolean();
+		TokenRevocations revocations = new TokenRevocations(() -> {
+			if (down.get()) {
+				throw new IllegalStateException("UserAuthentication-Service is down");
+			}
+			return revoked;
+		}, 10);
+
+		assertFalse(revocations.isRevoked("jti1"));
+		revocations.refresh();
+		down.set(true);
+		revocations.refresh();
+
+		assertTrue(revocations.isRevoked("jti1"));
+		assertFalse(revocations.isRevoked(null));
+	}
+
+	private void assertAccepted(String token) throws Exception {
+		MockFilterChain chain = new MockFilterChain();
+		jwtFilter.doFilter(request(token), new MockHttpServletResponse(), chain);
+		assertTrue(chain.getRequest() != null);
+	}
+
+	private String token(String id) {
+		return Jwts.builder().setHeaderParam(JwsHeader.KEY_ID, "key1").setSubject("Jhon123").setId(id)
+				.setExpiration(new Date(System.currentTimeMillis() + 900_000))
+				.signWith(SignatureAlgorithm.ES256, keyPair.getPrivate()).compact();
+	}
+
+	private static MockHttpServletRequest request(String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(JwtFilter.AUTHORIZATION, "Bearer " + token);
+		return request;
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.stackroute.keepnote.userdeletion;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/*
+ * This class purges the documents of deleted users. UserService records every
+ * deleted user in the "user_deletion" collection, with the time of the deletion
+ * (deletedAt) and the services which still have to purge the user; every
+ * keepnote.user.deletions.poll-interval seconds this class takes up to
+ * keepnote.user.deletions.batch-size of the users pending for its consumer.
+ *
+ * Every service registers a subclass as a component, which names the consumer,
+ * the collection, the field holding the owner and the field holding the
+ * creation date. Only the documents of the user created before deletedAt are
+ * removed, so a user registered again under the same userId keeps what was
+ * created since; documents without a creation date are taken as older. They are
+ * removed keepnote.user.deletions.chunk-size at a time, so a user with many
+ * documents does not cause one long delete. A service whose documents cannot be
+ * removed that way overrides purge.
+ *
+ * Once they are gone, the consumer is pulled from the pending services of the
+ * user, and the event is removed when no service is pending any more. A purge
+ * which is interrupted is simply done again on the next poll, as deleting
+ * documents which are already deleted has no effect.
+ */
+public class UserDeletionConsumer {
+
+	public static final String COLLECTION = "user_deletion";
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final MongoTemplate mongoTemplate;
+	private final String consumer;
+	private final String collection;
+	private final String ownerField;
+	private final String createdField;
+	private final int batchSize;
+	private final int chunkSize;
+
+	public UserDeletionConsumer(MongoTemplate mongoTemplate, String consumer, String collection, String ownerField,
+			String createdField, int batchSize, int chunkSize) {
+		this.mongoTemplate = mongoTemplate;
+		this.consumer = consumer;
+		this.collection = collection;
+		this.ownerField = ownerField;
+		this.createdField = createdField;
+		this.batchSize = batchSize;
+		this.chunkSize = chunkSize;
+	}
+
+	@Scheduled(fixedDelayString = "#{${keepnote.user.deletions.poll-interval:10} * 1000}")
+	public void poll() {
+		Query pending = new Query(Criteria.where("pending").is(this.consumer)).limit(this.batchSize);
+		pending.fields().include("_id").include("deletedAt");
+		for (Document deletion : this.mongoTemplate.find(pending, Document.class, COLLECTION)) {
+			String userId = deletion.getString("_id");
+			try {
+				long purged = purge(userId, deletion.getDate("deletedAt"));
+				acknowledge(userId);
+				logger.info("user={} purged {}={}", userId, this.consumer, purged);
+			} catch (RuntimeException e) {
+				logger.warn("user={} {} could not be purged, retried on the next poll: {}", userId, this.consumer,
+						e.toString());
+			}
+		}
+	}
+
+	/*
+	 * This method removes the documents the user created before deletedAt, or all
+	 * of them if deletedAt is null, and returns how many there were.
+	 */
+	public long purge(String userId, Date deletedAt) {
+		Criteria owned = Criteria.where(this.ownerField).is(userId);
+		if (deletedAt != null) {
+			owned = owned.orOperator(Criteria.where(this.createdField).lt(deletedAt),
+					Criteria.where(this.createdField).is(null));
+		}
+		long purged = 0;
+		List<Object> ids;
+		do {
+			Query chunk = new Query(owned).limit(this.chunkSize);
+			chunk.fields().include("_id");
+			ids = this.mongoTemplate.find(chunk, Document.class, this.collection).stream()
+					.map(document -> document.get("_id")).collect(Collectors.toList());
+			if (!ids.isEmpty()) {
+				purged += this.mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), this.collection)
+						.getDeletedCount();
+			}
+		} while (ids.size() == this.chunkSize);
+		return purged;
+	}
+
+	private void acknowledge(String userId) {
+		this.mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(userId)),
+				new Update().pull("pending", this.consumer), COLLECTION);
+		this.mongoTemplate.remove(new Query(Criteria.where("_id").is(userId).and("pending").size(0)), COLLECTION);
+	}
+
+}
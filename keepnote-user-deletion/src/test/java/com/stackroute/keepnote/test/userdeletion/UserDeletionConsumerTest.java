@@ -0,0 +1,112 @@
+package com.stackroute.keepnote.test.userdeletion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.client.result.DeleteResult;
+import com.stackroute.keepnote.userdeletion.UserDeletionConsumer;
+
+public class UserDeletionConsumerTest {
+
+	private static final Date DELETED_AT = new Date(2000);
+
+	@Mock
+	private MongoTemplate mongoTemplate;
+
+	private UserDeletionConsumer consumer;
+
+	@Before
+	public void setUp() {
+		MockitoAnnotations.initMocks(this);
+		consumer = new UserDeletionConsumer(mongoTemplate, "reminders", "reminder", "reminderCreatedBy",
+				"reminderCreationDate", 100, 2);
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(UserDeletionConsumer.COLLECTION)))
+				.thenReturn(Collections.singletonList(new Document("_id", "Jhon123").append("deletedAt", DELETED_AT)));
+	}
+
+	@Test
+	public void purgeInChunks() {
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("reminder")))
+				.thenReturn(Arrays.asList(new Document("_id", "r1"), new Document("_id", "r2")))
+				.thenReturn(Collections.singletonList(new Document("_id", "r3")));
+		when(mongoTemplate.remove(any(Query.class), eq("reminder")))
+				.thenReturn(DeleteResult.acknowledged(2), DeleteResult.acknowledged(1));
+
+		assertEquals(3, consumer.purge("Jhon123", DELETED_AT));
+		verify(mongoTemplate, times(2)).remove(any(Query.class), eq("reminder"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void purgeOnlyDocumentsCreatedBeforeDeletion() {
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("reminder")))
+				.thenReturn(Collections.emptyList());
+		ArgumentCaptor<Query> chunk = ArgumentCaptor.forClass(Query.class);
+
+		consumer.purge("Jhon123", DELETED_AT);
+
+		verify(mongoTemplate).find(chunk.capture(), eq(Document.class), eq("reminder"));
+		Document criteria = chunk.getValue().getQueryObject();
+		assertEquals("Jhon123", criteria.get("reminderCreatedBy"));
+		List<Document> created = (List<Document>) criteria.get("$or");
+		assertEquals(new Document("$lt", DELETED_AT), created.get(0).get("reminderCreationDate"));
+		assertEquals(null, created.get(1).get("reminderCreationDate"));
+	}
+
+	@Test
+	public void purgeAllDocumentsWithoutDeletionDate() {
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("reminder")))
+				.thenReturn(Collections.emptyList());
+		ArgumentCaptor<Query> chunk = ArgumentCaptor.forClass(Query.class);
+
+		consumer.purge("Jhon123", null);
+
+		verify(mongoTemplate).find(chunk.capture(), eq(Document.class), eq("reminder"));
+		assertFalse(chunk.getValue().getQueryObject().containsKey("$or"));
+	}
+
+	@Test
+	public void pollAcknowledgesPurgedUser() {
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("reminder")))
+				.thenReturn(Collections.emptyList());
+
+		consumer.poll();
+
+		verify(mongoTemplate, never()).remove(any(Query.class), eq("reminder"));
+		verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(UserDeletionConsumer.COLLECTION));
+		verify(mongoTemplate).remove(any(Query.class), eq(UserDeletionConsumer.COLLECTION));
+	}
+
+	@Test
+	public void pollKeepsUserPendingOnError() {
+		when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("reminder")))
+				.thenThrow(new IllegalStateException());
+
+		consumer.poll();
+
+		verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class),
+				eq(UserDeletionConsumer.COLLECTION));
+	}
+
+}